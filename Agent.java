@@ -1,128 +1,152 @@
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 public class Agent implements AgentInterface
 {
-	protected static int ID = 0;
-
-    private int row;
-    private int col;
-    protected AgentType type;	
-	protected int id;
-    //CHANGE THIS BACK TO PROTECTED
-	public double[] nextEvents;
-    
-	public Agent(AgentType which)
+	// all of the agent's state lives in the store's primitive columns; the
+	// Agent object itself is only a handle onto its slot
+	protected final AgentStore store;
+	protected final int        slot;
+	private   final Event      event = new Event(this); // its one queued event
+
+	// agents hold no random generator of their own: every method that draws
+	// random numbers is handed the owning simulation's stream, so simulations
+	// running side by side never share one
+	public Agent(AgentStore store, RandomGenerator rand, AgentType which)
     {
-		ID++;
-		id = ID;
-	    row = col = -1;
-	    type = which;
-	    nextEvents = new double[2];
-	    nextEvents[0] = Simulation.rand.nextDouble();
-	    nextEvents[1] = Double.MAX_VALUE;
+		this.store = store;
+		this.slot  = store.allocate(this, which); // also assigns the next id
+		store.setNextMove(slot, rand.nextDouble());
+		store.setNextAction(slot, Double.MAX_VALUE);
     }
 
-    public int getRow() { return(row); }
-    public int getCol() { return(col); }
-    public AgentType getType() { return(type); }
+    public int getRow() { return(store.getRow(slot)); }
+    public int getCol() { return(store.getCol(slot)); }
+    public AgentType getType() { return(store.getType(slot)); }
 
   	public int getID()
     {
-		return id;
+		return store.getID(slot);
     }
 
-    public double getNextTime()
-    {
-    	if(nextEvents[0] < nextEvents[1]) //prioritize eat
-    	{
-    		return nextEvents[0];
-    	}
-    	else
-    	{
-    		return nextEvents[1];
-    	}
-    }
+	public int getSlot() { return(slot); }
 
-    public boolean isMoveNextEvent() 
-    { 
-    	if(nextEvents[0] < nextEvents[1]) //prioritize eat
-    	{
-    		return true;
-    	}
-    	else
-    	{
-    		return false;
-    	} 	
-    }
+	public double getNextMoveTime()   { return(store.getNextMove(slot)); }
+	public double getNextActionTime() { return(store.getNextAction(slot)); }
 
     public void setRowCol(int row, int col)
     {
-        this.row = row;
-        this.col = col;
+        store.setRowCol(slot, row, col);
     }
 
-    public void scheduleNextMove(double time)
+    public void scheduleNextMove(double time, RandomGenerator rand)
     {
-    	nextEvents[0] = time + Simulation.rand.nextDouble();
+    	store.setNextMove(slot, time + rand.nextDouble());
     }
 
-    public Cell calculateMove(Cell[][] landscape)
+	/**************************************************************************
+	 * Sets this agent's event to whichever of its next move and its next
+	 * divide (bacteria) or eat (macrophages) comes first, an eat or divide
+	 * winning a tie.  The engine must queue (or requeue) the event every
+	 * time the agent's next event times change.
+	 * @return the event, for the engine to queue
+	 **************************************************************************/
+	public Event nextEvent()
+	{
+		double move   = store.getNextMove(slot);
+		double action = store.getNextAction(slot);
+		boolean macrophage = (getType() == AgentType.MACROPHAGE);
+		if(move < action)
+		{
+			event.set(macrophage ? EventKind.MACROPHAGE_MOVE : EventKind.BACTERIUM_MOVE, move);
+		}
+		else
+		{
+			event.set(macrophage ? EventKind.EAT : EventKind.DIVIDE, action);
+		}
+		return event;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns this agent's event as last set by
+	 * nextEvent(), e.g. to take it off the queue.
+	 * @return the agent's event
+	 **************************************************************************/
+	public Event getEvent() { return(event); }
+
+	/**************************************************************************
+	 * Gives this agent's slot back to the store once the agent has left the
+	 * simulation; the handle must not be used afterwards.
+	 **************************************************************************/
+	public void release()
+	{
+		store.release(slot);
+	}
+
+	// position in its population's AgentRegistry, kept in the store's columns
+	int getRegistryIndex()           { return(store.getRegistryIndex(slot)); }
+	void setRegistryIndex(int index) { store.setRegistryIndex(slot, index); }
+
+	/**************************************************************************
+	 * Picks the cell this agent moves (or divides) into.  Candidate cells are
+	 * gathered into the caller's scratch buffer, which is overwritten.
+	 *
+	 * @param landscape  the occupancy grid
+	 * @param avail      reusable buffer for the candidate cells
+	 * @param rand       the simulation's random stream
+	 * @return index of the chosen cell, or of the agent's current cell if
+	 *         none is free
+	 **************************************************************************/
+    public int calculateMove(Grid landscape, Neighborhood avail, RandomGenerator rand)
 	{	
-		ArrayList<Cell> avail = getNeighborhood(this.getRow(),this.getCol(), landscape);
+		getNeighborhood(this.getRow(),this.getCol(), landscape, avail);
 		
 		if(avail.size() != 0)		                
 		{
-			Cell cell = getPreferredMove(avail, landscape);	
+			int cell = getPreferredMove(avail, landscape, rand);	
 			return cell;														  
 		}
 		
 		// if no new location is available return current location, i.e. don't move 
-		Cell currentCell = landscape[this.getRow()][this.getCol()];
+		int currentCell = landscape.index(this.getRow(), this.getCol());
 		return currentCell;
 																											                
 	}
 		
-	protected ArrayList<Cell> getNeighborhood(int x, int y, Cell[][] landscape)
+	protected void getNeighborhood(int x, int y, Grid landscape, Neighborhood available)
 	{
-		ArrayList<Cell> available = new ArrayList<Cell>();
-				
-		int numCells  = landscape[0].length;		
-		int index = 0;
+		available.clear();
 				
 		for(int i = -1; i <= 1; i++)
 		{
+			int row = landscape.wrap(x, i);
 			for(int j = -1; j <= 1; j++)
 			{
 				if(i == 0 && j == 0)
 				{
 					continue;
 				}
-				int row = ((x + i) + numCells) % numCells;
-				int col = ((y + j) + numCells) % numCells;
+				int col = landscape.wrap(y, j);
 				
-				Cell newCell = landscape[row][col];		
-				Cell currentCell = landscape[x][y];		
+				int newCell = landscape.index(row, col);		
 
-				if(!newCell.isOccupied()) // is null
+				if(!landscape.isOccupied(newCell)) // is null
 				{
 					available.add(newCell);	
 				}	
-				else if(newCell.hasMacrophage() && type == AgentType.BACTERIUM)
+				else if(landscape.hasMacrophage(newCell) && getType() == AgentType.BACTERIUM)
 				{
 					available.add(newCell);
 				}
-				else if(newCell.hasBacteria() && type == AgentType.MACROPHAGE)
+				else if(landscape.hasBacteria(newCell) && getType() == AgentType.MACROPHAGE)
 				{
 					available.add(newCell);
 				}
-
-				index++;
 			}
 		}		
-		return available;
 	}
 
-	protected Cell getPreferredMove(ArrayList<Cell> list, Cell[][] landscape)
+	protected int getPreferredMove(Neighborhood list, Grid landscape, RandomGenerator rand)
 	{
 		System.out.println("Agent's method");
 		
@@ -131,11 +155,11 @@ public class Agent implements AgentInterface
 
 		if(list.size() == 0)
 		{
-				Cell cell = landscape[row][col];
+				int cell = landscape.index(row, col);
 				return cell;
 		}
 
-		int index = Simulation.rand.nextInt(list.size());	
+		int index = rand.nextInt(list.size());	
 		return list.get(index);			
 	}
 }
@@ -3,12 +3,19 @@ import java.util.*;        // for ArrayList
 import java.awt.*;         // for Graphics, Graphics2D
 import java.awt.event.*;   // for MouseListener
 import java.awt.geom.*;    // for Rectangle2D
+import java.awt.image.*;   // for BufferedImage
 
 /**
  * This class implements the agent canvas for our agent-based simulation,
  * specifically drawing the grid and (eventually) drawing the agents
  * that will run rampant thereupon.  A canvas must appear in the main GUI
  * window (JFrame) -- see AgentGUI.
+ *
+ * Agents and grid are drawn into a backing image of the whole landscape.
+ * When a snapshot lists the cells changed since the previous one, only
+ * those cells are redrawn into the image and repainted on screen; a full
+ * redraw happens only when the engine does not report changes, a snapshot
+ * was missed, or too much changed at once.
  */
 class AgentCanvas extends JPanel implements MouseListener
 {
@@ -21,6 +28,18 @@ class AgentCanvas extends JPanel implements MouseListener
     private int cellGUISize;  // maximum drawn size of a cell
 
     private SimulationManager simulation; // a reference to the simulation object
+    private AgentSnapshot     snapshot;   // immutable copy of agents being drawn
+
+    // largest backing image kept, in pixels (64 MB); bigger landscapes are
+    // drawn straight to the screen on every repaint (AgentGUI draws them
+    // with a RasterCanvas instead)
+    private static final long MAX_LANDSCAPE_PIXELS = 1L << 24;
+
+    private static final int VERTICAL_SPACE_BEFORE_TEXT = 20; // above agent info
+
+    private BufferedImage landscape;          // agents and grid, null if too big
+    private long          drawnSequence = -1; // snapshot the landscape shows
+    private boolean[]     dirty;              // scratch: cells being redrawn
 
     /**************************************************************************
     //* Constructor for the agent canvas.
@@ -41,9 +60,34 @@ class AgentCanvas extends JPanel implements MouseListener
         this.gridHeight   = gridRows;
         this.gridWidth    = gridCols;
 
+        if (keepsLandscape(gridRows, gridCols, cellGUISize))
+        {
+            this.landscape = new BufferedImage(gridCols * cellGUISize + 1,
+                                               gridRows * cellGUISize + 1,
+                                               BufferedImage.TYPE_INT_RGB);
+            this.dirty     = new boolean[gridRows * gridCols];
+            drawLandscape();
+        }
+
         updateGrid();
     }
 
+    /**************************************************************************
+     * Method telling whether a canvas of the given size keeps a backing image
+     * of the landscape, which makes redrawing cheap; larger landscapes are
+     * better drawn by a RasterCanvas.
+     *
+     * @param  gridRows     the number of rows in the environment
+     * @param  gridCols     the number of cols in the environment
+     * @param  cellGUISize  the size of a cell
+     * @return  true if the backing image is small enough to keep
+     **************************************************************************/
+    public static boolean keepsLandscape(int gridRows, int gridCols, int cellGUISize)
+    {
+        long pixels = ((long)gridCols * cellGUISize + 1) * ((long)gridRows * cellGUISize + 1);
+        return pixels <= MAX_LANDSCAPE_PIXELS;
+    }
+
     /**************************************************************************
      * Accessor method returning the grid width (number of columns).
      * @return  an integer representing the grid width (number of columns)
@@ -56,6 +100,116 @@ class AgentCanvas extends JPanel implements MouseListener
      **************************************************************************/
     public int getGridHeight() { return gridHeight; }
 
+    /**************************************************************************
+     * Method to hand the canvas a new snapshot of the agents to draw, and
+     * redraw.  If the snapshot directly follows the one drawn last and lists
+     * the cells changed since, only those cells are redrawn and repainted.
+     * Must be called on the event dispatch thread.
+     *
+     * @param  snapshot  the AgentSnapshot to draw from now on
+     **************************************************************************/
+    public void setSnapshot(AgentSnapshot snapshot)
+    {
+        this.snapshot = snapshot;
+        if (landscape == null)
+        {
+            updateGrid();
+            return;
+        }
+
+        int[] changed = snapshot.getChangedCells();
+        if (changed == null || snapshot.getSequence() != drawnSequence + 1)
+        {
+            drawLandscape();
+            updateGrid();
+        }
+        else
+        {
+            drawCells(changed);
+            for (int i = 0; i < changed.length; i++)
+            {
+                int row = changed[i] / gridWidth;
+                int col = changed[i] % gridWidth;
+                repaint(viewportX + col * cellGUISize, viewportY + row * cellGUISize,
+                        cellGUISize, cellGUISize);
+            }
+
+            // the agent counts below the landscape
+            int infoY = viewportY + gridHeight * cellGUISize + 1;
+            repaint(0, infoY, getWidth(), Math.max(getHeight() - infoY, 0));
+        }
+        drawnSequence = snapshot.getSequence();
+    }
+
+    /**************************************************************************
+     * Method to redraw the whole backing image from the current snapshot.
+     **************************************************************************/
+    private void drawLandscape()
+    {
+        Graphics2D graphics = landscape.createGraphics();
+        int width  = gridWidth * cellGUISize;
+        int height = gridHeight * cellGUISize;
+
+        graphics.setBackground(getBackground());
+        graphics.clearRect(0, 0, width + 1, height + 1);
+
+        int numAgents = (snapshot == null) ? 0 : snapshot.size();
+        for (int i = 0; i < numAgents; i++)
+            drawAgent(graphics, i, 0, 0, width, height);
+        graphics.setClip(null);
+
+        drawGrid(graphics, 0, 0, width, height);
+        graphics.dispose();
+    }
+
+    /**************************************************************************
+     * Method to redraw the given cells of the backing image, each with its
+     * agents and the grid lines along its top and left edges.
+     *
+     * @param  cells  the cells (row * gridWidth + col) to redraw
+     **************************************************************************/
+    private void drawCells(int[] cells)
+    {
+        if (cells.length == 0)
+            return;
+
+        Graphics2D graphics = landscape.createGraphics();
+        graphics.setBackground(getBackground());
+        for (int i = 0; i < cells.length; i++)
+        {
+            int x = (cells[i] % gridWidth) * cellGUISize;
+            int y = (cells[i] / gridWidth) * cellGUISize;
+            graphics.clearRect(x, y, cellGUISize, cellGUISize);
+            dirty[cells[i]] = true;
+        }
+
+        // one pass over the snapshot finds the agents in the dirty cells
+        int width  = gridWidth * cellGUISize;
+        int height = gridHeight * cellGUISize;
+        for (int i = 0; i < snapshot.size(); i++)
+        {
+            int row = snapshot.getRow(i);
+            int col = snapshot.getCol(i);
+            if (row >= 0 && row < gridHeight && col >= 0 && col < gridWidth
+                && dirty[row * gridWidth + col])
+            {
+                drawAgent(graphics, i, 0, 0, width, height);
+            }
+        }
+        graphics.setClip(null);
+
+        graphics.setPaint(Color.black);
+        for (int i = 0; i < cells.length; i++)
+        {
+            int x = (cells[i] % gridWidth) * cellGUISize;
+            int y = (cells[i] / gridWidth) * cellGUISize;
+            graphics.drawLine(x, y, x, y + cellGUISize - 1);
+            graphics.drawLine(x, y, x + cellGUISize - 1, y);
+            dirty[cells[i]] = false;
+        }
+        graphics.dispose();
+    }
+
     /**************************************************************************
      * Method to redraw the canvas, simply by call repaint
      **************************************************************************/
@@ -67,8 +221,9 @@ class AgentCanvas extends JPanel implements MouseListener
 
     /**************************************************************************
      * Method implementing everything that should happen when the agent canvas
-     * is (re)drawn.  This method makes use of an ArrayList<AgentInterface>
-     * via the getListOfAgents() method that any agent class must implement.
+     * is (re)drawn.  Agents are drawn from the latest AgentSnapshot handed to
+     * setSnapshot(), never from the simulation's live agent lists, which the
+     * engine thread may be changing at the same time.
      *
      * @param   g  a Graphics component corresponding to this JPanel
      **************************************************************************/
@@ -128,57 +283,22 @@ class AgentCanvas extends JPanel implements MouseListener
         // in case there was a previous image, clear things out
         graphics.clearRect(0, 0, viewportWidth, viewportHeight);
 
-        // now draw the agents
-        ArrayList<AgentInterface> agentsList = simulation.getListOfAgents();
-        for (int i = 0; i < agentsList.size(); i++)
+        if (landscape != null)
         {
-            AgentInterface a = agentsList.get(i);
-
-			if(a == null){continue;}
-
-            // make sure not to draw any agent outside the image boundaries;
-            // remember that graphics x corresponds to column and graphics y
-            // corresponds to row
-            if ((a.getRow() >= 0) && (a.getCol() >= 0) &&
-                ((a.getRow() * cellGUISize) + cellGUISize <= renderHeight) &&
-                ((a.getCol() * cellGUISize) + cellGUISize <= renderWidth))
-            {
-                int guiX = viewportX + (a.getCol() * cellGUISize);
-                int guiY = viewportY + (a.getRow() * cellGUISize);
-
-                if (a.getType() == AgentInterface.AgentType.MACROPHAGE)
-                {
-                    graphics.setPaint(new Color(0,150,0)); // dark green
-                    graphics.fillRect(guiX, guiY, cellGUISize, cellGUISize);
-                }
-                else
-                {
-                    // draw the bacteria in red, and slightly smaller
-                    graphics.setPaint(Color.red);
-                    int size   = (int)(cellGUISize*0.6);
-                    int offset = (int)(cellGUISize*0.2); // 0.2 + 0.6 + 0.2 = 1.0
-                    graphics.fillRect(guiX + offset, guiY + offset, size + 1, size + 1);
-                }
-
-                // draw the agent's ID on top of colored agent box
-                String agentID    = "" + a.getID();
-                FontMetrics font  = graphics.getFontMetrics();
-                Rectangle2D rect  = font.getStringBounds(agentID, graphics);
-                int textWidth     = (int)(rect.getWidth());
-                int textHeight    = (int)(rect.getHeight());
-                int startX        = (cellGUISize - textWidth) / 2;
-                int startY        = (cellGUISize - textHeight) / 2;
-        
-                graphics.setPaint(Color.white);
-                // the x,y provided to draw string corresponds to lower LHS;
-                // hence, add textHeight to the y component
-                graphics.drawString(agentID, guiX + startX, 
-                                             guiY + startY + textHeight - 1);
-            }
+            graphics.drawImage(landscape, viewportX, viewportY, null);
+            graphics.setPaint(Color.black);
+        }
+        else
+        {
+            // now draw the agents
+            int numAgents = (snapshot == null) ? 0 : snapshot.size();
+            for (int i = 0; i < numAgents; i++)
+                drawAgent(graphics, i, viewportX, viewportY, renderWidth, renderHeight);
+            graphics.setClip(null);
+
+            // draw the grid last so that it will overlay the agent squares 
+            drawGrid(graphics, viewportX, viewportY, renderWidth, renderHeight);
         }
-
-        // draw the grid last so that it will overlay the agent squares 
-        drawGrid(graphics, viewportX, viewportY, renderWidth, renderHeight);
 
         // show the number of infected/uninfected agents
         drawAgentInfo(graphics, viewportX, viewportY, 
@@ -190,6 +310,68 @@ class AgentCanvas extends JPanel implements MouseListener
         graphics.dispose();
     }
 
+    /**************************************************************************
+     * Method to draw the i-th agent of the snapshot, clipped to its cell.
+     * Leaves the clip set.
+     *
+     * @param  graphics  a Graphics2D to draw with
+     * @param  i         index of the agent in the snapshot
+     * @param  x         horizontal position of the landscape's left edge
+     * @param  y         vertical position of the landscape's top edge
+     * @param  width     width of the landscape in pixels
+     * @param  height    height of the landscape in pixels
+     **************************************************************************/
+    private void drawAgent(Graphics2D graphics, int i, int x, int y,
+                           int width, int height)
+    {
+        int row = snapshot.getRow(i);
+        int col = snapshot.getCol(i);
+
+        // make sure not to draw any agent outside the image boundaries;
+        // remember that graphics x corresponds to column and graphics y
+        // corresponds to row
+        if ((row < 0) || (col < 0) ||
+            ((row * cellGUISize) + cellGUISize > height) ||
+            ((col * cellGUISize) + cellGUISize > width))
+            return;
+
+        int guiX = x + (col * cellGUISize);
+        int guiY = y + (row * cellGUISize);
+
+        // keep the ID from spilling into neighboring cells, which may not be
+        // redrawn when this one is
+        graphics.setClip(guiX, guiY, cellGUISize, cellGUISize);
+
+        if (snapshot.getType(i) == AgentInterface.AgentType.MACROPHAGE)
+        {
+            graphics.setPaint(new Color(0,150,0)); // dark green
+            graphics.fillRect(guiX, guiY, cellGUISize, cellGUISize);
+        }
+        else
+        {
+            // draw the bacteria in red, and slightly smaller
+            graphics.setPaint(Color.red);
+            int size   = (int)(cellGUISize*0.6);
+            int offset = (int)(cellGUISize*0.2); // 0.2 + 0.6 + 0.2 = 1.0
+            graphics.fillRect(guiX + offset, guiY + offset, size + 1, size + 1);
+        }
+
+        // draw the agent's ID on top of colored agent box
+        String agentID    = "" + snapshot.getID(i);
+        FontMetrics font  = graphics.getFontMetrics();
+        Rectangle2D rect  = font.getStringBounds(agentID, graphics);
+        int textWidth     = (int)(rect.getWidth());
+        int textHeight    = (int)(rect.getHeight());
+        int startX        = (cellGUISize - textWidth) / 2;
+        int startY        = (cellGUISize - textHeight) / 2;
+
+        graphics.setPaint(Color.white);
+        // the x,y provided to draw string corresponds to lower LHS;
+        // hence, add textHeight to the y component
+        graphics.drawString(agentID, guiX + startX, 
+                                     guiY + startY + textHeight - 1);
+    }
+
     /**************************************************************************
      * Method to draw a grid on top of (any) background and agents.
      * @param  graphics  a Graphics2D version of this JPanel
@@ -236,11 +418,11 @@ class AgentCanvas extends JPanel implements MouseListener
     private void drawAgentInfo(Graphics2D graphics, int x, int y,
                                int width, int height, Insets borders)
     {
-        final int verticalSpaceBeforeText = 20;
-
         // a string to appear at the bottom listing current counts
-        String agentInfo = "Macrophages: " + simulation.getNumMacrophages() 
-            + "    " + "Bacteria: " + simulation.getNumBacteria();
+        int numMacrophages = (snapshot == null) ? 0 : snapshot.getNumMacrophages();
+        int numBacteria    = (snapshot == null) ? 0 : snapshot.getNumBacteria();
+        String agentInfo = "Macrophages: " + numMacrophages 
+            + "    " + "Bacteria: " + numBacteria;
 
         // Find the size of string in the font being used by the current
         // Graphics2D context.
@@ -254,7 +436,7 @@ class AgentCanvas extends JPanel implements MouseListener
         // center text horizontally (max sure left side at least draws w/in
         // the viewport window -- i.e., x at least 0)
         graphics.drawString(agentInfo, Math.max(x + startStringAt, 0), 
-                                       y + height + verticalSpaceBeforeText);
+                                       y + height + VERTICAL_SPACE_BEFORE_TEXT);
 
         // Make sure the image plus text (which may be a new one loaded in) is
         // visible in the scroll pane.  If this isn't somewhere, scrollbars 
@@ -263,7 +445,7 @@ class AgentCanvas extends JPanel implements MouseListener
             new Dimension(
                     Math.max(width + borders.left + borders.right, textWidth),
                      height + borders.top + borders.bottom 
-                            + verticalSpaceBeforeText + textHeight));
+                            + VERTICAL_SPACE_BEFORE_TEXT + textHeight));
 
     }
 
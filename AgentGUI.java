@@ -1,5 +1,6 @@
 import javax.swing.*;  // for all the JWhatevers
 import java.awt.*;     // for BorderLayout
+import java.awt.event.*; // for ActionListener
 import java.util.Random;
 
 /**
@@ -9,19 +10,44 @@ import java.util.Random;
  */
 class AgentGUI extends WindowManager
 {
+    // default redraw period when none is given: 30 frames per second
+    public static final double DEFAULT_FRAME_DELAY = 1.0 / 30;
+
     private SimulationManager simulation;     // a reference to the simulation object
-    private AgentCanvas       canvas;         // for drawing the agents
+    private AgentCanvas       canvas;         // for drawing the agents, or
+    private RasterCanvas      raster;         // for drawing large landscapes
     private TimeSeriesDialog  dialog;         // for drawing time series
+    private boolean           feedDialog;     // counts come from snapshots
     private double               lastUpdateTime; // for updating dialog
+    private AgentSnapshot     lastSnapshot;   // last snapshot handed to canvas
+    private javax.swing.Timer frameTimer;     // samples snapshots on the EDT
 
     /**************************************************************************
-     * Constructor for the agent GUI window.
+     * Constructor for the agent GUI window, redrawing at the default rate.
      *
      * @param  theSimulation  a SimulationManager reference to the simulation object
      * @param  gridSize       number of rows (same as columns) in the environment
      * @param  guiCellWidth   width of each cell drawn in the gui
      **************************************************************************/
     public AgentGUI(SimulationManager theSimulation, int gridSize, int guiCellWidth)
+    {
+        this(theSimulation, gridSize, guiCellWidth, DEFAULT_FRAME_DELAY);
+    }
+
+    /**************************************************************************
+     * Constructor for the agent GUI window.  The window observes the
+     * simulation asynchronously: a Swing timer fires every frameDelay seconds
+     * on the event dispatch thread, draws the latest snapshot published by
+     * the engine, and asks the engine for the next one.  The engine itself
+     * never waits on the gui.  Must be called on the event dispatch thread.
+     *
+     * @param  theSimulation  a SimulationManager reference to the simulation object
+     * @param  gridSize       number of rows (same as columns) in the environment
+     * @param  guiCellWidth   width of each cell drawn in the gui
+     * @param  frameDelay     delay in seconds between redraws
+     **************************************************************************/
+    public AgentGUI(SimulationManager theSimulation, int gridSize, int guiCellWidth,
+                    double frameDelay)
     {
         // call the WindowManager constructor, and add a BorderLayout
         super("Agent-Based Simulation", 600, 600);
@@ -30,15 +56,38 @@ class AgentGUI extends WindowManager
         // hang on to a reference to the SimulationManager object
         this.simulation = theSimulation;
 
-        // create the AgentCanvas for drawing, and then add to window's center
-        this.canvas = new AgentCanvas(theSimulation, 
-                                      gridSize, gridSize, guiCellWidth);
-        this.add(new JScrollPane(this.canvas), BorderLayout.CENTER);
+        // create the AgentCanvas for drawing, and then add to window's center;
+        // landscapes too large for it get a zoomable RasterCanvas instead
+        if (AgentCanvas.keepsLandscape(gridSize, gridSize, guiCellWidth))
+        {
+            this.canvas = new AgentCanvas(theSimulation, 
+                                          gridSize, gridSize, guiCellWidth);
+            this.add(new JScrollPane(this.canvas), BorderLayout.CENTER);
+        }
+        else
+        {
+            this.raster = new RasterCanvas(gridSize);
+            this.add(this.raster, BorderLayout.CENTER);
+        }
 
+        // the dialog plots the counts the engine records; engines that
+        // record none get counts from the snapshots instead
         int maxAgents = gridSize * gridSize;
-        this.dialog = new TimeSeriesDialog(maxAgents, (int)theSimulation.getMaxTime());
+        TimeSeries series = theSimulation.getTimeSeries();
+        this.feedDialog = (series == null);
+        if (this.feedDialog)
+            series = new TimeSeries(2, SimulationManager.DEFAULT_SAMPLE_INTERVAL);
+        this.dialog = new TimeSeriesDialog(maxAgents, (int)theSimulation.getMaxTime(),
+                                           series);
 
         this.lastUpdateTime = 0;
+
+        int msecs = (int)Math.max(1, Math.round(frameDelay * 1000));
+        this.frameTimer = new javax.swing.Timer(msecs, new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e) { update(); }
+        });
+        this.frameTimer.start();
     }
 
     /**************************************************************************
@@ -46,30 +95,45 @@ class AgentGUI extends WindowManager
      * environment.
      * @return an integer representing the number of rows (columns) in the environment
      **************************************************************************/
-    public int getGridSize() { return(canvas.getGridWidth()); }
+    public int getGridSize()
+    {
+        return (canvas != null) ? canvas.getGridWidth() : raster.getGridSize();
+    }
 
     /**************************************************************************
-     * Method to redraw the canvas in the GUI window.  This method calls the
-     * updateGrid() method in AgentCanvas which updates the GUI landsacpe by
-     * querying the simulation object.
-     *
-     * @param   delayInSecs  a double representing the delay between draws
+     * Method called on every frame (on the event dispatch thread) to redraw
+     * the canvas in the GUI window.  If the engine has published a new
+     * snapshot since the last frame, it is handed to the canvas, which then
+     * repaints.  The time series dialog plots the counts recorded since the
+     * last frame.  Finally a fresh snapshot is requested for the next frame.
      **************************************************************************/
-    public void update(double delayInSecs) throws InterruptedException
+    private void update()
     { 
-        // update the main GUI
-        canvas.updateGrid(); 
-        long msecs = (long)(delayInSecs * 1000); 
-        Thread.sleep(msecs);
-
-        // and update the time series dialog -- only on integer time steps
-        double t = simulation.getTime();
-        if (t > lastUpdateTime)
+        AgentSnapshot snapshot = simulation.getSnapshot();
+        if (snapshot != null && snapshot != lastSnapshot)
         {
-            this.dialog.updateCounts(simulation.getNumMacrophages(), 
-                                     simulation.getNumBacteria());
-            lastUpdateTime += .1;
+            lastSnapshot = snapshot;
+
+            // update the main GUI
+            if (canvas != null)
+                canvas.setSnapshot(snapshot);
+            else
+                raster.setSnapshot(snapshot);
+
+            // and update the time series dialog -- if the engine does not
+            // record counts, one point per .1 of simulated time that has
+            // passed since the last frame
+            double t = snapshot.getTime();
+            while (feedDialog && t > lastUpdateTime)
+            {
+                this.dialog.updateCounts(snapshot.getNumMacrophages(), 
+                                         snapshot.getNumBacteria());
+                lastUpdateTime += SimulationManager.DEFAULT_SAMPLE_INTERVAL;
+            }
         }
+        if (!feedDialog)
+            this.dialog.refresh();
+        simulation.requestSnapshot();
     }
     
 }
@@ -0,0 +1,81 @@
+import java.util.*;
+
+/**
+ * This class holds one population of agents (e.g., all bacteria) with
+ * constant-time add and remove.  Each agent remembers its position in the
+ * registry (kept in the AgentStore), so removing it just moves the last agent
+ * into the vacated position instead of scanning and shifting a list.  The
+ * order of agents is therefore not preserved across removals.
+ *
+ * @param <T> the type of agent held
+ */
+public class AgentRegistry<T extends Agent>
+{
+	private Agent[] agents;  // agents in positions 0..size-1
+	private int     size;
+
+	/**************************************************************************
+	 * Constructs an empty registry with room for the given number of agents
+	 * before the backing array needs to grow.
+	 *
+	 * @param capacity  initial number of agents the registry can hold
+	 **************************************************************************/
+	public AgentRegistry(int capacity)
+	{
+		agents = new Agent[Math.max(capacity, 1)];
+		size   = 0;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the number of agents in the registry.
+	 * @return an integer representing the population size
+	 **************************************************************************/
+	public int size()        { return(size); }
+
+	/**************************************************************************
+	 * Accessor method that returns the agent at position i.
+	 * @param i  position of the agent, 0 <= i < size()
+	 * @return the agent at that position
+	 **************************************************************************/
+	@SuppressWarnings("unchecked")
+	public T get(int i)
+	{
+		return (T)agents[i];
+	}
+
+	/**************************************************************************
+	 * Adds an agent at the end of the registry.
+	 * @param a  the agent to add; must not already be registered
+	 **************************************************************************/
+	public void add(T a)
+	{
+		if(size == agents.length)
+		{
+			agents = Arrays.copyOf(agents, agents.length * 2);
+		}
+		agents[size] = a;
+		a.setRegistryIndex(size);
+		size++;
+	}
+
+	/**************************************************************************
+	 * Removes an agent in O(1) by moving the last agent into its position;
+	 * does nothing if the agent is not in this registry.
+	 * @param a  the agent to remove
+	 **************************************************************************/
+	public void remove(T a)
+	{
+		int i = a.getRegistryIndex();
+		if(i < 0 || i >= size || agents[i] != a)
+		{
+			return;
+		}
+
+		size--;
+		Agent last = agents[size];
+		agents[i] = last;
+		last.setRegistryIndex(i);
+		agents[size] = null;
+		a.setRegistryIndex(-1);
+	}
+}
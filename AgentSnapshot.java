@@ -0,0 +1,122 @@
+import java.util.ArrayList;
+
+/**
+ * This class holds an immutable copy of the agent positions and population
+ * counts at one instant of simulated time.  The engine thread builds a
+ * snapshot between events and hands it to the gui, so that the gui never
+ * reads the simulation's live (and constantly mutating) agent lists.
+ */
+public final class AgentSnapshot
+{
+    private final double time;            // simulated time of the copy
+    private final int    numMacrophages;  // population counts at that time
+    private final int    numBacteria;
+
+    private final int[]     ids;          // one entry per agent, same index
+    private final int[]     rows;         //   across all four arrays
+    private final int[]     cols;
+    private final boolean[] macrophage;   // true for macrophage, false for bacterium
+
+    private final long  sequence;         // number of the snapshot, counting from 1
+    private final int[] changedCells;     // cells changed since the previous snapshot
+
+    /**************************************************************************
+     * Constructs a snapshot by copying the current state of the simulation.
+     * Must be called from the thread running the simulation.
+     *
+     * @param  simulation  the simulation to copy agents and counts from
+     **************************************************************************/
+    public AgentSnapshot(SimulationManager simulation)
+    {
+        this(simulation, 0, null);
+    }
+
+    /**************************************************************************
+     * Constructs a snapshot by copying the current state of the simulation,
+     * recording which cells changed since the previous snapshot.  Must be
+     * called from the thread running the simulation.
+     *
+     * @param  simulation    the simulation to copy agents and counts from
+     * @param  sequence      number of this snapshot; consecutive snapshots
+     *                       of one run have consecutive numbers
+     * @param  changedCells  cells changed since snapshot sequence - 1, or
+     *                       null if unknown (everything may have changed)
+     **************************************************************************/
+    public AgentSnapshot(SimulationManager simulation, long sequence, int[] changedCells)
+    {
+        this.sequence       = sequence;
+        this.changedCells   = changedCells;
+        this.time           = simulation.getTime();
+        this.numMacrophages = simulation.getNumMacrophages();
+        this.numBacteria    = simulation.getNumBacteria();
+
+        ArrayList<AgentInterface> agents = simulation.getListOfAgents();
+        int n = agents.size();
+
+        this.ids        = new int[n];
+        this.rows       = new int[n];
+        this.cols       = new int[n];
+        this.macrophage = new boolean[n];
+
+        for (int i = 0; i < n; i++)
+        {
+            AgentInterface a = agents.get(i);
+            ids[i]        = a.getID();
+            rows[i]       = a.getRow();
+            cols[i]       = a.getCol();
+            macrophage[i] = (a.getType() == AgentInterface.AgentType.MACROPHAGE);
+        }
+    }
+
+    /**************************************************************************
+     * Accessor method returning the simulated time the snapshot was taken.
+     * @return a double representing the simulated time of the snapshot
+     **************************************************************************/
+    public double getTime()          { return time; }
+
+    /**************************************************************************
+     * Accessor method returning the number of macrophages in the snapshot.
+     * @return an integer representing the number of macrophages present
+     **************************************************************************/
+    public int getNumMacrophages()   { return numMacrophages; }
+
+    /**************************************************************************
+     * Accessor method returning the number of bacteria in the snapshot.
+     * @return an integer representing the number of bacteria present
+     **************************************************************************/
+    public int getNumBacteria()      { return numBacteria; }
+
+    /**************************************************************************
+     * Accessor method returning the number of the snapshot within its run.
+     * @return a long representing the sequence number, 0 if not numbered
+     **************************************************************************/
+    public long getSequence()        { return sequence; }
+
+    /**************************************************************************
+     * Accessor method returning the cells (row * gridSize + col) changed
+     * since the snapshot numbered getSequence() - 1.  The array must not be
+     * modified.
+     * @return the changed cells, or null if everything may have changed
+     **************************************************************************/
+    public int[] getChangedCells()   { return changedCells; }
+
+    /**************************************************************************
+     * Accessor method returning the number of agents copied.
+     * @return an integer representing the number of agents in the snapshot
+     **************************************************************************/
+    public int size()                { return ids.length; }
+
+    /**************************************************************************
+     * Accessor methods returning the id, row, column and type of the i-th
+     * agent in the snapshot.
+     * @param  i  index of the agent, 0 <= i < size()
+     **************************************************************************/
+    public int getID(int i)          { return ids[i]; }
+    public int getRow(int i)         { return rows[i]; }
+    public int getCol(int i)         { return cols[i]; }
+    public AgentInterface.AgentType getType(int i)
+    {
+        return macrophage[i] ? AgentInterface.AgentType.MACROPHAGE
+                             : AgentInterface.AgentType.BACTERIUM;
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.*;
+
+/**
+ * This class is the struct-of-arrays storage backend for agent state.  Rather
+ * than every agent being a heap object carrying its own fields and its own
+ * double[] of next event times, each piece of state is kept in a primitive
+ * column indexed by the agent's slot: id, row, column, type, next move time,
+ * next divide/eat time, and its position in its population's
+ * AgentRegistry.
+ *
+ * Slots of agents that leave the simulation (eaten bacteria) go on a free
+ * list and are handed out again to new agents, so the columns only ever
+ * grow to the peak population.  Agent objects are thin handles onto a slot,
+ * which keeps the AgentInterface accessors used by the gui working unchanged;
+ * the store keeps a reference to each handle so that a slot found in the
+ * Grid can be resolved back to its agent.
+ */
+public class AgentStore
+{
+	private static final byte FREE       = -1;  // type code of an unused slot
+	private static final byte MACROPHAGE = 0;
+	private static final byte BACTERIUM  = 1;
+
+	private int[]    ids;          // agent id
+	private int[]    rows;         // current row, -1 if not placed
+	private int[]    cols;         // current column, -1 if not placed
+	private byte[]   types;        // MACROPHAGE, BACTERIUM or FREE
+	private double[] nextMoves;    // time of the agent's next move
+	private double[] nextActions;  // time of next divide (bacteria) or eat (macrophages)
+	private int[]    listIndices;  // position in its AgentRegistry, -1 if none
+	private Agent[]  agents;       // the handle owning each slot, null if free
+
+	private int   lastID;          // id of the most recently created agent
+
+	private int[] freeSlots;       // stack of released slots available for reuse
+	private int   numFree;
+	private int   numUsed;         // slots handed out so far (live + free)
+
+	/**************************************************************************
+	 * Constructs an empty store.
+	 **************************************************************************/
+	public AgentStore()
+	{
+		this(16);
+	}
+
+	/**************************************************************************
+	 * Constructs an empty store with room for the given number of agents
+	 * before the columns need to grow.
+	 *
+	 * @param capacity  initial number of slots
+	 **************************************************************************/
+	public AgentStore(int capacity)
+	{
+		capacity    = Math.max(capacity, 1);
+		ids         = new int[capacity];
+		rows        = new int[capacity];
+		cols        = new int[capacity];
+		types       = new byte[capacity];
+		nextMoves   = new double[capacity];
+		nextActions = new double[capacity];
+		listIndices = new int[capacity];
+		agents      = new Agent[capacity];
+		freeSlots   = new int[16];
+		numFree     = 0;
+		numUsed     = 0;
+		lastID      = 0;
+	}
+
+	/**************************************************************************
+	 * Takes a slot for a new agent of the given type, reusing a released slot
+	 * when one is available, and gives the agent the next id.  Ids count up
+	 * from 1 per store, so every simulation has its own id space.  The slot
+	 * starts unplaced (row and column -1) and with both next event times at
+	 * Double.MAX_VALUE.
+	 *
+	 * @param agent  the handle that will refer to the slot
+	 * @param type   the type of the new agent
+	 * @return the slot index of the new agent
+	 **************************************************************************/
+	public int allocate(Agent agent, AgentInterface.AgentType type)
+	{
+		int slot;
+		if(numFree > 0)
+		{
+			slot = freeSlots[--numFree];
+		}
+		else
+		{
+			if(numUsed == ids.length)
+			{
+				grow();
+			}
+			slot = numUsed++;
+		}
+
+		ids[slot]         = ++lastID;
+		rows[slot]        = -1;
+		cols[slot]        = -1;
+		types[slot]       = (type == AgentInterface.AgentType.MACROPHAGE) ? MACROPHAGE : BACTERIUM;
+		nextMoves[slot]   = Double.MAX_VALUE;
+		nextActions[slot] = Double.MAX_VALUE;
+		listIndices[slot] = -1;
+		agents[slot]      = agent;
+		return slot;
+	}
+
+	/**************************************************************************
+	 * Gives a slot back to the store once its agent has left the simulation.
+	 * Any handle still referring to the slot must no longer be used.
+	 *
+	 * @param slot  the slot to release
+	 **************************************************************************/
+	public void release(int slot)
+	{
+		if(types[slot] == FREE)
+		{
+			throw new IllegalStateException("slot " + slot + " is already free");
+		}
+		types[slot]  = FREE;
+		rows[slot]   = -1;
+		cols[slot]   = -1;
+		agents[slot] = null;
+
+		if(numFree == freeSlots.length)
+		{
+			freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+		}
+		freeSlots[numFree++] = slot;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the number of live agents in the store.
+	 * @return an integer representing the number of allocated slots
+	 **************************************************************************/
+	public int size()                { return(numUsed - numFree); }
+
+	/**************************************************************************
+	 * Accessor method that returns the number of slots the columns can hold
+	 * without growing.
+	 * @return an integer representing the current column length
+	 **************************************************************************/
+	public int capacity()            { return(ids.length); }
+
+	/**************************************************************************
+	 * Grows the columns, if needed, so that at least minCapacity slots exist.
+	 * Growing replaces the column arrays, so it must not happen while other
+	 * threads are reading or writing agent state; an engine running agents
+	 * in parallel calls this between phases so allocate() never has to grow.
+	 *
+	 * @param minCapacity  number of slots required
+	 **************************************************************************/
+	public void ensureCapacity(int minCapacity)
+	{
+		while(ids.length < minCapacity)
+		{
+			grow();
+		}
+	}
+
+	/**************************************************************************
+	 * Tells whether the slot currently holds a live agent.
+	 * @param slot  the slot to check
+	 * @return true if the slot has been allocated and not released
+	 **************************************************************************/
+	public boolean isLive(int slot)
+	{
+		return slot >= 0 && slot < numUsed && types[slot] != FREE;
+	}
+
+	// ------------------------------------------------------------------------
+	// column accessors, all indexed by slot
+	// ------------------------------------------------------------------------
+
+	public Agent getAgent(int slot)            { return(agents[slot]); }
+
+	public int getID(int slot)                 { return(ids[slot]); }
+	public int getLastID()                     { return(lastID); }
+
+	// only for restoring a checkpoint, where agents keep their saved ids
+	void setID(int slot, int id)               { ids[slot] = id; }
+	void setLastID(int id)                     { lastID = id; }
+
+	public int getRow(int slot)                { return(rows[slot]); }
+	public int getCol(int slot)                { return(cols[slot]); }
+	public void setRowCol(int slot, int row, int col)
+	{
+		rows[slot] = row;
+		cols[slot] = col;
+	}
+
+	public AgentInterface.AgentType getType(int slot)
+	{
+		return (types[slot] == MACROPHAGE) ? AgentInterface.AgentType.MACROPHAGE
+		                                   : AgentInterface.AgentType.BACTERIUM;
+	}
+
+	public double getNextMove(int slot)              { return(nextMoves[slot]); }
+	public void setNextMove(int slot, double time)   { nextMoves[slot] = time; }
+
+	public double getNextAction(int slot)            { return(nextActions[slot]); }
+	public void setNextAction(int slot, double time) { nextActions[slot] = time; }
+
+	int getRegistryIndex(int slot)                   { return(listIndices[slot]); }
+	void setRegistryIndex(int slot, int index)       { listIndices[slot] = index; }
+
+	private void grow()
+	{
+		int capacity = ids.length * 2;
+		ids         = Arrays.copyOf(ids, capacity);
+		rows        = Arrays.copyOf(rows, capacity);
+		cols        = Arrays.copyOf(cols, capacity);
+		types       = Arrays.copyOf(types, capacity);
+		nextMoves   = Arrays.copyOf(nextMoves, capacity);
+		nextActions = Arrays.copyOf(nextActions, capacity);
+		listIndices = Arrays.copyOf(listIndices, capacity);
+		agents      = Arrays.copyOf(agents, capacity);
+	}
+}
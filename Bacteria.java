@@ -1,25 +1,26 @@
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 public class Bacteria extends Agent
 {
-	public Bacteria() 
+	public Bacteria(AgentStore store, RandomGenerator rand) 
 	{
-			super(AgentType.BACTERIUM);
+			super(store, rand, AgentType.BACTERIUM);
 	}
 	
-	public Bacteria(int x, int y)
+	public Bacteria(AgentStore store, RandomGenerator rand, int x, int y)
 	{
-			super(AgentType.BACTERIUM);
+			super(store, rand, AgentType.BACTERIUM);
 			setRowCol(x,y);	
-			nextEvents[1] = Simulation.rand.nextDouble();
+			store.setNextAction(slot, rand.nextDouble());
 	}
 
-    public void scheduleNextDivide(double time)
+    public void scheduleNextDivide(double time, RandomGenerator rand)
     {
-    	nextEvents[1] = time + Simulation.rand.nextDouble();
+    	store.setNextAction(slot, time + rand.nextDouble());
     }
 
-	protected Cell getPreferredMove(ArrayList<Cell> list, Cell[][] landscape)
+	protected int getPreferredMove(Neighborhood list, Grid landscape, RandomGenerator rand)
 	{
 //		System.out.println("Bacteria's method");
 
@@ -28,11 +29,11 @@ public class Bacteria extends Agent
 
 		if(list.size() == 0)
 		{
-			Cell cell = landscape[row][col];
+			int cell = landscape.index(row, col);
 			return cell;
 		}
 
-		int index = Simulation.rand.nextInt(list.size());	
+		int index = rand.nextInt(list.size());	
 		return list.get(index);		
 	}
 }
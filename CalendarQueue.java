@@ -0,0 +1,417 @@
+import java.util.*;
+
+/**
+ * This class implements a calendar queue (R. Brown, CACM 1988), an
+ * EventScheduler with amortised O(1) insertion, removal and access to the
+ * next event when event times are spread evenly over the near future -- as
+ * they are here, where almost every new event falls within one time unit of
+ * the clock.
+ *
+ * Time is cut into buckets of equal width, like the days of a year, and the
+ * buckets are reused year after year: an event goes in bucket
+ * floor(time / width) modulo the number of buckets, in a short list sorted
+ * on time.  The next event is found by walking the days from the current
+ * one, taking the first list head that falls in this year's day; if a
+ * whole year passes without one, the heads are searched directly.
+ *
+ * With a million events nearly every entry the queue touches is a cache
+ * miss, so an entry's time and its link are packed side by side in one
+ * array, and the lists are singly linked: the event most often moved or
+ * removed is the next one, at the head of its list, and any other is only
+ * a short walk down its list.  Ties need no stamps either: an event is
+ * always linked in ahead of the events already queued for the same time,
+ * which is the order EventHeap gives, so both hand out the same sequence
+ * of events.
+ *
+ * The calendar tunes itself.  The number of buckets doubles when there are
+ * more events than buckets and halves when there are fewer than one per
+ * four, and each time the width is re-estimated as twice the mean gap
+ * between the earliest events.  Should the spread of event times change
+ * while the population does not -- or have changed while it grew -- the
+ * work per operation rises, and the calendar is rebuilt with a new width.
+ * An event's index (see Event) is its entry in this queue.
+ */
+public class CalendarQueue implements EventScheduler
+{
+	private static final int MIN_BUCKETS = 16;
+	private static final int SAMPLE_SIZE = 256;  // times sampled to estimate the width
+	private static final int MAX_STEPS   = 1;    // mean work per operation before retuning
+
+	// entries, indexed by Event.getIndex()
+	private Event[]  events;   // null if the entry is free
+	private long[]   nodes;    // two per entry: raw bits of the time, then the next entry
+	private int      free = -1;  // first free entry, chained through the next links
+	private int      used;       // entries ever handed out
+	private int      size;       // number of events currently queued
+
+	private int[]    heads;    // earliest entry of every bucket, -1 if empty
+	private int      mask;     // heads.length - 1, a power of two less one
+	private double   width = 1.0;  // simulated time spanned by a bucket
+	private long     current;  // day (floor(time / width)) the search has reached
+	private int      first = -1;   // entry of the next event, -1 if not yet found
+
+	private long     operations;  // insertions and searches since the last tuning
+	private long     steps;       // list entries and buckets they walked past
+
+	/**************************************************************************
+	 * Constructs an empty calendar queue.
+	 **************************************************************************/
+	public CalendarQueue()
+	{
+		this(16);
+	}
+
+	/**************************************************************************
+	 * Constructs an empty calendar queue with room for the given number of
+	 * events before its entry arrays need to grow.  The calendar itself
+	 * starts small and grows with the number of events queued.
+	 *
+	 * @param capacity  initial number of events the queue can hold
+	 **************************************************************************/
+	public CalendarQueue(int capacity)
+	{
+		capacity = Math.max(capacity, 1);
+		events = new Event[capacity];
+		nodes  = new long[2 * capacity];
+		heads  = new int[MIN_BUCKETS];
+		mask   = MIN_BUCKETS - 1;
+		Arrays.fill(heads, -1);
+	}
+
+	public int size()        { return(size); }
+	public boolean isEmpty() { return(size == 0); }
+
+	/**************************************************************************
+	 * Accessor method that returns the current width of a bucket.
+	 * @return the simulated time spanned by one bucket
+	 **************************************************************************/
+	public double getBucketWidth() { return(width); }
+
+	/**************************************************************************
+	 * Accessor method that returns the current number of buckets.
+	 * @return the number of buckets, a power of two
+	 **************************************************************************/
+	public int getNumBuckets()     { return(mask + 1); }
+
+	public Event peek()
+	{
+		if(size == 0)
+		{
+			return null;
+		}
+		if(first < 0)
+		{
+			first = findFirst();
+		}
+		return events[first];
+	}
+
+	public Event poll()
+	{
+		Event e = peek();
+		remove(e);
+		return e;
+	}
+
+	public boolean contains(Event e)
+	{
+		int f = e.getIndex();
+		return f >= 0 && f < used && events[f] == e;
+	}
+
+	public void update(Event e)
+	{
+		int f;
+		if(contains(e))
+		{
+			f = e.getIndex();
+			unlink(f);
+		}
+		else
+		{
+			f = allocate(e);
+			size++;
+		}
+		nodes[2 * f] = Double.doubleToRawLongBits(e.getTime());
+		link(f, false);
+
+		if(size > mask + 1)
+		{
+			rebuild(2 * (mask + 1));
+		}
+		else if(operations > 4 * (mask + 1) && operations > 1024)
+		{
+			retuneIfSlow();
+		}
+	}
+
+	public void remove(Event e)
+	{
+		if(e == null || !contains(e))
+		{
+			return;
+		}
+		int f = e.getIndex();
+		unlink(f);
+		events[f] = null;
+		setNext(f, free);
+		free = f;
+		size--;
+		e.setIndex(-1);
+
+		if(size < (mask + 1) / 4 && mask + 1 > MIN_BUCKETS)
+		{
+			rebuild((mask + 1) / 2);
+		}
+	}
+
+	public ArrayList<Event> toList()
+	{
+		// events queued for the same time share a bucket and are listed in
+		// order there, so a stable sort on time keeps them in order
+		Integer[] order = new Integer[size];
+		int n = 0;
+		for (int b = 0; b <= mask; b++)
+		{
+			for (int e = heads[b]; e >= 0; e = next(e))
+			{
+				order[n++] = e;
+			}
+		}
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer a, Integer b)
+			{
+				if(key(a) < key(b)) return -1;
+				if(key(b) < key(a)) return 1;
+				return 0;
+			}
+		});
+
+		ArrayList<Event> list = new ArrayList<Event>();
+		for (int i = 0; i < size; i++)
+		{
+			list.add(events[order[i]]);
+		}
+		return list;
+	}
+
+	// time entry e is queued at
+	private double key(int e)
+	{
+		return Double.longBitsToDouble(nodes[2 * e]);
+	}
+
+	// next entry in e's bucket, or in the free list; -1 ends
+	private int next(int e)
+	{
+		return (int)nodes[2 * e + 1];
+	}
+
+	private void setNext(int e, int n)
+	{
+		nodes[2 * e + 1] = n;
+	}
+
+	// the day a time falls on; never decreases as the time increases
+	private long day(double key)
+	{
+		return (long)(key / width);
+	}
+
+	// hands out a free entry for the event, growing the arrays if need be
+	private int allocate(Event event)
+	{
+		int e;
+		if(free >= 0)
+		{
+			e    = free;
+			free = next(e);
+		}
+		else
+		{
+			if(used == events.length)
+			{
+				int capacity = events.length * 2;
+				events = Arrays.copyOf(events, capacity);
+				nodes  = Arrays.copyOf(nodes, 2 * capacity);
+			}
+			e = used++;
+		}
+		events[e] = event;
+		event.setIndex(e);
+		return e;
+	}
+
+	// puts an entry into its bucket's sorted list, ahead of any entry queued
+	// for the same time, or behind them if it is being relinked
+	private void link(int e, boolean relinking)
+	{
+		double k      = key(e);
+		long   d      = day(k);
+		int    bucket = (int)(d & mask);
+		int    p      = -1;
+		int    q      = heads[bucket];
+		while(q >= 0 && (key(q) < k || relinking && key(q) == k))
+		{
+			p = q;
+			q = next(q);
+			steps++;
+		}
+		operations++;
+
+		setNext(e, q);
+		if(p >= 0)
+		{
+			setNext(p, e);
+		}
+		else
+		{
+			heads[bucket] = e;
+		}
+
+		if(d < current)
+		{
+			current = d;  // the search must not start past any event
+		}
+		if(first >= 0 && k <= key(first) && !relinking)
+		{
+			first = e;
+		}
+	}
+
+	// takes an entry out of its bucket's list
+	private void unlink(int e)
+	{
+		int bucket = (int)(day(key(e)) & mask);
+		int p      = heads[bucket];
+		if(p == e)
+		{
+			heads[bucket] = next(e);
+		}
+		else
+		{
+			while(next(p) != e)
+			{
+				p = next(p);
+				steps++;
+			}
+			setNext(p, next(e));
+		}
+		if(e == first)
+		{
+			first = -1;
+		}
+	}
+
+	// finds the entry of the next event; the queue must not be empty
+	private int findFirst()
+	{
+		operations++;
+		long d = current;
+		for (int i = 0; i <= mask; i++, d++)
+		{
+			int h = heads[(int)(d & mask)];
+			if(h >= 0 && day(key(h)) == d)
+			{
+				current = d;
+				steps  += i;
+				return h;
+			}
+		}
+
+		// a whole year without an event: search the heads directly
+		int best = -1;
+		for (int b = 0; b <= mask; b++)
+		{
+			int h = heads[b];
+			if(h >= 0 && (best < 0 || key(h) < key(best)))
+			{
+				best = h;
+			}
+		}
+		steps  += 2 * (mask + 1);
+		current = day(key(best));
+		return best;
+	}
+
+	// rebuilds the calendar with a new width if operations have been slow
+	private void retuneIfSlow()
+	{
+		if(steps > MAX_STEPS * operations)
+		{
+			rebuild(mask + 1);
+		}
+		operations = 0;
+		steps      = 0;
+	}
+
+	// re-estimates the width and relinks every entry into numBuckets buckets
+	private void rebuild(int numBuckets)
+	{
+		int[] old = heads;
+		width = estimateWidth();
+		heads = new int[numBuckets];
+		mask  = numBuckets - 1;
+		Arrays.fill(heads, -1);
+		current = Long.MAX_VALUE;
+		first   = -1;
+
+		for (int b = 0; b < old.length; b++)
+		{
+			for (int e = old[b]; e >= 0; )
+			{
+				int n = next(e);
+				link(e, true);
+				e = n;
+			}
+		}
+		if(size == 0)
+		{
+			current = 0;
+		}
+		operations = 0;
+		steps      = 0;
+	}
+
+	// twice the mean gap between the earliest events, estimated from
+	// an even sample of the finite event times; the old width if there is
+	// too little to go on
+	private double estimateWidth()
+	{
+		int finite = 0;
+		for (int e = 0; e < used; e++)
+		{
+			if(events[e] != null && key(e) < Double.MAX_VALUE)
+			{
+				finite++;
+			}
+		}
+		if(finite < 2)
+		{
+			return width;
+		}
+
+		int      every  = Math.max(1, finite / SAMPLE_SIZE);
+		double[] sample = new double[(finite + every - 1) / every];
+		int      n      = 0;
+		int      seen   = 0;
+		for (int e = 0; e < used && n < sample.length; e++)
+		{
+			if(events[e] != null && key(e) < Double.MAX_VALUE && seen++ % every == 0)
+			{
+				sample[n++] = key(e);
+			}
+		}
+		Arrays.sort(sample, 0, n);
+
+		// the earliest quarter of the sample stands for finite * j / n events
+		int    j      = Math.max(1, n / 4);
+		double spread = sample[j] - sample[0];
+		if(!(spread > 0))
+		{
+			return width;
+		}
+		return 2 * spread * n / ((double)j * finite);
+	}
+}
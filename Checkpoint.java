@@ -0,0 +1,173 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * This class writes and reads checkpoints: the complete state of a
+ * Simulation in a compact binary file, from which the run can be resumed and
+ * will then continue exactly as if it had never stopped.
+ *
+ * A checkpoint is a header (magic number and format version) followed by the
+ * simulation's own state, see Simulation.writeState().  All values are
+ * written big-endian through a direct ByteBuffer onto a FileChannel.  A new
+ * checkpoint is first written to a temporary file next to the target and
+ * then moved over it, so a crash while saving never leaves a truncated
+ * checkpoint behind.
+ */
+public class Checkpoint
+{
+	private static final int MAGIC   = 0x41425343; // "ABSC"
+	private static final int VERSION = 4;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**************************************************************************
+	 * Writes a checkpoint of the simulation's current state.  Must be called
+	 * from the thread running the simulation, between two events.
+	 *
+	 * @param sim   the simulation to save
+	 * @param file  the checkpoint file, replaced if it exists
+	 * @throws IOException if the file cannot be written
+	 **************************************************************************/
+	public static void save(Simulation sim, Path file) throws IOException
+	{
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (Output out = new Output(FileChannel.open(tmp, CREATE, TRUNCATE_EXISTING, WRITE)))
+		{
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			sim.writeState(out);
+		}
+
+		try
+		{
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**************************************************************************
+	 * Reads a checkpoint back into a new Simulation, ready to run on from
+	 * where the saved one stopped.
+	 *
+	 * @param file  the checkpoint file
+	 * @return the restored simulation
+	 * @throws IOException if the file cannot be read or is not a checkpoint
+	 **************************************************************************/
+	public static Simulation load(Path file) throws IOException
+	{
+		try (Input in = new Input(FileChannel.open(file, READ)))
+		{
+			if(in.getInt() != MAGIC)
+			{
+				throw new IOException(file + " is not a simulation checkpoint");
+			}
+			int version = in.getInt();
+			if(version != VERSION)
+			{
+				throw new IOException(file + " has checkpoint format " + version
+					+ ", expected " + VERSION);
+			}
+			return Simulation.readState(in);
+		}
+	}
+
+	/**
+	 * Buffered writer of primitive values onto a channel.  Closing it
+	 * flushes the buffer and forces the data to the device.
+	 */
+	static class Output implements Closeable
+	{
+		private final FileChannel channel;
+		private final ByteBuffer  buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		Output(FileChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		void putByte(byte v) throws IOException     { ensure(1); buffer.put(v); }
+		void putInt(int v) throws IOException       { ensure(4); buffer.putInt(v); }
+		void putLong(long v) throws IOException     { ensure(8); buffer.putLong(v); }
+		void putDouble(double v) throws IOException { ensure(8); buffer.putDouble(v); }
+
+		private void ensure(int bytes) throws IOException
+		{
+			if(buffer.remaining() < bytes)
+			{
+				flush();
+			}
+		}
+
+		private void flush() throws IOException
+		{
+			buffer.flip();
+			while(buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		public void close() throws IOException
+		{
+			try
+			{
+				flush();
+				channel.force(true);
+			}
+			finally
+			{
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Buffered reader of primitive values from a channel.
+	 */
+	static class Input implements Closeable
+	{
+		private final FileChannel channel;
+		private final ByteBuffer  buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		Input(FileChannel channel)
+		{
+			this.channel = channel;
+			buffer.flip(); // start empty
+		}
+
+		byte getByte() throws IOException     { ensure(1); return buffer.get(); }
+		int getInt() throws IOException       { ensure(4); return buffer.getInt(); }
+		long getLong() throws IOException     { ensure(8); return buffer.getLong(); }
+		double getDouble() throws IOException { ensure(8); return buffer.getDouble(); }
+
+		private void ensure(int bytes) throws IOException
+		{
+			if(buffer.remaining() >= bytes)
+			{
+				return;
+			}
+			buffer.compact();
+			while(buffer.position() < bytes)
+			{
+				if(channel.read(buffer) < 0)
+				{
+					throw new EOFException("checkpoint is truncated");
+				}
+			}
+			buffer.flip();
+		}
+
+		public void close() throws IOException
+		{
+			channel.close();
+		}
+	}
+}
@@ -2,7 +2,7 @@ import javax.swing.*;       // for all the Swing stuff (JWhatevers)
 
 import java.awt.*;          // for Graphics, Graphics2D
 import java.awt.geom.*;     // for Rectangle2D
-import java.util.ArrayList; // for ArrayList
+import java.awt.image.*;    // for BufferedImage
 
 public class DialogCanvas extends JPanel
 {
@@ -18,6 +18,15 @@ public class DialogCanvas extends JPanel
 
     private TimeSeriesDialog dialog;  // the containing JFrame
 
+    // one colour per series: macrophages, then bacteria
+    private static final Color[] SERIES_COLORS = { Color.green, Color.red };
+
+    // the points plotted so far, kept so that new counts are drawn on top
+    // instead of replotting the whole history; transparent elsewhere
+    private BufferedImage plot;
+    private int           plottedBuckets;      // series buckets in plot
+    private int           plottedDecimations;  // series decimations when plotted
+
     public DialogCanvas(TimeSeriesDialog container)
     {
         dialog = container;
@@ -45,7 +54,9 @@ public class DialogCanvas extends JPanel
         Graphics2D graphics = (Graphics2D) g.create();
 
         graphics.clearRect(0, 0, dialog.WINDOW_WIDTH, dialog.WINDOW_HEIGHT);
-        drawTimeSeries(graphics);
+        if (plot == null)
+            drawTimeSeries();
+        graphics.drawImage(plot, 0, 0, null);
         drawAxes(graphics);
 
         revalidate();
@@ -56,38 +67,76 @@ public class DialogCanvas extends JPanel
     } // end paintComponent()
 
     //======================================================================
-    //* private void drawTimeSeries(Graphics2D graphics)
-    //* This method draws time-series curves by plotting three 2x2 
-    //* rectangles at each integer time point: a green one to indicate
-    //* the number of macrophages; a red one to indicate
-    //* the number of bacteria.
+    //* public void plotNewCounts()
+    //* This method plots the counts added to the series since the last
+    //* plot, and repaints just the strip of the graph they fall in.
     //======================================================================
-    private void drawTimeSeries(Graphics2D graphics)
+    public void plotNewCounts()
     {
-        // first draw the macrophages
-        graphics.setPaint(Color.green);
-        for (int i = 0; i < dialog.macrophagesCounts.size(); i++)
-        {
-            graphics.fillRect( 
-               GRAPH_UPPER_LEFT_X + (int)((i + 1) * horizontalStep),
-               GRAPH_LOWER_RIGHT_Y - 
-                  (int)(dialog.macrophagesCounts.get(i).intValue() * verticalStep),
-               2, 2 );  // a 2x2 rectangle
-        }
+        int[] strip = drawTimeSeries();
+        if (strip == null)
+            repaint();
+        else if (strip[1] >= strip[0])
+            repaint(strip[0], 0, strip[1] - strip[0] + 2, dialog.WINDOW_HEIGHT);
+
+    } // end plotNewCounts()
 
-        // then draw the bacteria
-        graphics.setPaint(Color.red);
-        for (int i = 0; i < dialog.bacteriaCounts.size(); i++)
+    //======================================================================
+    //* private int[] drawTimeSeries()
+    //* This method draws the time-series curves into the plot image: at
+    //* each bucket of the series, a 2-pixel wide bar spanning the smallest
+    //* to the largest count in the bucket -- green for the number of
+    //* macrophages, red for the number of bacteria.  Only buckets added or
+    //* grown since the last call are drawn, unless the series has merged
+    //* its buckets since, in which case everything is replotted.  Returns
+    //* the range of x drawn, or null if everything was.
+    //======================================================================
+    private int[] drawTimeSeries()
+    {
+        TimeSeries series = dialog.series;
+        synchronized (series)
         {
-            graphics.fillRect( 
-               GRAPH_UPPER_LEFT_X + (int)((i + 1) * horizontalStep),
-               GRAPH_LOWER_RIGHT_Y - 
-                  (int)(dialog.bacteriaCounts.get(i).intValue() * verticalStep),
-               2, 2 );  // a 2x2 rectangle
+            boolean all = (plot == null || series.getDecimations() != plottedDecimations);
+            if (all)
+            {
+                plot = new BufferedImage(dialog.WINDOW_WIDTH, dialog.WINDOW_HEIGHT,
+                                         BufferedImage.TYPE_INT_ARGB);
+                plottedBuckets     = 0;
+                plottedDecimations = series.getDecimations();
+            }
+
+            // the last bucket plotted may have grown since
+            int first = Math.max(plottedBuckets - 1, 0);
+            int last  = series.size();
+
+            Graphics2D graphics = plot.createGraphics();
+            for (int s = 0; s < series.getNumSeries(); s++)
+            {
+                graphics.setPaint(s < SERIES_COLORS.length ? SERIES_COLORS[s] : Color.gray);
+                for (int b = first; b < last; b++)
+                {
+                    int top    = GRAPH_LOWER_RIGHT_Y - (int)(series.getMax(s, b) * verticalStep);
+                    int bottom = GRAPH_LOWER_RIGHT_Y - (int)(series.getMin(s, b) * verticalStep);
+                    graphics.fillRect(x(series.getTime(b)), top, 
+                                      2, bottom - top + 2);  // at least 2x2
+                }
+            }
+            graphics.dispose();
+
+            int[] strip = { x(series.getTime(first)), 
+                            (last > 0) ? x(series.getTime(last - 1)) : -1 };
+            plottedBuckets = last;
+            return all ? null : strip;
         }
 
     } // end drawTimeSeries()
 
+    // horizontal position of the given time on the graph
+    private int x(double time)
+    {
+        return GRAPH_UPPER_LEFT_X + (int)(time * horizontalStep);
+    }
+
     //======================================================================
     //* private void drawAxes(Graphics2D graphics)
     //* This method draws the vertical and horizontal axes, tick marks,
@@ -0,0 +1,81 @@
+import java.util.*;
+
+/**
+ * This class collects the landscape cells changed by events since the last
+ * time it was drained, for incremental redrawing: the engine marks the cells
+ * each event touches, and every AgentSnapshot takes the cells marked since
+ * the previous one.  A bitmap keeps a cell from being listed twice.
+ *
+ * Once more than an eighth of the landscape has changed, redrawing cell by
+ * cell no longer pays, so the set stops listing and just remembers that
+ * everything must be redrawn.
+ */
+public class DirtyCells
+{
+	private final long[] marked;  // one bit per cell
+	private final int    limit;   // most cells listed before giving up
+	private int[]   cells = new int[64];
+	private int     size;
+	private boolean overflow;
+
+	/**************************************************************************
+	 * Constructs an empty set for a landscape of the given number of cells.
+	 * @param numCells  total number of cells (rows * columns)
+	 **************************************************************************/
+	public DirtyCells(int numCells)
+	{
+		marked = new long[(numCells + 63) >>> 6];
+		limit  = Math.max(64, numCells / 8);
+	}
+
+	/**************************************************************************
+	 * Marks a cell as changed.
+	 * @param cell  the cell index (row * numCells + col)
+	 **************************************************************************/
+	public void mark(int cell)
+	{
+		if(overflow)
+		{
+			return;
+		}
+		long bit = 1L << cell;
+		if((marked[cell >>> 6] & bit) != 0)
+		{
+			return;
+		}
+		if(size == limit)
+		{
+			overflow = true;
+			return;
+		}
+		marked[cell >>> 6] |= bit;
+		if(size == cells.length)
+		{
+			cells = Arrays.copyOf(cells, Math.min(limit, size * 2));
+		}
+		cells[size++] = cell;
+	}
+
+	/**************************************************************************
+	 * Returns the cells marked since the last drain, and empties the set.
+	 * @return the changed cells, or null if too many changed to list
+	 **************************************************************************/
+	public int[] drain()
+	{
+		int[] result = overflow ? null : Arrays.copyOf(cells, size);
+		if(overflow)
+		{
+			Arrays.fill(marked, 0);
+		}
+		else
+		{
+			for (int i = 0; i < size; i++)
+			{
+				marked[cells[i] >>> 6] = 0;
+			}
+		}
+		size     = 0;
+		overflow = false;
+		return result;
+	}
+}
@@ -0,0 +1,250 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+import javax.management.*;
+
+/**
+ * This class instruments a Simulation's event loop (see
+ * Simulation.setMetrics()): it counts and times every event, with one
+ * LatencyHistogram per event type, follows the size of the event queue,
+ * and at every sample time measures the event rate and the engine thread's
+ * allocation rate over the last interval of wall-clock time.
+ *
+ * Everything can be watched live over JMX (register()), under the domain
+ * "AgentBasedSimulation", and written out as a plain text report at the end
+ * of a run (dump()).  A simulation without metrics pays one null check per
+ * event.
+ *
+ * Updated on the engine thread; readers on other threads see recent values.
+ */
+public class EngineMetrics implements EngineMetricsMBean, StatisticsListener
+{
+	public static final String DOMAIN = "AgentBasedSimulation";
+
+	// the event types timed, as EventKind has them
+	private static final EventKind[] TYPES = {
+		EventKind.BACTERIUM_MOVE, EventKind.DIVIDE, EventKind.MACROPHAGE_MOVE, EventKind.EAT };
+
+	private final SimulationManager  simulation;
+	private final LatencyHistogram[] latency = new LatencyHistogram[EventKind.values().length];
+	private final TimeSeries         queueSizes;   // min and max per bucket
+	private final int[]              queueSample = new int[1];
+	private final List<ObjectName>   registered = new ArrayList<ObjectName>();
+
+	private long events;
+	private int  queueSize;
+	private int  maxQueueSize;
+
+	// wall clock and allocation at the start and at the last sample
+	private final long startNanos;
+	private final long startBytes;
+	private long lastNanos;
+	private long lastEvents;
+	private long lastBytes;
+	private volatile double eventsPerSecond;
+	private volatile double bytesPerSecond;
+
+	/**************************************************************************
+	 * Constructs the metrics of a simulation, all zero.
+	 * @param simulation      the instrumented simulation
+	 * @param sampleInterval  simulated time between samples of the queue
+	 *                        size and the rates
+	 **************************************************************************/
+	public EngineMetrics(SimulationManager simulation, double sampleInterval)
+	{
+		this.simulation = simulation;
+		for (EventKind kind : TYPES)
+		{
+			latency[kind.ordinal()] = new LatencyHistogram();
+		}
+		double first = Math.ceil(simulation.getTime() / sampleInterval) * sampleInterval;
+		this.queueSizes = new TimeSeries(1, TimeSeries.DEFAULT_CAPACITY, sampleInterval, first);
+
+		startNanos = lastNanos = System.nanoTime();
+		startBytes = lastBytes = allocatedBytes();
+	}
+
+	/**************************************************************************
+	 * Records one processed event.  Called by the engine thread.
+	 * @param kind       the event type
+	 * @param nanos      how long processing it took
+	 * @param queueSize  number of events queued afterwards, one per agent
+	 **************************************************************************/
+	public void eventProcessed(EventKind kind, long nanos, int queueSize)
+	{
+		latency[kind.ordinal()].record(nanos);
+		events++;
+		this.queueSize = queueSize;
+		if(queueSize > maxQueueSize)
+		{
+			maxQueueSize = queueSize;
+		}
+	}
+
+	/**************************************************************************
+	 * Sets the current queue size, before any event has been processed.
+	 * @param queueSize  number of events queued, one per agent
+	 **************************************************************************/
+	public void setQueueSize(int queueSize)
+	{
+		this.queueSize = queueSize;
+		maxQueueSize   = Math.max(maxQueueSize, queueSize);
+	}
+
+	/**************************************************************************
+	 * Samples the queue size and the rates; called at every sample time
+	 * (see Statistics), on the engine thread.
+	 **************************************************************************/
+	public void sampled(double time, Statistics stats)
+	{
+		queueSample[0] = queueSize;
+		queueSizes.add(queueSample);
+
+		long now   = System.nanoTime();
+		long bytes = allocatedBytes();
+		double secs = (now - lastNanos) / 1e9;
+		if(secs > 0)
+		{
+			eventsPerSecond = (events - lastEvents) / secs;
+			bytesPerSecond  = (bytes < 0) ? -1 : (bytes - lastBytes) / secs;
+		}
+		lastNanos  = now;
+		lastEvents = events;
+		lastBytes  = bytes;
+	}
+
+	// bytes allocated so far by the calling thread, or -1 if the JVM cannot tell
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(threads instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean)threads;
+			if(t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled())
+			{
+				return t.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the latency histogram of an event type.
+	 * @param kind  BACTERIUM_MOVE, DIVIDE, MACROPHAGE_MOVE or EAT
+	 * @return the histogram, or null for other kinds
+	 **************************************************************************/
+	public LatencyHistogram getLatency(EventKind kind) { return(latency[kind.ordinal()]); }
+
+	/**************************************************************************
+	 * Accessor method that returns the sampled event queue sizes.
+	 * @return a one-series time series of the queue size
+	 **************************************************************************/
+	public TimeSeries getQueueSizes()               { return(queueSizes); }
+
+	public long getEvents()                          { return(events); }
+	public double getSimulatedTime()                 { return(simulation.getTime()); }
+	public double getEventsPerSecond()               { return(eventsPerSecond); }
+	public double getAllocatedBytesPerSecond()       { return(bytesPerSecond); }
+	public int getQueueSize()                        { return(queueSize); }
+	public int getMaxQueueSize()                     { return(maxQueueSize); }
+
+	public double getAverageEventsPerSecond()
+	{
+		double secs = (System.nanoTime() - startNanos) / 1e9;
+		return (secs > 0) ? events / secs : 0;
+	}
+
+	/**************************************************************************
+	 * Registers these metrics, and one histogram per event type, with the
+	 * platform MBean server, as
+	 *     AgentBasedSimulation:type=Engine
+	 *     AgentBasedSimulation:type=EventLatency,name=BACTERIUM_MOVE (etc.)
+	 * @throws JMException if the names are already taken
+	 **************************************************************************/
+	public void register() throws JMException
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(DOMAIN + ":type=Engine");
+		server.registerMBean(this, name);
+		registered.add(name);
+		for (EventKind kind : TYPES)
+		{
+			name = new ObjectName(DOMAIN + ":type=EventLatency,name=" + kind);
+			server.registerMBean(latency[kind.ordinal()], name);
+			registered.add(name);
+		}
+	}
+
+	/**************************************************************************
+	 * Removes everything register() registered.
+	 * @throws JMException if the MBean server refuses
+	 **************************************************************************/
+	public void unregister() throws JMException
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : registered)
+		{
+			server.unregisterMBean(name);
+		}
+		registered.clear();
+	}
+
+	/**************************************************************************
+	 * Writes a plain text report: the totals and rates, a table of the
+	 * latencies of each event type, and the sampled queue sizes.
+	 * @param file  the report file, replaced if it exists
+	 * @throws IOException if the file cannot be written
+	 **************************************************************************/
+	public void dump(Path file) throws IOException
+	{
+		try (PrintStream out = new PrintStream(
+			new BufferedOutputStream(Files.newOutputStream(file)), false, "UTF-8"))
+		{
+			dump(out);
+		}
+	}
+
+	/**************************************************************************
+	 * Writes the report of dump(Path) to a stream.
+	 * @param out  where to write
+	 **************************************************************************/
+	public void dump(PrintStream out)
+	{
+		double secs  = (System.nanoTime() - startNanos) / 1e9;
+		long   bytes = allocatedBytes();
+
+		out.printf("simulated time        %.3f%n", simulation.getTime());
+		out.printf("events                %d%n", events);
+		out.printf("wall time (s)         %.3f%n", secs);
+		out.printf("events/sec            %.0f%n", getAverageEventsPerSecond());
+		if(bytes >= 0 && startBytes >= 0)
+		{
+			out.printf("allocated (MB)        %.1f%n", (bytes - startBytes) / 1e6);
+			out.printf("allocation (MB/s)     %.1f%n", (bytes - startBytes) / 1e6 / Math.max(secs, 1e-9));
+		}
+		out.printf("event queue size      %d (max %d)%n", queueSize, maxQueueSize);
+		out.println();
+
+		out.printf("%-16s %12s %10s %8s %8s %8s %8s %10s%n",
+			"latency (ns)", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+		for (EventKind kind : TYPES)
+		{
+			LatencyHistogram h = latency[kind.ordinal()];
+			out.printf("%-16s %12d %10.1f %8d %8d %8d %8d %10d%n", kind, h.getCount(),
+				h.getMeanNanos(), h.getP50Nanos(), h.getP90Nanos(), h.getP99Nanos(),
+				h.getP999Nanos(), h.getMaxNanos());
+		}
+		out.println();
+
+		out.println("time,min_queue_size,max_queue_size");
+		synchronized(queueSizes)
+		{
+			for (int b = 0; b < queueSizes.size(); b++)
+			{
+				out.println(queueSizes.getTime(b) + "," + queueSizes.getMin(0, b)
+					+ "," + queueSizes.getMax(0, b));
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+/**
+ * This interface is the JMX management interface of EngineMetrics; see
+ * there.  The latency of each event type is a separate LatencyHistogramMBean.
+ */
+public interface EngineMetricsMBean
+{
+	public long getEvents();
+	public double getSimulatedTime();
+	public double getEventsPerSecond();
+	public double getAverageEventsPerSecond();
+	public double getAllocatedBytesPerSecond();
+
+	/**************************************************************************
+	 * Accessor method that returns the number of events queued after the
+	 * last one processed: one per agent, as every agent keeps exactly one
+	 * event queued.
+	 * @return the current size of the event queue
+	 **************************************************************************/
+	public int getQueueSize();
+
+	/**************************************************************************
+	 * Accessor method that returns the largest getQueueSize() seen so far.
+	 * @return the largest number of events queued at once
+	 **************************************************************************/
+	public int getMaxQueueSize();
+}
@@ -0,0 +1,48 @@
+/**
+ * This class is the event an agent has queued in an engine's EventScheduler:
+ * whichever of its next move and its next divide or eat (see EventKind)
+ * comes first.
+ *
+ * Every agent owns one Event for its whole life and has it queued at most
+ * once.  Whenever the agent's next event times change, the engine sets the
+ * event afresh from them (Agent.nextEvent()) and the scheduler moves it to
+ * its new place; the later of the agent's two events only enters the queue
+ * once the earlier one has fired.  An agent that leaves the simulation (an
+ * eaten bacterium) or is handed over to another queue has its event
+ * removed.  The queue therefore holds exactly one entry per agent, and
+ * never one that no longer applies.
+ *
+ * The scheduler holding the event keeps its position there in the event, so
+ * that moving or removing it needs no search.
+ */
+public final class Event
+{
+	private final Agent agent;
+	private EventKind   kind;
+	private double      time;
+	private int         index = -1;  // position in its EventScheduler, -1 if not queued
+
+	/**************************************************************************
+	 * Constructs the event of an agent, not yet queued.
+	 * @param agent  the agent it happens to
+	 **************************************************************************/
+	public Event(Agent agent)
+	{
+		this.agent = agent;
+	}
+
+	// sets what happens next and when, before the event is (re)queued
+	void set(EventKind kind, double time)
+	{
+		this.kind = kind;
+		this.time = time;
+	}
+
+	public EventKind getKind() { return(kind); }
+	public Agent getAgent()    { return(agent); }
+	public double getTime()    { return(time); }
+
+	// position in the EventScheduler holding the event, kept by the scheduler
+	int getIndex()           { return(index); }
+	void setIndex(int index) { this.index = index; }
+}
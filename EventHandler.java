@@ -0,0 +1,17 @@
+/**
+ * This interface is the code an engine runs for one kind of Event (see
+ * Simulation.setHandler()).  A handler finds the simulated time in the
+ * event, updates the landscape and the agents, and requeues every agent
+ * whose next event times it changed with Simulation.schedule(), always
+ * including the event's own agent.
+ */
+public interface EventHandler
+{
+	/**************************************************************************
+	 * Handles an event that has just come up; the clock already reads its
+	 * time.  The event is its agent's (see Event), and is set afresh when
+	 * the agent is scheduled, so read it before that.
+	 * @param e  the event
+	 **************************************************************************/
+	void handle(Event e);
+}
@@ -0,0 +1,289 @@
+import java.util.*;
+
+/**
+ * This class implements the default future event set (EventScheduler) of
+ * the next-event engine: an indexed 4-ary min-heap of Events keyed on their
+ * time.  Each event remembers its own position in the heap, so queuing an
+ * event, moving it when its agent is rescheduled (whether earlier or later)
+ * or removing it costs O(log n) rather than the O(n) scan-and-shift of a
+ * sorted list.  Keys and tie-break stamps are kept in primitive arrays
+ * parallel to the heap, so comparisons never have to go back to the events.
+ * With four children per node the heap is half as deep as a binary one,
+ * and the four keys a sift down compares share a cache line, which matters
+ * once the heap no longer fits in cache.
+ *
+ * Ties are broken in favour of the event that was (re)queued most recently,
+ * which is exactly the order the old sorted ArrayList produced when it
+ * inserted an agent in front of every agent with an equal event time.
+ */
+public class EventHeap implements EventScheduler
+{
+	private Event[]  heap;    // heap-ordered events, root at index 0
+	private double[] keys;    // time of each event
+	private long[]   stamps;  // tie-break stamp of each entry
+	private int      size;    // number of events currently queued
+	private long     stamp;   // increasing counter used to break time ties
+
+	/**************************************************************************
+	 * Constructs an empty event heap.
+	 **************************************************************************/
+	public EventHeap()
+	{
+		this(16);
+	}
+
+	/**************************************************************************
+	 * Constructs an empty event heap with room for the given number of events
+	 * before the backing array needs to grow.
+	 *
+	 * @param capacity  initial number of events the heap can hold
+	 **************************************************************************/
+	public EventHeap(int capacity)
+	{
+		capacity = Math.max(capacity, 1);
+		heap   = new Event[capacity];
+		keys   = new double[capacity];
+		stamps = new long[capacity];
+		size   = 0;
+		stamp  = 0;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the number of queued events.
+	 * @return an integer representing the number of events in the heap
+	 **************************************************************************/
+	public int size()        { return(size); }
+
+	/**************************************************************************
+	 * Accessor method that tells whether any event is queued.
+	 * @return true if the heap holds no events
+	 **************************************************************************/
+	public boolean isEmpty() { return(size == 0); }
+
+	/**************************************************************************
+	 * Accessor method that returns, without removing it, the next event to be
+	 * processed.
+	 * @return the event with the smallest time, or null if empty
+	 **************************************************************************/
+	public Event peek()
+	{
+		if(size == 0)
+		{
+			return null;
+		}
+		return heap[0];
+	}
+
+	/**************************************************************************
+	 * Removes and returns the next event to be processed.
+	 * @return the event with the smallest time, or null if empty
+	 **************************************************************************/
+	public Event poll()
+	{
+		Event first = peek();
+		remove(first);
+		return first;
+	}
+
+	/**************************************************************************
+	 * Tells whether the given event is currently queued in this heap.
+	 * @param e  the event to look for
+	 * @return true if the event is in the heap
+	 **************************************************************************/
+	public boolean contains(Event e)
+	{
+		int i = e.getIndex();
+		return i >= 0 && i < size && heap[i] == e;
+	}
+
+	/**************************************************************************
+	 * Queues the event at its current Event.getTime(), inserting it if it is
+	 * not yet in the heap or moving it up or down (decrease/increase key) if
+	 * it is.  The commonest case by far is the event just handled, at the
+	 * root, set to its agent's next time: one sift down.
+	 *
+	 * @param e  the event whose time has been (re)set
+	 **************************************************************************/
+	public void update(Event e)
+	{
+		double key = e.getTime();
+		stamp++;
+
+		if(contains(e))
+		{
+			int i = e.getIndex();
+			keys[i]   = key;
+			stamps[i] = stamp;
+			if(i > 0 && before(i, (i - 1) >>> 2))
+			{
+				siftUp(i);
+			}
+			else
+			{
+				siftDown(i);
+			}
+			return;
+		}
+
+		if(size == heap.length)
+		{
+			heap   = Arrays.copyOf(heap, heap.length * 2);
+			keys   = Arrays.copyOf(keys, heap.length);
+			stamps = Arrays.copyOf(stamps, heap.length);
+		}
+		heap[size]   = e;
+		keys[size]   = key;
+		stamps[size] = stamp;
+		size++;
+		siftUp(size - 1);
+	}
+
+	/**************************************************************************
+	 * Removes the event from the heap; does nothing if it is not queued.
+	 * @param e  the event to remove
+	 **************************************************************************/
+	public void remove(Event e)
+	{
+		if(e == null || !contains(e))
+		{
+			return;
+		}
+
+		int i = e.getIndex();
+		size--;
+		Event last = heap[size];
+		heap[size] = null;
+		e.setIndex(-1);
+
+		if(i != size)
+		{
+			heap[i]   = last;
+			keys[i]   = keys[size];
+			stamps[i] = stamps[size];
+			if(i > 0 && before(i, (i - 1) >>> 2))
+			{
+				siftUp(i);
+			}
+			else
+			{
+				siftDown(i);
+			}
+		}
+	}
+
+	/**************************************************************************
+	 * Method that returns the queued events in the order they will be
+	 * processed.  This copies and sorts the heap, so it is meant for
+	 * debugging output and checkpoints only.
+	 *
+	 * @return an ArrayList<Event> of all queued events in firing order
+	 **************************************************************************/
+	public ArrayList<Event> toList()
+	{
+		final Event[]  entries  = Arrays.copyOf(heap, size);
+		final double[] byKey    = new double[size];
+		final long[]   byStamp  = new long[size];
+		Integer[]      order    = new Integer[size];
+		for(int i = 0; i < size; i++)
+		{
+			byKey[i]   = keys[i];
+			byStamp[i] = stamps[i];
+			order[i]   = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer a, Integer b)
+			{
+				if(before(byKey[a], byStamp[a], byKey[b], byStamp[b])) return -1;
+				if(before(byKey[b], byStamp[b], byKey[a], byStamp[a])) return 1;
+				return 0;
+			}
+		});
+
+		ArrayList<Event> list = new ArrayList<Event>();
+		for(int i = 0; i < size; i++)
+		{
+			list.add(entries[order[i]]);
+		}
+		return list;
+	}
+
+	// true if the entry (keyA, stampA) must be processed before (keyB, stampB)
+	private static boolean before(double keyA, long stampA, double keyB, long stampB)
+	{
+		if(keyA != keyB)
+		{
+			return keyA < keyB;
+		}
+		return stampA > stampB; // most recently queued goes first
+	}
+
+	// true if the entry at heap position i must be processed before the one at j
+	private boolean before(int i, int j)
+	{
+		return before(keys[i], stamps[i], keys[j], stamps[j]);
+	}
+
+	private void siftUp(int i)
+	{
+		Event  e = heap[i];
+		double k = keys[i];
+		long   s = stamps[i];
+		while(i > 0)
+		{
+			int parent = (i - 1) >>> 2;
+			if(!before(k, s, keys[parent], stamps[parent]))
+			{
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		heap[i]   = e;
+		keys[i]   = k;
+		stamps[i] = s;
+		e.setIndex(i);
+	}
+
+	private void siftDown(int i)
+	{
+		Event  e = heap[i];
+		double k = keys[i];
+		long   s = stamps[i];
+		while(true)
+		{
+			int first = 4 * i + 1;
+			if(first >= size)
+			{
+				break;
+			}
+			int child = first;  // the earliest of the (up to) four children
+			for (int c = first + 1, last = Math.min(first + 4, size); c < last; c++)
+			{
+				if(before(c, child))
+				{
+					child = c;
+				}
+			}
+			if(!before(keys[child], stamps[child], k, s))
+			{
+				break;
+			}
+			move(child, i);
+			i = child;
+		}
+		heap[i]   = e;
+		keys[i]   = k;
+		stamps[i] = s;
+		e.setIndex(i);
+	}
+
+	// copies the entry at heap position from into position to
+	private void move(int from, int to)
+	{
+		heap[to]   = heap[from];
+		keys[to]   = keys[from];
+		stamps[to] = stamps[from];
+		heap[to].setIndex(to);
+	}
+}
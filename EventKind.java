@@ -0,0 +1,24 @@
+/**
+ * The kinds of events queued by the engines (see Event) and reported to an
+ * EventSink.  For each kind, the agent id and the two cells passed along
+ * with it mean:
+ *
+ *   MACROPHAGE_ADDED, BACTERIUM_ADDED  an agent present when the sink was
+ *       attached; to is its cell, and from is the same cell, or -1 if
+ *       another agent has since taken its place on the landscape
+ *   MACROPHAGE_MOVE, BACTERIUM_MOVE    the agent that moved, from its old
+ *       cell to its new one (the same cell if it had nowhere to go)
+ *   DIVIDE  the new bacterium, born in cell to next to its parent in cell
+ *       from; if there was no room, the parent's id with from == to
+ *   EAT     the macrophage, in its cell (from == to), eating whatever
+ *       bacterium the landscape shows there, if any
+ */
+public enum EventKind
+{
+	MACROPHAGE_ADDED,
+	BACTERIUM_ADDED,
+	MACROPHAGE_MOVE,
+	BACTERIUM_MOVE,
+	DIVIDE,
+	EAT
+}
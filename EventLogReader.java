@@ -0,0 +1,128 @@
+import java.io.*;
+import java.nio.file.Path;
+
+/**
+ * This class reads an event log written by EventLogWriter.  The file is
+ * memory-mapped (see MappedFile), so a log of any size can be read, forwards
+ * from any record position, without loading it onto the heap.  A reader
+ * keeps a read cursor, so each thread needs its own.
+ */
+public class EventLogReader
+{
+	private static final EventKind[] KINDS = EventKind.values();
+
+	private static final long FIRST_RECORD = 12; // just past the header
+
+	private final MappedFile file;
+	private final int numCells;
+	private long cursor;          // read position within the current record
+
+	/**
+	 * One decoded record, reused from read to read.
+	 */
+	public static final class Record
+	{
+		public double    time;
+		public EventKind kind;
+		public int       agentID;
+		public int       fromCell;
+		public int       toCell;
+	}
+
+	/**************************************************************************
+	 * Maps the log and checks its header.
+	 *
+	 * @param log  the event log
+	 * @throws IOException if the file cannot be mapped or is not an event log
+	 **************************************************************************/
+	public EventLogReader(Path log) throws IOException
+	{
+		file = new MappedFile(log);
+		if(file.size() < FIRST_RECORD || file.getInt(0) != EventLogWriter.MAGIC)
+		{
+			throw new IOException(log + " is not an event log");
+		}
+		int version = file.getInt(4);
+		if(version != EventLogWriter.VERSION)
+		{
+			throw new IOException(log + " has event log format " + version
+				+ ", expected " + EventLogWriter.VERSION);
+		}
+		numCells = file.getInt(8);
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the number of rows (same as columns) of
+	 * the logged simulation's landscape.
+	 * @return an integer representing the size of the landscape
+	 **************************************************************************/
+	public int getNumCells()      { return(numCells); }
+
+	/**************************************************************************
+	 * Accessor method that returns the position of the first record.
+	 * @return the file offset of the first record
+	 **************************************************************************/
+	public long firstRecord()     { return(FIRST_RECORD); }
+
+	/**************************************************************************
+	 * Accessor method that returns the position just past the last record.
+	 * @return the length of the log
+	 **************************************************************************/
+	public long end()             { return(file.size()); }
+
+	/**************************************************************************
+	 * Decodes the record starting at the given position.
+	 *
+	 * @param pos  position of a record, e.g. firstRecord() or a value
+	 *             returned by an earlier read()
+	 * @param r    receives the decoded record
+	 * @return the position of the next record
+	 **************************************************************************/
+	public long read(long pos, Record r)
+	{
+		cursor = pos;
+		int header = file.getByte(cursor++) & 0xFF;
+		r.kind = KINDS[header >>> 4];
+		r.time = file.getDouble(cursor);
+		cursor += 8;
+		r.agentID  = readVarint();
+		r.fromCell = readVarint() - 1;
+
+		int step = header & 0xF;
+		if(step == EventLogWriter.EXPLICIT)
+		{
+			r.toCell = readVarint() - 1;
+		}
+		else
+		{
+			int row = wrap(r.fromCell / numCells + step / 3 - 1);
+			int col = wrap(r.fromCell % numCells + step % 3 - 1);
+			r.toCell = row * numCells + col;
+		}
+		return cursor;
+	}
+
+	private int wrap(int coord)
+	{
+		if(coord < 0)         return coord + numCells;
+		if(coord >= numCells) return coord - numCells;
+		return coord;
+	}
+
+	// decodes the varint at the cursor and moves the cursor past it
+	private int readVarint()
+	{
+		int value = 0;
+		int shift = 0;
+		while(true)
+		{
+			int b = file.getByte(cursor++);
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+			{
+				return value;
+			}
+			shift += 7;
+		}
+	}
+}
@@ -0,0 +1,249 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * This class is an EventSink that streams every event into a compact binary
+ * log file, for analysis or replay after the run.
+ *
+ * The file starts with a 12 byte header (magic number, format version,
+ * numCells, as big-endian ints), followed by one variable-length record per
+ * event:
+ *
+ *   1 byte   kind (EventKind ordinal) in the high 4 bits, and in the low 4
+ *            bits the step from the from cell to the to cell: 0-8 for
+ *            (dRow + 1) * 3 + (dCol + 1) on the torus, or EXPLICIT
+ *   8 bytes  time, as a double
+ *   varint   agent id
+ *   varint   from cell + 1
+ *   varint   to cell + 1, only if the step is EXPLICIT
+ *
+ * where a varint is the usual little-endian base-128 encoding.  Moves and
+ * divides only ever go to a neighbouring cell, so the to cell costs no bytes,
+ * and a typical record takes 13 to 15 bytes.
+ *
+ * Records are encoded on the engine thread into 64 KB batches.  A full batch
+ * is handed to a background thread that writes it to the file channel, while
+ * the engine goes on filling the next one from a small pool, so the engine
+ * only ever waits for the disk if it is more than a few batches ahead.
+ */
+public class EventLogWriter implements EventSink, Closeable
+{
+	static final int MAGIC    = 0x41425345; // "ABSE"
+	static final int VERSION  = 1;
+	static final int EXPLICIT = 15;         // step code of a record giving its to cell
+
+	private static final int BATCH_SIZE  = 1 << 16;
+	private static final int NUM_BATCHES = 4;
+	private static final int MAX_RECORD  = 1 + 8 + 3 * 5; // header, time, three varints
+
+	private static final ByteBuffer END = ByteBuffer.allocate(0); // tells the writer to stop
+
+	private final FileChannel channel;
+	private final int numCells;
+
+	private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<ByteBuffer>(NUM_BATCHES);
+	private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<ByteBuffer>(NUM_BATCHES + 1);
+	private final Thread writer;
+	private volatile IOException failure;  // first error met by the writer thread
+
+	private ByteBuffer batch;              // batch being filled by the engine
+	private long numEvents;
+	private boolean closed;
+
+	/**************************************************************************
+	 * Creates (or truncates) the log file and starts the writer thread.
+	 *
+	 * @param file      the log file
+	 * @param numCells  number of rows and columns of the simulation's landscape
+	 * @throws IOException if the file cannot be opened
+	 **************************************************************************/
+	public EventLogWriter(Path file, int numCells) throws IOException
+	{
+		this.channel  = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE);
+		this.numCells = numCells;
+
+		for (int i = 0; i < NUM_BATCHES; i++)
+		{
+			free.add(ByteBuffer.allocateDirect(BATCH_SIZE));
+		}
+		batch = free.poll();
+		batch.putInt(MAGIC);
+		batch.putInt(VERSION);
+		batch.putInt(numCells);
+
+		writer = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				writeBatches();
+			}
+		}, "event-log-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the number of events logged so far.
+	 * @return a long representing the number of records written
+	 **************************************************************************/
+	public long getNumEvents() { return(numEvents); }
+
+	public void event(double time, EventKind kind, int agentID, int fromCell, int toCell)
+	{
+		if(batch.remaining() < MAX_RECORD)
+		{
+			handOff();
+		}
+
+		int step = stepCode(fromCell, toCell);
+		batch.put((byte)((kind.ordinal() << 4) | step));
+		batch.putDouble(time);
+		putVarint(agentID);
+		putVarint(fromCell + 1);
+		if(step == EXPLICIT)
+		{
+			putVarint(toCell + 1);
+		}
+		numEvents++;
+	}
+
+	/**************************************************************************
+	 * Writes out what is left, waits for the writer thread to finish, and
+	 * closes the file.
+	 *
+	 * @throws IOException if any write failed
+	 **************************************************************************/
+	public void close() throws IOException
+	{
+		if(closed)
+		{
+			return;
+		}
+		closed = true;
+		try
+		{
+			batch.flip();
+			full.put(batch);
+			full.put(END);
+			writer.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while closing the event log");
+		}
+		finally
+		{
+			if(failure == null)
+			{
+				channel.force(true);
+			}
+			channel.close();
+		}
+		if(failure != null)
+		{
+			throw failure;
+		}
+	}
+
+	// the code of the step from one cell to another (see the class comment)
+	private int stepCode(int fromCell, int toCell)
+	{
+		if(fromCell < 0)
+		{
+			return EXPLICIT;
+		}
+		int dRow = wrapDelta(toCell / numCells - fromCell / numCells);
+		int dCol = wrapDelta(toCell % numCells - fromCell % numCells);
+		if(dRow < -1 || dRow > 1 || dCol < -1 || dCol > 1)
+		{
+			return EXPLICIT;
+		}
+		return (dRow + 1) * 3 + (dCol + 1);
+	}
+
+	// turns a difference of two coordinates into the shortest step on the torus
+	private int wrapDelta(int d)
+	{
+		if(d > 1 && d == numCells - 1)
+		{
+			return -1;
+		}
+		if(d < -1 && d == 1 - numCells)
+		{
+			return 1;
+		}
+		return d;
+	}
+
+	private void putVarint(int v)
+	{
+		while((v & ~0x7F) != 0)
+		{
+			batch.put((byte)((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		batch.put((byte)v);
+	}
+
+	// queues the full batch for the writer thread and takes an empty one
+	private void handOff()
+	{
+		if(failure != null)
+		{
+			throw new UncheckedIOException("writing the event log failed", failure);
+		}
+		try
+		{
+			batch.flip();
+			full.put(batch);
+			batch = free.take();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(new InterruptedIOException("interrupted while logging"));
+		}
+	}
+
+	// body of the writer thread
+	private void writeBatches()
+	{
+		try
+		{
+			while(true)
+			{
+				ByteBuffer b = full.take();
+				if(b == END)
+				{
+					return;
+				}
+				if(failure == null)
+				{
+					try
+					{
+						while(b.hasRemaining())
+						{
+							channel.write(b);
+						}
+					}
+					catch (IOException e)
+					{
+						failure = e; // reported to the engine at its next hand-off
+					}
+				}
+				b.clear();
+				free.put(b);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
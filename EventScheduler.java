@@ -0,0 +1,70 @@
+import java.util.*;
+
+/**
+ * This interface is the future event set of the next-event engine: the
+ * queued Events, one per agent, ordered on Event.getTime().  Ties are broken
+ * in favour of the event that was (re)queued most recently, so every
+ * implementation hands the engine exactly the same sequence of events and a
+ * run does not depend on which one it uses.
+ *
+ * An implementation keeps the position of each event it holds in the event
+ * itself (see Event), so an event can be queued in only one at a time, and
+ * moving or removing it needs no search.
+ *
+ * EventHeap is the default; CalendarQueue is quicker while few events are
+ * queued, and about as quick once there are a hundred thousand or more.
+ */
+public interface EventScheduler
+{
+	/**************************************************************************
+	 * Accessor method that returns the number of queued events.
+	 * @return an integer representing the number of events queued
+	 **************************************************************************/
+	int size();
+
+	/**************************************************************************
+	 * Accessor method that tells whether any event is queued.
+	 * @return true if no event is queued
+	 **************************************************************************/
+	boolean isEmpty();
+
+	/**************************************************************************
+	 * Accessor method that returns, without removing it, the next event.
+	 * @return the event with the smallest time, or null if empty
+	 **************************************************************************/
+	Event peek();
+
+	/**************************************************************************
+	 * Removes and returns the next event.
+	 * @return the event with the smallest time, or null if empty
+	 **************************************************************************/
+	Event poll();
+
+	/**************************************************************************
+	 * Tells whether the given event is currently queued here.
+	 * @param e  the event to look for
+	 * @return true if the event is queued
+	 **************************************************************************/
+	boolean contains(Event e);
+
+	/**************************************************************************
+	 * Queues an event at its current Event.getTime(), ahead of any already
+	 * queued for the same time, or moves it there if it is queued already.
+	 * Must be called every time the event is set afresh.
+	 * @param e  the event
+	 **************************************************************************/
+	void update(Event e);
+
+	/**************************************************************************
+	 * Removes an event; does nothing if it is not queued.
+	 * @param e  the event to remove
+	 **************************************************************************/
+	void remove(Event e);
+
+	/**************************************************************************
+	 * Method that returns the queued events in the order they will come up.
+	 * Meant for debugging output and checkpoints only.
+	 * @return an ArrayList<Event> of all queued events in firing order
+	 **************************************************************************/
+	ArrayList<Event> toList();
+}
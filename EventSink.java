@@ -0,0 +1,20 @@
+/**
+ * This interface is implemented by anything that wants to follow a
+ * Simulation event by event (see Simulation.setEventSink()), e.g. the binary
+ * EventLogWriter.  It is called on the engine thread once per processed
+ * event, so implementations should do as little as possible there.
+ */
+public interface EventSink
+{
+	/**************************************************************************
+	 * Reports one processed event; see EventKind for what the id and cells
+	 * mean for each kind.
+	 *
+	 * @param time      simulated time of the event
+	 * @param kind      what happened
+	 * @param agentID   id of the agent concerned
+	 * @param fromCell  cell index (row * numCells + col) before the event
+	 * @param toCell    cell index after the event
+	 **************************************************************************/
+	public void event(double time, EventKind kind, int agentID, int fromCell, int toCell);
+}
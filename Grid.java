@@ -0,0 +1,137 @@
+import java.util.*;
+
+/**
+ * This class implements the landscape as a flat, row-major occupancy grid on
+ * a torus.  A cell is identified by a single int index (row * size + col)
+ * and each agent type has its own layer, an int[] holding the store slot of
+ * the agent in each cell (or EMPTY).  Compared with a Cell[][] of objects this
+ * costs 8 bytes per cell, with no per-cell headers or duplicated row/col.
+ *
+ * Neighbour coordinates wrap around the edges with a compare-and-adjust
+ * (see wrap()) rather than a % on every neighbour.
+ */
+public class Grid
+{
+	public static final int EMPTY = -1;  // layer value of a cell with no agent
+
+	private final int        size;         // number of rows (same as columns)
+	private final AgentStore store;        // resolves slots back to agents
+	private final int[]      macrophages;  // slot of the macrophage in each cell
+	private final int[]      bacteria;     // slot of the bacterium in each cell
+
+	/**************************************************************************
+	 * Constructs an empty size x size grid.
+	 *
+	 * @param size   number of rows and columns
+	 * @param store  the store holding the agents that will occupy the grid
+	 **************************************************************************/
+	public Grid(int size, AgentStore store)
+	{
+		if((long)size * size > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("grid of " + size + "x" + size + " is too large");
+		}
+		this.size        = size;
+		this.store       = store;
+		this.macrophages = new int[size * size];
+		this.bacteria    = new int[size * size];
+		Arrays.fill(macrophages, EMPTY);
+		Arrays.fill(bacteria, EMPTY);
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the number of rows (same as columns).
+	 * @return an integer representing the grid size
+	 **************************************************************************/
+	public int getSize()                  { return(size); }
+
+	/**************************************************************************
+	 * Accessor method that returns the number of cells.
+	 * @return an integer representing size * size
+	 **************************************************************************/
+	public int getNumCells()              { return(macrophages.length); }
+
+	/**************************************************************************
+	 * Methods converting between (row, col) coordinates and cell indices.
+	 **************************************************************************/
+	public int index(int row, int col)    { return(row * size + col); }
+	public int rowOf(int cell)            { return(cell / size); }
+	public int colOf(int cell)            { return(cell % size); }
+
+	/**************************************************************************
+	 * Wraps a row or column coordinate moved by delta (-1, 0 or 1) around
+	 * the torus.
+	 *
+	 * @param coord  a row or column in [0, size)
+	 * @param delta  the step to take, -1, 0 or 1
+	 * @return the wrapped coordinate in [0, size)
+	 **************************************************************************/
+	public int wrap(int coord, int delta)
+	{
+		int v = coord + delta;
+		if(v < 0)
+		{
+			v += size;
+		}
+		else if(v >= size)
+		{
+			v -= size;
+		}
+		return v;
+	}
+
+	public boolean isOccupied(int cell)
+	{
+		return macrophages[cell] != EMPTY || bacteria[cell] != EMPTY;
+	}
+
+	public boolean hasMacrophage(int cell) { return(macrophages[cell] != EMPTY); }
+	public boolean hasBacteria(int cell)   { return(bacteria[cell] != EMPTY); }
+
+	/**************************************************************************
+	 * Accessor methods returning the store slot of the agent in a cell.
+	 * @return the slot, or EMPTY
+	 **************************************************************************/
+	public int getMacrophageSlot(int cell) { return(macrophages[cell]); }
+	public int getBacteriaSlot(int cell)   { return(bacteria[cell]); }
+
+	// the layers themselves, for bulk scans such as NeighborMasks; callers
+	// must only read them
+	int[] getMacrophageLayer()             { return(macrophages); }
+	int[] getBacteriaLayer()               { return(bacteria); }
+
+	/**************************************************************************
+	 * Accessor methods returning the agent in a cell.
+	 * @return the agent, or null if the cell has none of that type
+	 **************************************************************************/
+	public Macrophage getMacrophage(int cell)
+	{
+		int slot = macrophages[cell];
+		return (slot == EMPTY) ? null : (Macrophage)store.getAgent(slot);
+	}
+
+	public Bacteria getBacteria(int cell)
+	{
+		int slot = bacteria[cell];
+		return (slot == EMPTY) ? null : (Bacteria)store.getAgent(slot);
+	}
+
+	/**************************************************************************
+	 * Places an agent in a cell (replacing any agent of the same type there)
+	 * and updates the agent's row and column.
+	 **************************************************************************/
+	public void occupy(int cell, Macrophage m)
+	{
+		macrophages[cell] = m.getSlot();
+		m.setRowCol(rowOf(cell), colOf(cell));
+	}
+
+	public void occupy(int cell, Bacteria b)
+	{
+		bacteria[cell] = b.getSlot();
+		b.setRowCol(rowOf(cell), colOf(cell));
+	}
+
+	public void removeMacrophage(int cell) { macrophages[cell] = EMPTY; }
+	public void removeBacteria(int cell)   { bacteria[cell] = EMPTY; }
+}
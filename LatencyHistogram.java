@@ -0,0 +1,96 @@
+/**
+ * This class records durations in nanoseconds into a fixed set of buckets,
+ * in the manner of an HDR histogram: values below 64 have a bucket each,
+ * and every power of two above is split into 32 equal buckets, so any
+ * percentile read back is within about 3% of the true value, at a constant
+ * cost per recorded value and in 15 KB however many are recorded.
+ *
+ * Values are recorded by one thread.  Other threads (e.g. JMX) may read at
+ * any time, and then see a recent, possibly slightly inconsistent, state.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean
+{
+	private static final int SUB_BITS   = 5;                 // 32 buckets per power of two
+	private static final int SUB_COUNT  = 1 << SUB_BITS;
+	private static final int LINEAR     = 2 * SUB_COUNT;     // values with a bucket each
+	private static final int NUM_BUCKETS = LINEAR + (63 - SUB_BITS - 1) * SUB_COUNT;
+
+	private final long[] counts = new long[NUM_BUCKETS];
+	private long count;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max;
+
+	/**************************************************************************
+	 * Records one duration.
+	 * @param nanos  the duration; negative values count as 0
+	 **************************************************************************/
+	public void record(long nanos)
+	{
+		long v = Math.max(nanos, 0);
+		counts[bucketOf(v)]++;
+		count++;
+		sum += v;
+		if(v < min) min = v;
+		if(v > max) max = v;
+	}
+
+	private static int bucketOf(long v)
+	{
+		if(v < LINEAR)
+		{
+			return (int)v;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(v);          // >= SUB_BITS + 1
+		int sub = (int)(v >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+		return LINEAR + (exp - SUB_BITS - 1) * SUB_COUNT + sub;
+	}
+
+	// largest value that falls in the bucket
+	private static long highestIn(int bucket)
+	{
+		if(bucket < LINEAR)
+		{
+			return bucket;
+		}
+		int exp = (bucket - LINEAR) / SUB_COUNT + SUB_BITS + 1;
+		long sub = (bucket - LINEAR) % SUB_COUNT;
+		long width = 1L << (exp - SUB_BITS);
+		return ((SUB_COUNT + sub) << (exp - SUB_BITS)) + width - 1;
+	}
+
+	/**************************************************************************
+	 * Returns the value below or at which the given fraction of the
+	 * recorded durations fall, to within the bucket width.
+	 * @param fraction  between 0 and 1, e.g. 0.99 for the 99th percentile
+	 * @return the percentile, or 0 if nothing was recorded
+	 **************************************************************************/
+	public long getPercentile(double fraction)
+	{
+		long total = count;
+		if(total == 0)
+		{
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(fraction * total));
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++)
+		{
+			seen += counts[i];
+			if(seen >= rank)
+			{
+				return Math.min(highestIn(i), max);
+			}
+		}
+		return max;
+	}
+
+	public long getCount()      { return(count); }
+	public long getMinNanos()   { return(count == 0 ? 0 : min); }
+	public long getMaxNanos()   { return(max); }
+	public double getMeanNanos(){ return(count == 0 ? 0 : (double)sum / count); }
+	public long getP50Nanos()   { return(getPercentile(0.50)); }
+	public long getP90Nanos()   { return(getPercentile(0.90)); }
+	public long getP99Nanos()   { return(getPercentile(0.99)); }
+	public long getP999Nanos()  { return(getPercentile(0.999)); }
+}
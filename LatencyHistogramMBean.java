@@ -0,0 +1,15 @@
+/**
+ * This interface is the JMX management interface of a LatencyHistogram; see
+ * there.  All values are in nanoseconds.
+ */
+public interface LatencyHistogramMBean
+{
+	public long getCount();
+	public long getMinNanos();
+	public long getMaxNanos();
+	public double getMeanNanos();
+	public long getP50Nanos();
+	public long getP90Nanos();
+	public long getP99Nanos();
+	public long getP999Nanos();
+}
@@ -0,0 +1,477 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class launches simulation runs described by a Scenario:
+ *
+ *     java Launcher [file.properties] [key=value ...]
+ *
+ * Parameters given on the command line override those read from the file,
+ * which override the defaults (see Scenario for the keys).  A single
+ * scenario run once is run just as Tester runs it: with the gui unless
+ * headless=true, and with whichever statistics, logs, metrics and
+ * checkpoints are asked for.
+ *
+ * Otherwise -- when some key lists several values, or replications > 1 --
+ * the runs form a sweep.  Every run of a sweep is headless and quiet, the
+ * runs go concurrently on a fixed pool of `threads` threads (the parallel
+ * and time-stepped engines then get one thread per run), and each adds one line of
+ * comma-separated results to `output`, in run order whatever order they
+ * finish in.  Files named for logs, metrics, statistics or checkpoints get
+ * the run number inserted before their extension, so runs do not overwrite
+ * each other's.
+ */
+public class Launcher
+{
+	private static final String HEADER = "run,replication,seed,cells,macrophages,bacteria,"
+		+ "maxTime,parallel,scheduler,step,finalMacrophages,finalBacteria,births,eats,moves,events,seconds";
+
+	public static void main(String[] args) throws Exception
+	{
+		launch(args, "usage: java Launcher [file.properties] [key=value ...]");
+	}
+
+	/**************************************************************************
+	 * Does what main() does with the given arguments: reads the optional
+	 * properties file and the key=value settings, then runs the single
+	 * scenario or the sweep they describe.  On a bad argument, or a file
+	 * that cannot be read or written (the properties file, a checkpoint to
+	 * resume from, an output), prints the problem and the usage line and
+	 * exits with status 2.  Tester comes here too, once it has turned its
+	 * flags into settings.
+	 *
+	 * @param args   [file.properties] [key=value ...]
+	 * @param usage  the usage line to print on a bad argument
+	 **************************************************************************/
+	static void launch(String[] args, String usage) throws InterruptedException,
+		ExecutionException
+	{
+		try
+		{
+			Map<String, String> params = Scenario.defaults();
+			List<Scenario> scenarios;
+			try
+			{
+				int first = 0;
+				if(args.length > 0 && args[0].indexOf('=') < 0)
+				{
+					Scenario.load(params, Paths.get(args[0]));
+					first = 1;
+				}
+				for (int i = first; i < args.length; i++)
+				{
+					Scenario.set(params, args[i]);
+				}
+				scenarios = Scenario.expand(params);
+				if(scenarios.size() > 1 || scenarios.get(0).getReplications() > 1)
+				{
+					checkSweep(scenarios);
+				}
+			}
+			catch(IllegalArgumentException e)
+			{
+				fail(e.getMessage(), usage);
+				return;
+			}
+
+			if(scenarios.size() == 1 && scenarios.get(0).getReplications() == 1)
+			{
+				run(scenarios.get(0));
+			}
+			else
+			{
+				sweep(scenarios);
+			}
+		}
+		catch(IOException e)
+		{
+			fail(describe(e), usage);
+		}
+		catch(UncheckedIOException e)
+		{
+			fail(describe(e.getCause()), usage);
+		}
+		catch(ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if(cause instanceof UncheckedIOException)
+			{
+				cause = cause.getCause();
+			}
+			if(!(cause instanceof IOException))
+			{
+				throw e;
+			}
+			fail(describe((IOException)cause), usage);
+		}
+	}
+
+	// prints the problem and the usage line, and exits with status 2
+	private static void fail(String problem, String usage)
+	{
+		System.err.println(problem);
+		System.err.println(usage);
+		System.exit(2);
+	}
+
+	// a one-line account of a failed read or write; the messages of the
+	// commonest file system exceptions are only the file's name
+	private static String describe(IOException e)
+	{
+		if(e instanceof NoSuchFileException)
+		{
+			return "no such file: " + e.getMessage();
+		}
+		if(e instanceof AccessDeniedException)
+		{
+			return "permission denied: " + e.getMessage();
+		}
+		return e.getMessage();
+	}
+
+	/**************************************************************************
+	 * Runs a single scenario once, with the gui unless it is headless, and
+	 * writes whatever outputs it names.
+	 * @param scenario  the parameters of the run
+	 **************************************************************************/
+	public static void run(Scenario scenario) throws IOException, InterruptedException
+	{
+		if(scenario.isParallel() || scenario.getStep() > 0)
+		{
+			for (String key : new String[] { "log", "metrics", "checkpoint", "resume" })
+			{
+				if(scenario.getPath(key) != null)
+				{
+					System.err.println(key + " is not supported by the "
+						+ (scenario.isParallel() ? "parallel" : "time-stepped") + " engine; ignored");
+				}
+			}
+			if(scenario.isParallel())
+			{
+				ParallelSimulation p = new ParallelSimulation(scenario.getNumCells(),
+					scenario.getGuiCellWidth(), scenario.getNumMacrophages(), scenario.getNumBacteria(),
+					scenario.getMaxTime(), scenario.getSeed(), scenario.getNumThreads(),
+					ParallelSimulation.DEFAULT_WINDOW);
+				PrintStream stats = attachStatistics(p, scenario, scenario.getPath("statsOut"));
+				if(scenario.isHeadless())
+				{
+					p.runHeadless();
+				}
+				else
+				{
+					p.run(scenario.getDelay());
+				}
+				closeStatistics(stats);
+			}
+			else
+			{
+				SteppedSimulation p = new SteppedSimulation(scenario.getNumCells(),
+					scenario.getGuiCellWidth(), scenario.getNumMacrophages(), scenario.getNumBacteria(),
+					scenario.getMaxTime(), scenario.getSeed(), scenario.getNumThreads(),
+					scenario.getStep());
+				PrintStream stats = attachStatistics(p, scenario, scenario.getPath("statsOut"));
+				if(scenario.isHeadless())
+				{
+					p.runHeadless();
+				}
+				else
+				{
+					p.run(scenario.getDelay());
+				}
+				closeStatistics(stats);
+			}
+			return;
+		}
+
+		Path resume = scenario.getPath("resume");
+		Simulation s;
+		if(resume != null)
+		{
+			s = Checkpoint.load(resume);
+			s.setScheduler(scenario.newScheduler(s.getNumMacrophages() + s.getNumBacteria()));
+		}
+		else
+		{
+			s = newSimulation(scenario, scenario.getSeed());
+		}
+		PrintStream stats = attachStatistics(s, scenario, scenario.getPath("statsOut"));
+		Path checkpoint = scenario.getPath("checkpoint");
+		if(checkpoint != null)
+		{
+			s.setCheckpointing(checkpoint, scenario.getCheckpointInterval());
+		}
+
+		Path metricsFile = scenario.getPath("metrics");
+		EngineMetrics metrics = null;
+		if(metricsFile != null)
+		{
+			metrics = new EngineMetrics(s, 1.0);
+			s.setMetrics(metrics);
+			try
+			{
+				metrics.register();
+			}
+			catch(javax.management.JMException e)
+			{
+				System.err.println("metrics not published over JMX: " + e);
+			}
+		}
+
+		Path logFile = scenario.getPath("log");
+		EventLogWriter log = null;
+		if(logFile != null)
+		{
+			log = new EventLogWriter(logFile, s.getNumCells());
+			s.setEventSink(log);
+		}
+
+		if(scenario.isHeadless())
+		{
+			s.runHeadless();
+		}
+		else
+		{
+			s.run(scenario.getDelay());
+		}
+
+		if(log != null)
+		{
+			log.close();
+		}
+		if(metrics != null)
+		{
+			metrics.dump(metricsFile);
+		}
+		closeStatistics(stats);
+	}
+
+	/**************************************************************************
+	 * Runs every replication of every scenario headless, on a fixed pool of
+	 * threads, and writes one line of results per run.
+	 * @param scenarios  the scenarios; threads and output are taken from the
+	 *                   first, as they cannot differ from run to run
+	 **************************************************************************/
+	public static void sweep(List<Scenario> scenarios) throws IOException,
+		InterruptedException, ExecutionException
+	{
+		checkSweep(scenarios);
+		Scenario first = scenarios.get(0);
+		List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+		for (final Scenario s : scenarios)
+		{
+			for (int r = 0; r < s.getReplications(); r++)
+			{
+				final int run         = tasks.size();
+				final int replication = r;
+				tasks.add(new Callable<String>()
+				{
+					public String call() throws Exception
+					{
+						return runOne(s, run, replication);
+					}
+				});
+			}
+		}
+
+		Path outputFile = first.getPath("output");
+		PrintStream out = (outputFile != null)
+			? new PrintStream(new BufferedOutputStream(Files.newOutputStream(outputFile)), false)
+			: System.out;
+		ExecutorService pool = Executors.newFixedThreadPool(first.getNumThreads());
+		long start = System.nanoTime();
+		try
+		{
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (Callable<String> task : tasks)
+			{
+				results.add(pool.submit(task));
+			}
+			out.println(HEADER);
+			for (Future<String> result : results)
+			{
+				out.println(result.get());
+				out.flush();
+			}
+		}
+		finally
+		{
+			pool.shutdownNow();
+			if(out != System.out)
+			{
+				out.close();
+			}
+		}
+		System.err.printf("%d runs on %d threads in %.3f s%n", tasks.size(),
+			first.getNumThreads(), (System.nanoTime() - start) / 1e9);
+	}
+
+	/**************************************************************************
+	 * Checks that scenarios can be run together as a sweep.
+	 * @param scenarios  the scenarios of the sweep
+	 * @throws IllegalArgumentException if they cannot
+	 **************************************************************************/
+	public static void checkSweep(List<Scenario> scenarios)
+	{
+		Scenario first = scenarios.get(0);
+		for (Scenario s : scenarios)
+		{
+			if(!s.get("threads").equals(first.get("threads")) || !s.get("output").equals(first.get("output")))
+			{
+				throw new IllegalArgumentException("threads and output cannot be swept");
+			}
+			if(s.getPath("resume") != null)
+			{
+				throw new IllegalArgumentException("a sweep cannot resume from a checkpoint");
+			}
+			if(s.getStatsInterval() > 0 && s.getPath("statsOut") == null)
+			{
+				throw new IllegalArgumentException("statistics of a sweep need a statsOut file");
+			}
+		}
+	}
+
+	// runs one replication of a sweep and returns its line of results
+	private static String runOne(Scenario scenario, int run, int replication) throws Exception
+	{
+		long seed = scenario.seedFor(replication);
+		SimulationManager sim;
+		Simulation        serial = null;
+		ParallelSimulation parallel = null;
+		SteppedSimulation  stepped  = null;
+		if(scenario.isParallel())
+		{
+			sim = parallel = new ParallelSimulation(scenario.getNumCells(),
+				scenario.getGuiCellWidth(), scenario.getNumMacrophages(), scenario.getNumBacteria(),
+				scenario.getMaxTime(), seed, 1, ParallelSimulation.DEFAULT_WINDOW);
+		}
+		else if(scenario.getStep() > 0)
+		{
+			sim = stepped = new SteppedSimulation(scenario.getNumCells(),
+				scenario.getGuiCellWidth(), scenario.getNumMacrophages(), scenario.getNumBacteria(),
+				scenario.getMaxTime(), seed, 1, scenario.getStep());
+		}
+		else
+		{
+			sim = serial = newSimulation(scenario, seed);
+		}
+		Path statsFile = forRun(scenario.getPath("statsOut"), run);
+		PrintStream stats = attachStatistics(sim, scenario, statsFile);
+
+		EngineMetrics  metrics = null;
+		EventLogWriter log     = null;
+		if(serial != null)
+		{
+			Path checkpoint = forRun(scenario.getPath("checkpoint"), run);
+			if(checkpoint != null)
+			{
+				serial.setCheckpointing(checkpoint, scenario.getCheckpointInterval());
+			}
+			if(scenario.getPath("metrics") != null)
+			{
+				// not registered over JMX: concurrent runs would clash by name
+				metrics = new EngineMetrics(serial, 1.0);
+				serial.setMetrics(metrics);
+			}
+			if(scenario.getPath("log") != null)
+			{
+				log = new EventLogWriter(forRun(scenario.getPath("log"), run), serial.getNumCells());
+				serial.setEventSink(log);
+			}
+		}
+
+		long start = System.nanoTime();
+		long events;
+		try
+		{
+			if(serial != null)
+			{
+				serial.runToEnd();
+				events = serial.getNumEvents();
+			}
+			else if(parallel != null)
+			{
+				parallel.runToEnd();
+				events = parallel.getNumEvents();
+			}
+			else
+			{
+				stepped.runToEnd();
+				events = stepped.getNumEvents();
+			}
+		}
+		finally
+		{
+			if(log != null)
+			{
+				log.close();
+			}
+			closeStatistics(stats);
+		}
+		double secs = (System.nanoTime() - start) / 1e9;
+		if(metrics != null)
+		{
+			metrics.dump(forRun(scenario.getPath("metrics"), run));
+		}
+
+		Statistics st = sim.getStatistics();
+		return run + "," + replication + "," + seed + "," + scenario.getNumCells() + ","
+			+ scenario.getNumMacrophages() + "," + scenario.getNumBacteria() + ","
+			+ scenario.getMaxTime() + "," + scenario.isParallel() + "," + scenario.get("scheduler") + ","
+			+ scenario.get("step") + ","
+			+ st.getNumMacrophages() + "," + st.getNumBacteria() + "," + st.getBirths() + ","
+			+ st.getEats() + "," + st.getMoves() + "," + events + ","
+			+ String.format(Locale.ROOT, "%.3f", secs);
+	}
+
+	private static Simulation newSimulation(Scenario scenario, long seed)
+	{
+		Simulation s = new Simulation(scenario.getNumCells(), scenario.getGuiCellWidth(),
+			scenario.getNumMacrophages(), scenario.getNumBacteria(), scenario.getMaxTime(), seed);
+		if(!scenario.get("scheduler").equals("heap"))
+		{
+			s.setScheduler(scenario.newScheduler(scenario.getNumMacrophages() + scenario.getNumBacteria()));
+		}
+		return s;
+	}
+
+	// sets up the time series and any printed statistics; returns the
+	// stream they are printed to, if it must be closed at the end
+	private static PrintStream attachStatistics(SimulationManager sim, Scenario scenario,
+		Path statsFile) throws IOException
+	{
+		sim.recordTimeSeries(scenario.getSampleInterval());
+		if(scenario.getStatsInterval() <= 0)
+		{
+			return null;
+		}
+		PrintStream out = (statsFile != null)
+			? new PrintStream(new BufferedOutputStream(Files.newOutputStream(statsFile)), false)
+			: System.out;
+		sim.getStatistics().addListener(new StatisticsPrinter(out), scenario.getStatsInterval());
+		return (out != System.out) ? out : null;
+	}
+
+	private static void closeStatistics(PrintStream stats)
+	{
+		if(stats != null)
+		{
+			stats.close();
+		}
+	}
+
+	// file name with ".<run>" inserted before its extension
+	private static Path forRun(Path file, int run)
+	{
+		if(file == null)
+		{
+			return null;
+		}
+		String name = file.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		name = (dot > 0) ? name.substring(0, dot) + "." + run + name.substring(dot)
+		                 : name + "." + run;
+		return file.resolveSibling(name);
+	}
+}
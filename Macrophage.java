@@ -1,56 +1,63 @@
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 public class Macrophage extends Agent
 {
-	public Macrophage()
+	public Macrophage(AgentStore store, RandomGenerator rand)
 	{	
-		super(AgentType.MACROPHAGE);
+		super(store, rand, AgentType.MACROPHAGE);
 	}
 	
-	public Macrophage(int x, int y)
+	public Macrophage(AgentStore store, RandomGenerator rand, int x, int y)
 	{
-		super(AgentType.MACROPHAGE);
+		super(store, rand, AgentType.MACROPHAGE);
 	    setRowCol(x,y);	
 	}
 
-	protected Cell getPreferredMove(ArrayList<Cell> list, Cell[][] landscape)
+	protected int getPreferredMove(Neighborhood list, Grid landscape, RandomGenerator rand)
 	{
 //		System.out.println("Macro's method");
 		int row = this.getRow();
 		int col = this.getCol();
 		if(list.size() == 0)
 		{
-			Cell cell = landscape[row][col];
+			int cell = landscape.index(row, col);
 			return cell;
 		}
 
-		ArrayList<Cell> bacteriaCells = new ArrayList<Cell>();
+		// count the neighbouring cells holding bacteria; rather than copying
+		// them into a second list, pick the k-th one in neighbourhood order
+		int numBacteriaCells = 0;
 		for(int i = 0; i < list.size(); i++)
 		{
-			int x = list.get(i).getRow();
-			int y = list.get(i).getCol();
-		   
-			if(landscape[x][y].hasBacteria())
+			if(landscape.hasBacteria(list.get(i)))
 			{
-				bacteriaCells.add(list.get(i));		
-			}	
+				numBacteriaCells++;
+			}
 		}
 
 		//no preferred move, pick from neighboorhood
-		if(bacteriaCells.size() == 0)
+		if(numBacteriaCells == 0)
 		{
-			int index = Simulation.rand.nextInt(list.size());	
+			int index = rand.nextInt(list.size());	
 			return list.get(index);
 		}
 		else
 		{
-			int index = Simulation.rand.nextInt(bacteriaCells.size());	
-			return bacteriaCells.get(index);	
+			int index = rand.nextInt(numBacteriaCells);	
+			for(int i = 0; i < list.size(); i++)
+			{
+				if(landscape.hasBacteria(list.get(i)) && index-- == 0)
+				{
+					return list.get(i);
+				}
+			}
+			return list.get(0); // not reached
 		}	
 	}
 
     public void scheduleEat(double time)
     {
-    	nextEvents[1] = time; //+ Simulation.rand.nextDouble();
+    	store.setNextAction(slot, time); //+ rand.nextDouble();
     }
 }
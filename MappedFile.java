@@ -0,0 +1,69 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * This class gives random read access to a file of any size through memory
+ * mapping, so that the operating system pages the file in and out and none
+ * of it is copied onto the Java heap.  A single MappedByteBuffer can only
+ * span 2 GB, so the file is mapped in 1 GB segments, each overlapping the
+ * next by a few bytes: any primitive value then lies wholly inside the
+ * segment its first byte falls in.
+ *
+ * Values are read big-endian at absolute positions; instances are safe to
+ * share between threads.
+ */
+public class MappedFile
+{
+	private static final int  SHIFT   = 30;                // 1 GB segments
+	private static final long MASK    = (1L << SHIFT) - 1;
+	private static final int  OVERLAP = 8;                 // size of the largest primitive
+
+	private final long size;
+	private final MappedByteBuffer[] segments;
+
+	/**************************************************************************
+	 * Maps the whole file read-only.  The file must not be truncated while
+	 * it is mapped.
+	 *
+	 * @param file  the file to map
+	 * @throws IOException if the file cannot be opened or mapped
+	 **************************************************************************/
+	public MappedFile(Path file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, READ))
+		{
+			size     = channel.size();
+			segments = new MappedByteBuffer[(int)((size + MASK) >>> SHIFT)];
+			for (int i = 0; i < segments.length; i++)
+			{
+				long start = (long)i << SHIFT;
+				long length = Math.min((1L << SHIFT) + OVERLAP, size - start);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			}
+		}
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the length of the file.
+	 * @return the number of bytes mapped
+	 **************************************************************************/
+	public long size() { return(size); }
+
+	public byte getByte(long pos)     { return segment(pos).get((int)(pos & MASK)); }
+	public int getInt(long pos)       { return segment(pos).getInt((int)(pos & MASK)); }
+	public long getLong(long pos)     { return segment(pos).getLong((int)(pos & MASK)); }
+	public double getDouble(long pos) { return segment(pos).getDouble((int)(pos & MASK)); }
+
+	private MappedByteBuffer segment(long pos)
+	{
+		if(pos < 0 || pos >= size)
+		{
+			throw new IndexOutOfBoundsException("position " + pos + " outside a file of " + size + " bytes");
+		}
+		return segments[(int)(pos >>> SHIFT)];
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * This class computes, for a whole strip of rows of a Grid at once, two
+ * 8-bit masks per cell describing its Moore neighbourhood: which of the
+ * eight neighbouring cells are free (hold no agent), and which hold a
+ * bacterium.  Bit k stands for the k-th neighbour in the order
+ * Agent.getNeighborhood() visits them -- row above left to right, then
+ * left and right, then row below -- so picking the n-th set bit picks the
+ * same cell as picking the n-th entry of the agent's Neighborhood.
+ *
+ * When no cell holds both a macrophage and a bacterium (as between the
+ * steps of SteppedSimulation), the cells an agent may move or divide into
+ * follow from the two masks:
+ *
+ *     bacterium:   ~bacteria & 0xFF   (free, or a macrophage to be eaten by)
+ *     macrophage:  free | bacteria    (preferring the bacteria)
+ *
+ * This implementation visits the cells one at a time.  create() returns a
+ * VectorNeighborMasks instead, which does eight or more cells per
+ * instruction with the incubating Vector API, when that class has been
+ * built (make vector) and the JVM runs with
+ * --add-modules jdk.incubator.vector.
+ */
+public class NeighborMasks
+{
+	// row and column offsets of neighbour k, in Agent.getNeighborhood() order
+	private static final int[] ROW_OFFSETS = { -1, -1, -1,  0, 0,  1, 1, 1 };
+	private static final int[] COL_OFFSETS = { -1,  0,  1, -1, 1, -1, 0, 1 };
+
+	/**************************************************************************
+	 * Returns the fastest implementation this JVM can run: the vectorised
+	 * one if it can be loaded, otherwise a scalar NeighborMasks.
+	 * @return an implementation, safe to share between threads
+	 **************************************************************************/
+	public static NeighborMasks create()
+	{
+		try
+		{
+			return (NeighborMasks)Class.forName("VectorNeighborMasks").getDeclaredConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException | LinkageError e)
+		{
+			return new NeighborMasks(); // not built, or jdk.incubator.vector not added
+		}
+	}
+
+	/**************************************************************************
+	 * Computes the masks of every cell in rows startRow to endRow - 1.  The
+	 * masks of the cell in column col of row r go at index
+	 * (r - startRow) * size + col of each array.
+	 *
+	 * @param landscape  the grid
+	 * @param startRow   first row of the strip
+	 * @param endRow     one past its last row
+	 * @param free       receives the free-neighbour masks
+	 * @param bacteria   receives the bacteria-neighbour masks
+	 **************************************************************************/
+	public void compute(Grid landscape, int startRow, int endRow, int[] free, int[] bacteria)
+	{
+		for (int row = startRow; row < endRow; row++)
+		{
+			computeRow(landscape, row, (row - startRow) * landscape.getSize(), 0,
+				landscape.getSize(), free, bacteria);
+		}
+	}
+
+	/**************************************************************************
+	 * Computes the masks of a single cell of a strip, at the index compute()
+	 * would put them, for when only a few cells' masks are needed.
+	 *
+	 * @param landscape  the grid
+	 * @param startRow   first row of the strip
+	 * @param cell       the cell, in the strip
+	 * @param free       receives the free-neighbour mask
+	 * @param bacteria   receives the bacteria-neighbour mask
+	 **************************************************************************/
+	public static void computeCell(Grid landscape, int startRow, int cell, int[] free, int[] bacteria)
+	{
+		int row = landscape.rowOf(cell), col = landscape.colOf(cell);
+		computeRow(landscape, row, (row - startRow) * landscape.getSize(), col, col + 1, free, bacteria);
+	}
+
+	/**************************************************************************
+	 * Computes the masks of columns fromCol to toCol - 1 of one row, one cell
+	 * at a time; subclasses use it for the columns they cannot vectorise.
+	 *
+	 * @param landscape  the grid
+	 * @param row        the row
+	 * @param out        index in the mask arrays of column 0 of the row
+	 * @param fromCol    first column
+	 * @param toCol      one past the last column
+	 * @param free       receives the free-neighbour masks
+	 * @param bacteria   receives the bacteria-neighbour masks
+	 **************************************************************************/
+	protected static void computeRow(Grid landscape, int row, int out, int fromCol, int toCol,
+		int[] free, int[] bacteria)
+	{
+		int[] ms = landscape.getMacrophageLayer();
+		int[] bs = landscape.getBacteriaLayer();
+		int   a  = landscape.index(landscape.wrap(row, -1), 0);  // row above
+		int   h  = landscape.index(row, 0);
+		int   w  = landscape.index(landscape.wrap(row, 1), 0);   // row below
+		for (int col = fromCol; col < toCol; col++)
+		{
+			int l = landscape.wrap(col, -1), r = landscape.wrap(col, 1);
+			int[] cells = { a + l, a + col, a + r, h + l, h + r, w + l, w + col, w + r };
+			int f = 0, b = 0;
+			for (int k = 0; k < 8; k++)
+			{
+				// EMPTY is -1 and slots are never negative: the sign bit tells
+				b |= (~bs[cells[k]] >>> 31) << k;
+				f |= ((bs[cells[k]] & ms[cells[k]]) >>> 31) << k;
+			}
+			free[out + col]     = f;
+			bacteria[out + col] = b;
+		}
+	}
+
+	/**************************************************************************
+	 * Returns the cell that bit k of a mask stands for.
+	 * @param landscape  the grid
+	 * @param cell       the cell whose neighbourhood the mask describes
+	 * @param k          the bit, 0 to 7
+	 * @return index of the neighbouring cell
+	 **************************************************************************/
+	public static int neighbor(Grid landscape, int cell, int k)
+	{
+		int row = landscape.rowOf(cell), col = landscape.colOf(cell);
+		return landscape.index(landscape.wrap(row, ROW_OFFSETS[k]), landscape.wrap(col, COL_OFFSETS[k]));
+	}
+
+	/**************************************************************************
+	 * Returns the position of the n-th (from 0) set bit of a mask.
+	 * @param mask  the mask, with more than n bits set
+	 * @param n     which set bit
+	 * @return the bit, 0 to 7
+	 **************************************************************************/
+	public static int nthBit(int mask, int n)
+	{
+		for (; n > 0; n--)
+		{
+			mask &= mask - 1; // drop the lowest set bit
+		}
+		return Integer.numberOfTrailingZeros(mask);
+	}
+
+	/**************************************************************************
+	 * Tells whether compute() does several cells at a time, and so costs
+	 * less per cell than computeCell().
+	 * @return false for this scalar implementation
+	 **************************************************************************/
+	public boolean isVectorised() { return(false); }
+
+	public String toString()
+	{
+		return "scalar";
+	}
+}
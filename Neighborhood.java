@@ -0,0 +1,50 @@
+/**
+ * This class is a reusable scratch buffer holding the candidate cells (as
+ * Grid cell indices) of an agent's Moore neighbourhood (at most eight).  The engine owns one instance
+ * and hands it to every move/divide calculation, so evaluating a
+ * neighbourhood allocates nothing per event.  The contents are only valid
+ * until the next calculation that reuses the buffer.
+ */
+public class Neighborhood
+{
+	public static final int MAX_CELLS = 8;
+
+	private final int[] cells = new int[MAX_CELLS];
+	private int size;
+
+	/**************************************************************************
+	 * Empties the buffer for a new calculation.
+	 **************************************************************************/
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**************************************************************************
+	 * Appends a candidate cell; cells keep the order they were added in.
+	 * @param cell  index of the candidate cell
+	 **************************************************************************/
+	public void add(int cell)
+	{
+		cells[size++] = cell;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the number of candidate cells.
+	 * @return an integer between 0 and MAX_CELLS
+	 **************************************************************************/
+	public int size()
+	{
+		return size;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the i-th candidate cell.
+	 * @param i  index of the candidate, 0 <= i < size()
+	 * @return the Grid index of the candidate cell
+	 **************************************************************************/
+	public int get(int i)
+	{
+		return cells[i];
+	}
+}
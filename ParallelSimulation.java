@@ -0,0 +1,742 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.random.RandomGenerator;
+import javax.swing.SwingUtilities;
+
+/**
+ * This class implements an optional parallel version of the next-event engine
+ * for very large landscapes.  The torus is cut into an even number of
+ * horizontal strips ("regions") of at least two rows each.  Every region owns
+ * the agents standing in its rows: their EventHeap, their AgentRegistry lists
+ * and its own random stream, keyed by region number (see RandomStreams).
+ *
+ * Simulated time advances in windows of fixed width.  Each window has two
+ * phases: first the even regions process their events falling inside the
+ * window, concurrently, then the odd regions do.  An event only reads and
+ * writes cells within one step of its agent, and two regions active in the
+ * same phase are separated by a whole inactive region of at least two rows,
+ * so their events never touch the same cell, agent or queue and need no
+ * locking.  An agent that steps (or is born) over the border goes into an
+ * inbox of the neighbouring region, which drains its inboxes before its next
+ * phase; a bacterium stepping into a neighbour's macrophage is eaten on the
+ * spot, as it would be by Simulation.  Only the AgentStore is shared, so
+ * allocating and releasing slots is synchronized, and the store is grown
+ * only while no region is running: a region that finds no slot left for a
+ * divide pauses, and once the other regions of its phase are done the store
+ * grows and the region carries on where it stopped.  Nothing else touches
+ * its rows in between, so the pause makes no difference to the run.
+ *
+ * This is a conservative scheme with the window as the synchronisation step:
+ * within a region events run in exact time order, while across a border they
+ * are ordered only to within one window.  Runs are therefore statistically
+ * equivalent to, not identical with, Simulation; the smaller the window, the
+ * closer they get.  For a given seed, region count and window the trajectory
+ * is deterministic whatever the number of threads (only the agent ids, which
+ * come from the shared store, depend on thread timing).
+ */
+public class ParallelSimulation extends SimulationManager
+{
+	public static final double DEFAULT_WINDOW = 0.05; // width of a time window
+
+	private static final int MIN_HEADROOM = 1024; // spare slots kept between windows
+
+	private AgentStore store;       // shared by all regions; lock it to allocate or release
+	private Grid landscape;
+	private Region[] regions;
+	private Region[] regionOfRow;   // owning region of every row
+	private ExecutorService pool;
+	private int numThreads;
+	private double window;
+	private long numEvents;         // events processed by all regions so far
+	private int reserved;           // slots promised to divides in progress, guarded by store
+
+	/**************************************************************************
+	 * Constructs a ParallelSimulation with one thread per available
+	 * processor, two regions per thread (as many as the landscape allows) and
+	 * the default window.
+	 *
+	 * @param numCells       number of rows and columns in the environment
+	 * @param guiCellWidth   width of each cell drawn in the gui
+	 * @param numMacrophages number of initial macrophages in the environment
+	 * @param numBacteria    number of initial bacteria in the environment
+	 * @param maxTime        simulated time at which the run ends
+	 * @param seed           master seed of this simulation's random streams
+	 **************************************************************************/
+	public ParallelSimulation(int numCells,       int guiCellWidth,
+		int numMacrophages, int numBacteria, int maxTime, long seed)
+	{
+		this(numCells, guiCellWidth, numMacrophages, numBacteria, maxTime, seed,
+			Runtime.getRuntime().availableProcessors(), DEFAULT_WINDOW);
+	}
+
+	/**************************************************************************
+	 * Constructs a ParallelSimulation using the given number of worker
+	 * threads, with two regions per thread (as many as the landscape allows).
+	 *
+	 * @param numCells       number of rows and columns in the environment
+	 * @param guiCellWidth   width of each cell drawn in the gui
+	 * @param numMacrophages number of initial macrophages in the environment
+	 * @param numBacteria    number of initial bacteria in the environment
+	 * @param maxTime        simulated time at which the run ends
+	 * @param seed           master seed of this simulation's random streams
+	 * @param numThreads     number of worker threads
+	 * @param window         width of the synchronisation window in simulated time
+	 **************************************************************************/
+	public ParallelSimulation(int numCells,       int guiCellWidth,
+		int numMacrophages, int numBacteria, int maxTime, long seed,
+		int numThreads, double window)
+	{
+		this(numCells, guiCellWidth, numMacrophages, numBacteria, maxTime, seed,
+			numThreads, defaultRegions(numCells, numThreads), window);
+	}
+
+	/**************************************************************************
+	 * Constructs a ParallelSimulation.  The initial agents are placed exactly
+	 * as Simulation places them from the same seed; after that each region
+	 * draws from its own stream.
+	 *
+	 * @param numCells       number of rows and columns in the environment
+	 * @param guiCellWidth   width of each cell drawn in the gui
+	 * @param numMacrophages number of initial macrophages in the environment
+	 * @param numBacteria    number of initial bacteria in the environment
+	 * @param maxTime        simulated time at which the run ends
+	 * @param seed           master seed of this simulation's random streams
+	 * @param numThreads     number of worker threads
+	 * @param numRegions     number of regions, even and at most numCells / 2
+	 * @param window         width of the synchronisation window in simulated time
+	 **************************************************************************/
+	public ParallelSimulation(int numCells,       int guiCellWidth,
+		int numMacrophages, int numBacteria, int maxTime, long seed,
+		int numThreads, int numRegions, double window)
+	{
+		super(numCells, guiCellWidth, maxTime);
+		if(numRegions < 2 || numRegions % 2 != 0 || numRegions > numCells / 2)
+		{
+			throw new IllegalArgumentException("need an even number of regions between 2 and "
+				+ (numCells / 2) + ", got " + numRegions);
+		}
+		if(numThreads < 1 || !(window > 0))
+		{
+			throw new IllegalArgumentException("need at least one thread and a positive window");
+		}
+
+		time            = 0;
+		this.numThreads = numThreads;
+		this.window     = window;
+		store           = new AgentStore(numMacrophages + numBacteria + MIN_HEADROOM);
+		landscape       = new Grid(numCells, store);
+
+		RandomStreams streams = new RandomStreams(seed);
+		regions     = new Region[numRegions];
+		regionOfRow = new Region[numCells];
+		for (int r = 0; r < numRegions; r++)
+		{
+			int startRow = (int)((long)r * numCells / numRegions);
+			int endRow   = (int)((long)(r + 1) * numCells / numRegions);
+			regions[r] = new Region(r, streams.stream(RandomStreams.MAIN + 1 + r));
+			for (int row = startRow; row < endRow; row++)
+			{
+				regionOfRow[row] = regions[r];
+			}
+		}
+		for (Region region : regions)
+		{
+			region.above = regions[(region.index + numRegions - 1) % numRegions];
+			region.below = regions[(region.index + 1) % numRegions];
+		}
+
+		// same placement as Simulation, from the main stream
+		RandomGenerator rand = streams.stream(RandomStreams.MAIN);
+		int row = 0, col = 0;
+		for (int i = 0; i < numMacrophages; i++)
+		{
+			row = rand.nextInt(numCells);
+			col = rand.nextInt(numCells);
+			while (landscape.isOccupied(landscape.index(row, col)))
+			{
+				row = rand.nextInt(numCells);
+				col = rand.nextInt(numCells);
+			}
+			Macrophage m = new Macrophage(store,rand,row,col);
+			landscape.occupy(landscape.index(row, col), m);
+			regionOfRow[row].add(m);
+		}
+
+		for (int i = 0; i < numBacteria; i++)
+		{
+			row = rand.nextInt(numCells);
+			col = rand.nextInt(numCells);
+			while (landscape.isOccupied(landscape.index(row, col)))
+			{
+				row = rand.nextInt(numCells);
+				col = rand.nextInt(numCells);
+			}
+			Bacteria b = new Bacteria(store,rand,row,col);
+			landscape.occupy(landscape.index(row, col), b);
+			regionOfRow[row].add(b);
+		}
+	}
+
+	// two regions per thread, rounded to an even count the landscape can hold
+	private static int defaultRegions(int numCells, int numThreads)
+	{
+		int most = Math.max(2, (numCells / 2) & ~1);
+		return Math.min(most, 2 * Math.max(numThreads, 1));
+	}
+
+	public double getMaxTime()
+	{
+		return maxTime;
+	}
+
+	/**************************************************************************
+	 * Method used to run the simulation with the gui watching.  The gui is
+	 * handed a fresh snapshot between windows, when no region is running.
+	 *
+	 * @param guiDelay  delay in seconds between redraws of the gui
+	 **************************************************************************/
+	public void run(final double guiDelay) throws InterruptedException
+	{
+		if(getTimeSeries() == null)
+		{
+			recordTimeSeries(DEFAULT_SAMPLE_INTERVAL); // for the time series dialog
+		}
+		publishSnapshot();
+		try
+		{
+			SwingUtilities.invokeAndWait(new Runnable()
+			{
+				public void run()
+				{
+					gui = new AgentGUI(ParallelSimulation.this, numCells, guiCellWidth, guiDelay);
+				}
+			});
+		}
+		catch (java.lang.reflect.InvocationTargetException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+
+		startPool();
+		try
+		{
+			while(time < maxTime)
+			{
+				sampleThrough(time); // samples include up to one window too many
+				advanceWindow();
+				publishSnapshotIfRequested();
+			}
+			sampleThrough(maxTime);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		publishSnapshot(); // final state stays on screen
+	}
+
+	/**************************************************************************
+	 * Method used to run the simulation in batch mode, without constructing
+	 * an AgentGUI or any other Swing object.  Reports the final populations
+	 * and the event throughput on standard output, as Simulation does.
+	 **************************************************************************/
+	public void runHeadless()
+	{
+		long start = System.nanoTime();
+		try
+		{
+			runToEnd();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+
+		double secs = (System.nanoTime() - start) / 1e9;
+		System.out.println("Simulated time " + time + " (max " + maxTime + ")");
+		System.out.println("Macrophages: " + getNumMacrophages()
+			+ "    Bacteria: " + getNumBacteria());
+		System.out.println("Births: " + statistics.getBirths()
+			+ "    Eats: " + statistics.getEats() + "    Moves: " + statistics.getMoves());
+		System.out.printf("%d events in %.3f s (%.0f events/sec) on %d threads, %d regions%n",
+			numEvents, secs, numEvents / Math.max(secs, 1e-9), numThreads, regions.length);
+	}
+
+	/**************************************************************************
+	 * Method that runs the simulation to maxTime without a gui and without
+	 * printing anything, reporting the final statistics samples.
+	 * @throws InterruptedException if interrupted while regions are running
+	 **************************************************************************/
+	public void runToEnd() throws InterruptedException
+	{
+		startPool();
+		try
+		{
+			while(time < maxTime)
+			{
+				sampleThrough(time);
+				advanceWindow();
+			}
+			sampleThrough(maxTime);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private void startPool()
+	{
+		pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "region-worker");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**************************************************************************
+	 * Advances the clock by one window: the even regions, then the odd
+	 * regions, process their events before the window's end, and then the
+	 * even regions take in what the odd ones sent them, so that between
+	 * windows every agent is in its own region's lists.  A phase is run
+	 * again for any region that paused for want of slots, after the store
+	 * has grown, until every region has reached the window's end.
+	 **************************************************************************/
+	private void advanceWindow() throws InterruptedException
+	{
+		final double  end  = Math.min(time + window, maxTime);
+		final boolean last = (end >= maxTime); // the last window includes maxTime itself
+
+		int births = 0;
+		for (Region region : regions)
+		{
+			births += region.births;
+			region.births = 0;
+		}
+		store.ensureCapacity(store.size() + Math.max(MIN_HEADROOM, 2 * births));
+
+		for (int colour = 0; colour < 2; colour++)
+		{
+			List<Region> running = new ArrayList<Region>();
+			for (int r = colour; r < regions.length; r += 2)
+			{
+				running.add(regions[r]);
+			}
+			while(!running.isEmpty())
+			{
+				List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+				for (final Region region : running)
+				{
+					tasks.add(new Callable<Boolean>()
+					{
+						public Boolean call()
+						{
+							region.drainInboxes();
+							return region.process(end, last);
+						}
+					});
+				}
+				List<Boolean> done = invokeAll(tasks);
+				for (int i = done.size() - 1; i >= 0; i--)
+				{
+					if(done.get(i))
+					{
+						running.remove(i);
+					}
+				}
+				if(!running.isEmpty())
+				{
+					store.ensureCapacity(store.capacity() + Math.max(MIN_HEADROOM, store.size() / 2));
+				}
+			}
+		}
+
+		List<Callable<Void>> drains = new ArrayList<Callable<Void>>();
+		for (int r = 0; r < regions.length; r += 2)
+		{
+			final Region region = regions[r];
+			drains.add(new Callable<Void>()
+			{
+				public Void call()
+				{
+					region.drainInboxes();
+					return null;
+				}
+			});
+		}
+		invokeAll(drains);
+
+		numEvents = 0;
+		for (Region region : regions)
+		{
+			numEvents += region.numEvents;
+			statistics.add(region.born, region.eats, region.moves);
+			region.born  = 0;
+			region.eats  = 0;
+			region.moves = 0;
+		}
+		time = end;
+	}
+
+	// runs the tasks on the pool, waits for all of them and returns their
+	// results in order, rethrowing failures
+	private <T> List<T> invokeAll(List<Callable<T>> tasks) throws InterruptedException
+	{
+		List<T> results = new ArrayList<T>();
+		for (Future<T> f : pool.invokeAll(tasks))
+		{
+			try
+			{
+				results.add(f.get());
+			}
+			catch (ExecutionException e)
+			{
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	// takes a slot for a divide about to be processed, false if the store is full
+	private boolean reserveSlot()
+	{
+		synchronized(store)
+		{
+			if(store.size() + reserved >= store.capacity())
+			{
+				return false;
+			}
+			reserved++;
+			return true;
+		}
+	}
+
+	/**
+	 * One horizontal strip of the landscape with the agents standing in it.
+	 * All of a region's state is touched only by the thread running its
+	 * phase, apart from its inboxes, each of which is filled by one
+	 * neighbour while the region itself is inactive.
+	 */
+	private class Region
+	{
+		final int index;
+		final RandomGenerator rand;  // this region's own random stream
+		final EventHeap driver = new EventHeap();
+		final AgentRegistry<Macrophage> macrophageList = new AgentRegistry<Macrophage>(16);
+		final AgentRegistry<Bacteria> bacteriaList = new AgentRegistry<Bacteria>(16);
+		final Neighborhood neighborhood = new Neighborhood();
+		Region above, below;
+
+		// agents sent over by the region above / below: arrivals, and
+		// macrophages already here whose next event changed
+		final ArrayList<Agent> fromAbove = new ArrayList<Agent>();
+		final ArrayList<Agent> fromBelow = new ArrayList<Agent>();
+
+		long numEvents;
+		int births;                  // bacteria born since the last window
+		long eats;                   // statistics not yet passed on
+		long moves;
+		long born;
+
+		Region(int index, RandomGenerator rand)
+		{
+			this.index = index;
+			this.rand  = rand;
+		}
+
+		void add(Agent a)
+		{
+			if(a.getType() == Agent.AgentType.MACROPHAGE)
+			{
+				macrophageList.add((Macrophage)a);
+			}
+			else
+			{
+				bacteriaList.add((Bacteria)a);
+			}
+			schedule(a);
+		}
+
+		// queues the agent's next event, or moves it if it is queued already
+		void schedule(Agent a)
+		{
+			driver.update(a.nextEvent());
+		}
+
+		void drainInboxes()
+		{
+			drain(fromAbove);
+			drain(fromBelow);
+		}
+
+		private void drain(ArrayList<Agent> inbox)
+		{
+			for (int i = 0; i < inbox.size(); i++)
+			{
+				Agent a = inbox.get(i);
+				if(a.getRegistryIndex() < 0)
+				{
+					add(a); // an arrival
+				}
+				else
+				{
+					schedule(a); // its eat changed
+				}
+			}
+			inbox.clear();
+		}
+
+		/**********************************************************************
+		 * Processes, in time order, this region's events before end (or at
+		 * or before end, for the last window).  Pauses before a divide if
+		 * the store has no slot left for it; the phase is then run again
+		 * for this region once the store has grown.
+		 * @return true if every event before end has been processed, false
+		 *         if the region paused
+		 **********************************************************************/
+		boolean process(double end, boolean inclusive)
+		{
+			while(!driver.isEmpty())
+			{
+				Event e = driver.peek();
+				double t = e.getTime();
+				if(inclusive ? t > end : t >= end)
+				{
+					break;
+				}
+				if(e.getKind() == EventKind.DIVIDE && !reserveSlot())
+				{
+					return false;
+				}
+				processEvent(e, t); // moves the event on, or removes it
+				numEvents++;
+			}
+			return true;
+		}
+
+		// the same handlers as Simulation.processNextEvent, with agents that
+		// end up in another region's rows handed over to that region; the
+		// event stays at the head of the queue until its agent is rescheduled
+		private void processEvent(Event e, double time)
+		{
+			Agent a = e.getAgent();
+			if(a.getType() == Agent.AgentType.BACTERIUM)
+			{
+				Bacteria b = (Bacteria)a;
+				int cell = landscape.index(b.getRow(), b.getCol());
+
+				if(e.getKind() == EventKind.BACTERIUM_MOVE)
+				{
+					int newCell = b.calculateMove(landscape, neighborhood, rand);
+					landscape.removeBacteria(cell);
+					landscape.occupy(newCell, b);
+					b.scheduleNextMove(time, rand);
+					moves++;
+					relocate(b, newCell);
+
+					if(landscape.hasMacrophage(newCell))
+					{
+						scheduleEat(landscape.getMacrophage(newCell), newCell, time);
+					}
+				}
+				else // divide event
+				{
+					b.scheduleNextDivide(time, rand);
+					int newCell = b.calculateMove(landscape, neighborhood, rand);
+					schedule(b);
+
+					Bacteria newB = null;
+					synchronized(store)
+					{
+						reserved--;
+						if(newCell != cell)
+						{
+							newB = new Bacteria(store, rand, landscape.rowOf(newCell), landscape.colOf(newCell));
+						}
+					}
+
+					if(newB != null)
+					{
+						births++;
+						born++;
+						landscape.occupy(newCell, newB);
+						newB.scheduleNextMove(time, rand);
+						newB.scheduleNextDivide(time, rand);
+						Region owner = regionOfRow[landscape.rowOf(newCell)];
+						if(owner == this)
+						{
+							add(newB);
+						}
+						else
+						{
+							inboxOf(owner).add(newB);
+						}
+
+						if(landscape.hasMacrophage(newCell))
+						{
+							scheduleEat(landscape.getMacrophage(newCell), newCell, time);
+						}
+					}
+				}
+			}
+			else // Agent is a MACROPHAGE
+			{
+				Macrophage m = (Macrophage)a;
+				int cell = landscape.index(m.getRow(), m.getCol());
+
+				if(e.getKind() == EventKind.MACROPHAGE_MOVE)
+				{
+					int newCell = m.calculateMove(landscape, neighborhood, rand);
+					landscape.removeMacrophage(cell);
+					landscape.occupy(newCell, m);
+
+					// macrophage moved into cell where bacteria is
+					if(landscape.hasBacteria(newCell))
+					{
+						m.scheduleEat(time);
+					}
+
+					m.scheduleNextMove(time, rand);
+					moves++;
+					relocate(m, newCell); // the eat first, if there is one
+				}
+				else // eat event
+				{
+					if(landscape.hasBacteria(cell))
+					{
+						// the cell is in this region, so the bacterium is ours too
+						Bacteria b = landscape.getBacteria(cell);
+						landscape.removeBacteria(cell);
+						driver.remove(b.getEvent());
+						bacteriaList.remove(b);
+						synchronized(store)
+						{
+							b.release();
+						}
+						eats++;
+					}
+
+					m.scheduleEat(Double.MAX_VALUE); // not queued
+					schedule(m);                     // its next move
+				}
+			}
+		}
+
+		// queues the next event of an agent that now stands in the given
+		// cell, or hands it over if the cell belongs to a neighbour
+		private void relocate(Agent a, int cell)
+		{
+			Region owner = regionOfRow[landscape.rowOf(cell)];
+			if(owner == this)
+			{
+				schedule(a);
+				return;
+			}
+
+			driver.remove(a.getEvent()); // the neighbour queues it afresh
+			if(a.getType() == Agent.AgentType.MACROPHAGE)
+			{
+				macrophageList.remove((Macrophage)a);
+			}
+			else
+			{
+				bacteriaList.remove((Bacteria)a);
+			}
+			inboxOf(owner).add(a);
+		}
+
+		// a bacterium from this region has just entered the macrophage's cell
+		private void scheduleEat(Macrophage m, int cell, double time)
+		{
+			m.scheduleEat(time);
+			Region owner = regionOfRow[landscape.rowOf(cell)];
+			if(owner == this)
+			{
+				schedule(m);
+				return;
+			}
+
+			// Simulation would run this zero-delay eat next, and waiting for
+			// the neighbour's phase would let the bacterium slip away.  The
+			// neighbour is idle and the bacterium is the one just handed to
+			// it, so the eat is done here and now.
+			ArrayList<Agent> inbox = inboxOf(owner);
+			Bacteria b = landscape.getBacteria(cell);
+			landscape.removeBacteria(cell);
+			inbox.remove(inbox.lastIndexOf(b));
+			synchronized(store)
+			{
+				b.release();
+			}
+			m.scheduleEat(Double.MAX_VALUE);
+			inbox.add(m);
+			numEvents++;
+			eats++;
+		}
+
+		// the inbox of a neighbouring region that this region writes to
+		private ArrayList<Agent> inboxOf(Region neighbour)
+		{
+			return (neighbour == above) ? neighbour.fromBelow : neighbour.fromAbove;
+		}
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the number of macrophages still present.
+	 * Only meaningful between windows.
+	 * @return an integer representing the number of macrophages present
+	 **************************************************************************/
+	public int getNumMacrophages()
+	{
+		int n = 0;
+		for (Region region : regions) n += region.macrophageList.size();
+		return(n);
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the number of bacteria still present.
+	 * Only meaningful between windows.
+	 * @return an integer representing the number of bacteria present
+	 **************************************************************************/
+	public int getNumBacteria()
+	{
+		int n = 0;
+		for (Region region : regions) n += region.bacteriaList.size();
+		return(n);
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the current time of the simulation clock,
+	 * the end of the last completed window.
+	 * @return a double representing the current time in simulated time
+	 **************************************************************************/
+	public double getTime()        { return(time); }
+
+	/**************************************************************************
+	 * Accessor method that returns the number of events processed so far.
+	 * @return a long representing the number of events handled by the engine
+	 **************************************************************************/
+	public long getNumEvents()     { return(numEvents); }
+
+	/**************************************************************************
+	 * Method that constructs and returns a single list of all agents present,
+	 * for the gui.  Only meaningful between windows.
+	 *
+	 * @return an ArrayList<AgentInterface> containing references to all macrophages and bacteria
+	 **************************************************************************/
+	public ArrayList<AgentInterface> getListOfAgents()
+	{
+		ArrayList<AgentInterface> returnList = new ArrayList<AgentInterface>();
+		for (Region region : regions)
+			for (int i = 0; i < region.macrophageList.size(); i++) returnList.add( region.macrophageList.get(i) );
+		for (Region region : regions)
+			for (int i = 0; i < region.bacteriaList.size(); i++)   returnList.add( region.bacteriaList.get(i) );
+		return(returnList);
+	}
+}
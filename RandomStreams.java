@@ -0,0 +1,71 @@
+/**
+ * This class derives the random streams used by one simulation (or one
+ * family of replications) from a single master seed.
+ *
+ * Each stream is identified by a key -- the main event loop, a region of the
+ * landscape, a row strip, a replication number -- and its seed is computed
+ * from (master seed, key) alone with the SplitMix64 mixing function.  So a
+ * stream does not depend on how many other streams were created or in which
+ * order, which is what keeps parallel execution deterministic for a given
+ * master seed no matter how the work is scheduled across threads.
+ *
+ * Streams are StreamRandom generators (SplittableRandom's algorithm, with
+ * state that can be saved and restored): fast, unsynchronized (each stream
+ * must be used by one thread at a time), and usable wherever the engine
+ * expects a java.util.random.RandomGenerator.
+ */
+public class RandomStreams
+{
+	public static final long MAIN = 0;  // key of a simulation's main stream
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private final long masterSeed;
+
+	/**************************************************************************
+	 * Constructs the stream family for a master seed.
+	 * @param masterSeed  the seed every stream is derived from
+	 **************************************************************************/
+	public RandomStreams(long masterSeed)
+	{
+		this.masterSeed = masterSeed;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the master seed.
+	 * @return the master seed
+	 **************************************************************************/
+	public long getMasterSeed() { return(masterSeed); }
+
+	/**************************************************************************
+	 * Creates a new generator for the stream with the given key.  Calling this
+	 * twice with the same key gives two generators producing the same values.
+	 *
+	 * @param key  identifies the stream (e.g., MAIN, or a region number)
+	 * @return a new generator positioned at the start of that stream
+	 **************************************************************************/
+	public StreamRandom stream(long key)
+	{
+		return new StreamRandom(seedFor(key));
+	}
+
+	/**************************************************************************
+	 * Computes the seed of the stream with the given key, e.g. to hand to a
+	 * Simulation that builds its own streams.
+	 *
+	 * @param key  identifies the stream
+	 * @return the stream's seed
+	 **************************************************************************/
+	public long seedFor(long key)
+	{
+		return mix64(masterSeed + GOLDEN_GAMMA * (key + 1));
+	}
+
+	// the SplitMix64 finalizer (Steele, Lea and Flood, OOPSLA 2014)
+	private static long mix64(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
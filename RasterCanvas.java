@@ -0,0 +1,374 @@
+import javax.swing.*;      // for JPanel
+import java.util.*;        // for Arrays
+import java.awt.*;         // for Graphics, Graphics2D
+import java.awt.event.*;   // for the mouse listeners
+import java.awt.geom.*;    // for Rectangle2D
+import java.awt.image.*;   // for BufferedImage, DataBufferInt
+
+/**
+ * This class implements a canvas for landscapes too large to draw agent by
+ * agent with fillRect and drawString (see AgentCanvas).  Each frame is
+ * written straight into the int[] pixels of a BufferedImage the size of the
+ * window, so the cost of a frame depends only on the number of agents and
+ * the window size, never on the size of the landscape.
+ *
+ * The view can be zoomed with the mouse wheel, by powers of two, and panned
+ * by dragging; a double click fits the whole landscape in the window.
+ * Detail depends on the zoom:
+ *   - several cells per pixel: a density heatmap, each pixel blending from
+ *     the background towards red (bacteria) or green (macrophages) with the
+ *     fraction of its cells occupied;
+ *   - one or more pixels per cell: a solid block per agent, with grid lines
+ *     once cells are MIN_GRID_PIXELS wide and agent ids once they are
+ *     MIN_TEXT_PIXELS wide.
+ */
+class RasterCanvas extends JPanel
+    implements MouseListener, MouseMotionListener, MouseWheelListener
+{
+    public static final int MIN_GRID_PIXELS = 4;   // narrowest cell with grid lines
+    public static final int MIN_TEXT_PIXELS = 24;  // narrowest cell with agent ids
+
+    private static final int MIN_ZOOM = -12;       // 4096 cells per pixel
+    private static final int MAX_ZOOM = 6;         // 64 pixels per cell
+
+    private static final int BACKGROUND = 0xEEEEEE;
+    private static final int OUTSIDE    = 0x999999;  // beyond the landscape's edge
+    private static final int MACROPHAGE = 0x009600;  // dark green, as in AgentCanvas
+    private static final int BACTERIUM  = 0xFF0000;
+    private static final int GRID       = 0x000000;
+
+    private int gridSize;               // number of rows (same as columns)
+
+    private AgentSnapshot snapshot;     // immutable copy of agents being drawn
+
+    private int    zoom;                // pixels per cell are 2^zoom
+    private double viewX;               // landscape pixel (at the current zoom)
+    private double viewY;               // shown at the window's top left
+    private boolean fitPending = true;  // fit the landscape on the next paint
+
+    private BufferedImage frame;        // the window's pixels
+    private int[]         pixels;       // frame's raster, row by row
+    private int[]         macrophages;  // heatmap counts, one per pixel
+    private int[]         bacteria;
+
+    private int dragX;                  // last mouse position while dragging
+    private int dragY;
+
+    /**************************************************************************
+     * Constructor for the raster canvas.
+     *
+     * @param  gridSize  the number of rows (same as columns) in the landscape
+     **************************************************************************/
+    public RasterCanvas(int gridSize)
+    {
+        this.gridSize = gridSize;
+
+        addMouseListener(this);
+        addMouseMotionListener(this);
+        addMouseWheelListener(this);
+
+        setPreferredSize(new Dimension(600, 600));
+    }
+
+    /**************************************************************************
+     * Accessor method returning the number of rows (same as columns).
+     * @return  an integer representing the size of the landscape
+     **************************************************************************/
+    public int getGridSize() { return gridSize; }
+
+    /**************************************************************************
+     * Method to hand the canvas a new snapshot of the agents to draw, and
+     * repaint.  Must be called on the event dispatch thread.
+     *
+     * @param  snapshot  the AgentSnapshot to draw from now on
+     **************************************************************************/
+    public void setSnapshot(AgentSnapshot snapshot)
+    {
+        this.snapshot = snapshot;
+        repaint();
+    }
+
+    /**************************************************************************
+     * Method to zoom so the whole landscape fits in the window, centred.
+     **************************************************************************/
+    public void fitLandscape()
+    {
+        fit();
+        repaint();
+    }
+
+    private void fit()
+    {
+        int size = Math.max(1, Math.min(getWidth(), getHeight()));
+        zoom = MIN_ZOOM;
+        while (zoom < MAX_ZOOM && gridSize * Math.scalb(1.0, zoom + 1) <= size)
+            zoom++;
+
+        double landscapeSize = gridSize * scale();
+        viewX = (landscapeSize - getWidth())  / 2;
+        viewY = (landscapeSize - getHeight()) / 2;
+    }
+
+    // pixels per cell at the current zoom
+    private double scale() { return Math.scalb(1.0, zoom); }
+
+    /**************************************************************************
+     * Method drawing the latest snapshot at the current zoom and position.
+     *
+     * @param   g  a Graphics component corresponding to this JPanel
+     **************************************************************************/
+    public void paintComponent(Graphics g)
+    {
+        int width  = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        if (fitPending)
+        {
+            fitPending = false;
+            fit();
+        }
+
+        if (frame == null || frame.getWidth() != width || frame.getHeight() != height)
+        {
+            frame  = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+            macrophages = null;
+            bacteria    = null;
+        }
+
+        // the landscape's edges, in window pixels
+        long originX = (long)Math.floor(viewX);
+        long originY = (long)Math.floor(viewY);
+        long size    = (long)Math.ceil(gridSize * scale());
+        int left   = (int)clamp(-originX, 0, width);
+        int top    = (int)clamp(-originY, 0, height);
+        int right  = (int)clamp(size - originX, 0, width);
+        int bottom = (int)clamp(size - originY, 0, height);
+
+        Arrays.fill(pixels, OUTSIDE);
+        for (int y = top; y < bottom; y++)
+            Arrays.fill(pixels, y * width + left, y * width + right, BACKGROUND);
+
+        if (snapshot != null)
+        {
+            if (zoom < 0)
+                drawHeatmap(originX, originY, width, height);
+            else
+                drawBlocks(originX, originY, width, height, left, top, right, bottom);
+        }
+
+        Graphics2D graphics = (Graphics2D) g.create();
+        graphics.drawImage(frame, 0, 0, null);
+        if (snapshot != null && zoom >= 0 && (1 << zoom) >= MIN_TEXT_PIXELS)
+            drawIDs(graphics, originX, originY, width, height);
+        drawAgentInfo(graphics, width, height);
+        graphics.dispose();
+    }
+
+    /**************************************************************************
+     * Method writing one pixel per 2^-zoom by 2^-zoom cells, shaded by how
+     * many of those cells hold macrophages and bacteria.
+     **************************************************************************/
+    private void drawHeatmap(long originX, long originY, int width, int height)
+    {
+        if (macrophages == null)
+        {
+            macrophages = new int[width * height];
+            bacteria    = new int[width * height];
+        }
+        Arrays.fill(macrophages, 0);
+        Arrays.fill(bacteria, 0);
+
+        int shift = -zoom;
+        for (int i = 0; i < snapshot.size(); i++)
+        {
+            long x = (snapshot.getCol(i) >> shift) - originX;
+            long y = (snapshot.getRow(i) >> shift) - originY;
+            if (x < 0 || y < 0 || x >= width || y >= height)
+                continue;
+
+            int p = (int)y * width + (int)x;
+            if (snapshot.getType(i) == AgentInterface.AgentType.MACROPHAGE)
+                macrophages[p]++;
+            else
+                bacteria[p]++;
+        }
+
+        int cellsPerPixel = 1 << (2 * shift);
+        for (int p = 0; p < pixels.length; p++)
+        {
+            int m = macrophages[p];
+            int b = bacteria[p];
+            if (m + b == 0)
+                continue;
+
+            // hue from the mix of agents, strength from their density
+            int colour   = blend(BACTERIUM, MACROPHAGE, (double)m / (m + b));
+            double share = Math.min(1.0, (double)(m + b) / cellsPerPixel);
+            pixels[p]    = blend(BACKGROUND, colour, Math.sqrt(share));
+        }
+    }
+
+    /**************************************************************************
+     * Method writing a block of 2^zoom by 2^zoom pixels per agent, bacteria
+     * inset within their cells as in AgentCanvas, then the grid lines if
+     * cells are wide enough.
+     **************************************************************************/
+    private void drawBlocks(long originX, long originY, int width, int height,
+                            int left, int top, int right, int bottom)
+    {
+        int cell = 1 << zoom;
+
+        // macrophages first, so bacteria sharing their cells stay visible
+        for (int pass = 0; pass < 2; pass++)
+        {
+            boolean macrophagePass = (pass == 0);
+            int colour = macrophagePass ? MACROPHAGE : BACTERIUM;
+            int inset  = (macrophagePass || cell < 5) ? 0 : (int)(cell * 0.2);
+
+            for (int i = 0; i < snapshot.size(); i++)
+            {
+                long x0 = ((long)snapshot.getCol(i) << zoom) - originX + inset;
+                long y0 = ((long)snapshot.getRow(i) << zoom) - originY + inset;
+                if (x0 >= width || y0 >= height || x0 + cell <= 0 || y0 + cell <= 0)
+                    continue;
+                if ((snapshot.getType(i) == AgentInterface.AgentType.MACROPHAGE) != macrophagePass)
+                    continue;
+
+                int x1 = (int)clamp(x0 + cell - 2 * inset, 0, width);
+                int y1 = (int)clamp(y0 + cell - 2 * inset, 0, height);
+                int xs = (int)clamp(x0, 0, width);
+                for (int y = (int)clamp(y0, 0, height); y < y1; y++)
+                    Arrays.fill(pixels, y * width + xs, y * width + x1, colour);
+            }
+        }
+
+        if (cell < MIN_GRID_PIXELS)
+            return;
+
+        // vertical lines at each cell's left edge, horizontal at its top,
+        // and the landscape's right and bottom edges
+        long firstX = Math.floorMod(-originX, (long)cell);
+        long firstY = Math.floorMod(-originY, (long)cell);
+        for (long x = firstX; x < width; x += cell)
+            if (x >= left && x <= right)
+                for (int y = top; y < bottom; y++)
+                    pixels[y * width + (int)x] = GRID;
+        for (long y = firstY; y < height; y += cell)
+            if (y >= top && y <= bottom)
+                Arrays.fill(pixels, (int)y * width + left, (int)y * width + right, GRID);
+        if (right < width && right > left)
+            for (int y = top; y < bottom; y++)
+                pixels[y * width + right] = GRID;
+        if (bottom < height && bottom > top)
+            Arrays.fill(pixels, bottom * width + left, bottom * width + Math.min(right + 1, width), GRID);
+    }
+
+    /**************************************************************************
+     * Method drawing the ids of the agents in view, each clipped to its cell.
+     **************************************************************************/
+    private void drawIDs(Graphics2D graphics, long originX, long originY,
+                         int width, int height)
+    {
+        int cell = 1 << zoom;
+        FontMetrics font = graphics.getFontMetrics();
+        graphics.setPaint(Color.white);
+
+        for (int i = 0; i < snapshot.size(); i++)
+        {
+            long x = ((long)snapshot.getCol(i) << zoom) - originX;
+            long y = ((long)snapshot.getRow(i) << zoom) - originY;
+            if (x + cell <= 0 || y + cell <= 0 || x >= width || y >= height)
+                continue;
+
+            String agentID   = "" + snapshot.getID(i);
+            Rectangle2D rect = font.getStringBounds(agentID, graphics);
+            int textWidth    = (int)(rect.getWidth());
+            int textHeight   = (int)(rect.getHeight());
+
+            graphics.setClip((int)x, (int)y, cell, cell);
+            graphics.drawString(agentID, (int)x + (cell - textWidth) / 2,
+                                (int)y + (cell - textHeight) / 2 + textHeight - 1);
+        }
+        graphics.setClip(null);
+    }
+
+    /**************************************************************************
+     * Method drawing the agent counts and the zoom in the bottom left corner.
+     **************************************************************************/
+    private void drawAgentInfo(Graphics2D graphics, int width, int height)
+    {
+        int numMacrophages = (snapshot == null) ? 0 : snapshot.getNumMacrophages();
+        int numBacteria    = (snapshot == null) ? 0 : snapshot.getNumBacteria();
+        String scaleInfo   = (zoom >= 0) ? (1 << zoom) + " pixels per cell"
+                                         : (1 << -zoom) + " cells per pixel";
+        String agentInfo   = "Macrophages: " + numMacrophages
+            + "    " + "Bacteria: " + numBacteria + "    " + scaleInfo;
+
+        FontMetrics font = graphics.getFontMetrics();
+        Rectangle2D rect = font.getStringBounds(agentInfo, graphics);
+
+        graphics.setPaint(Color.white);
+        graphics.fillRect(0, height - (int)rect.getHeight() - 6,
+                          (int)rect.getWidth() + 10, (int)rect.getHeight() + 6);
+        graphics.setPaint(Color.black);
+        graphics.drawString(agentInfo, 5, height - 5 - font.getDescent());
+    }
+
+    // mixes two RGB colours, fraction f of the way from a to b
+    private static int blend(int a, int b, double f)
+    {
+        int r  = (int)(((a >> 16) & 0xFF) * (1 - f) + ((b >> 16) & 0xFF) * f);
+        int gr = (int)(((a >> 8)  & 0xFF) * (1 - f) + ((b >> 8)  & 0xFF) * f);
+        int bl = (int)((a & 0xFF)         * (1 - f) + (b & 0xFF)         * f);
+        return (r << 16) | (gr << 8) | bl;
+    }
+
+    private static long clamp(long value, long low, long high)
+    {
+        return Math.max(low, Math.min(high, value));
+    }
+
+    //************************************************************
+    //* The following methods implement the mouse listeners:
+    //* wheel to zoom, drag to pan, double click to fit.
+    //************************************************************
+    public void mouseWheelMoved(MouseWheelEvent e)
+    {
+        int newZoom = (int)clamp(zoom - e.getWheelRotation(), MIN_ZOOM, MAX_ZOOM);
+        if (newZoom == zoom)
+            return;
+
+        // keep the point under the mouse where it is
+        double factor = Math.scalb(1.0, newZoom - zoom);
+        viewX = (viewX + e.getX()) * factor - e.getX();
+        viewY = (viewY + e.getY()) * factor - e.getY();
+        zoom  = newZoom;
+        repaint();
+    }
+
+    public void mousePressed(MouseEvent e)
+    {
+        dragX = e.getX();
+        dragY = e.getY();
+    }
+
+    public void mouseDragged(MouseEvent e)
+    {
+        viewX -= e.getX() - dragX;
+        viewY -= e.getY() - dragY;
+        dragX  = e.getX();
+        dragY  = e.getY();
+        repaint();
+    }
+
+    public void mouseClicked(MouseEvent e)
+    {
+        if (e.getClickCount() == 2)
+            fitLandscape();
+    }
+
+    public void mouseReleased(MouseEvent e) {}
+    public void mouseEntered(MouseEvent e)  {}
+    public void mouseExited(MouseEvent e)   {}
+    public void mouseMoved(MouseEvent e)    {}
+}
@@ -0,0 +1,80 @@
+import javax.swing.*;  // for all the JWhatevers
+import java.awt.*;     // for BorderLayout
+import java.awt.event.*; // for ActionListener
+
+/**
+ * This class implements the small window steering a ReplaySimulation: a
+ * play/pause button, and a slider over the whole recording that follows the
+ * replay while it plays and seeks when dragged.
+ */
+class ReplayControls extends WindowManager
+{
+    private static final int TICKS_PER_UNIT = 100; // slider steps per unit of simulated time
+
+    private ReplaySimulation replay;
+    private JButton           playButton;
+    private JSlider           slider;
+    private JLabel            timeLabel;
+    private boolean           following;  // true while the timer moves the slider
+
+    /**************************************************************************
+     * Constructor for the replay controls.  Must be called on the event
+     * dispatch thread.
+     *
+     * @param  theReplay   the replay to steer
+     * @param  frameDelay  delay in seconds between updates of the slider
+     **************************************************************************/
+    public ReplayControls(ReplaySimulation theReplay, double frameDelay)
+    {
+        super("Replay", 600, 80);
+        this.setLayout(new BorderLayout());
+        this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        this.replay = theReplay;
+
+        this.playButton = new JButton("Play");
+        this.playButton.addActionListener(this);
+        this.add(this.playButton, BorderLayout.WEST);
+
+        this.slider = new JSlider(0, (int)Math.ceil(theReplay.getMaxTime() * TICKS_PER_UNIT), 0);
+        this.slider.addChangeListener(this);
+        this.add(this.slider, BorderLayout.CENTER);
+
+        this.timeLabel = new JLabel(String.format(" %8.2f ", 0.0));
+        this.add(this.timeLabel, BorderLayout.EAST);
+
+        int msecs = (int)Math.max(1, Math.round(frameDelay * 1000));
+        new javax.swing.Timer(msecs, new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e) { follow(); }
+        }).start();
+    }
+
+    // moves the slider along with the replay, unless the user is dragging it
+    private void follow()
+    {
+        if (!replay.isPlaying() && playButton.getText().equals("Pause"))
+            playButton.setText("Play"); // reached the end
+
+        double t = replay.getTime();
+        timeLabel.setText(String.format(" %8.2f ", t));
+        if (!slider.getValueIsAdjusting())
+        {
+            following = true;
+            slider.setValue((int)Math.round(t * TICKS_PER_UNIT));
+            following = false;
+        }
+    }
+
+    public void buttonClicked(JButton whichButton)
+    {
+        boolean play = !replay.isPlaying();
+        replay.setPlaying(play);
+        playButton.setText(play ? "Pause" : "Play");
+    }
+
+    public void sliderChanged(JSlider whichSlider)
+    {
+        if (!following)
+            replay.requestSeek((double)whichSlider.getValue() / TICKS_PER_UNIT);
+    }
+}
@@ -0,0 +1,436 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import javax.swing.SwingUtilities;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * This class plays back an event log recorded with EventLogWriter in the
+ * usual AgentGUI, without re-simulating.  It is a SimulationManager whose
+ * "engine" rebuilds the landscape from the log's records, so the canvas and
+ * the time series dialog work on it unchanged.
+ *
+ * The log is memory-mapped, not read onto the heap.  On opening, the log is
+ * scanned once and a keyframe -- the list of agents present, with their
+ * cells -- is saved to a temporary index file at regular intervals (at least
+ * every 2^20 records, and further apart the more agents there are, so that
+ * the index stays a fraction of the log's size).  The index is mapped too.
+ * Seeking to a time loads the last keyframe before it and applies at most
+ * one interval of records, so any point of a long run is reached quickly.
+ */
+public class ReplaySimulation extends SimulationManager
+{
+	private static final int MIN_KEYFRAME_RECORDS = 1 << 20;
+
+	private static final byte NONE       = 0;  // kindOf values
+	private static final byte MACROPHAGE = 1;
+	private static final byte BACTERIUM  = 2;
+	private static final byte SHOWN      = 4;  // keyframe flag: the landscape shows the agent
+
+	private final EventLogReader log;
+	private final EventLogReader.Record record = new EventLogReader.Record();
+
+	// the reconstructed state at the current time
+	private final int[] macrophageAt;  // id of the macrophage shown in each cell, 0 if none
+	private final int[] bacteriaAt;    // id of the bacterium shown in each cell, 0 if none
+	private int[]  cellOf = new int[1024];   // cell of each agent, by id
+	private byte[] kindOf = new byte[1024];  // NONE, MACROPHAGE or BACTERIUM, by id
+	private int    maxID;
+	private int    numMacrophages;
+	private int    numBacteria;
+	private long   position;           // log position of the next record to apply
+
+	// the keyframe index: where each keyframe starts in the log and in the
+	// index file, and the time of the last record it includes
+	private MappedFile keyframes;
+	private int      numKeyframes;
+	private double[] keyTimes   = new double[64];
+	private long[]   keyLogPos  = new long[64];
+	private long[]   keyDataPos = new long[64];
+	private int[]    keySizes   = new int[64];
+
+	// requests from the replay controls, picked up by the thread running run()
+	private volatile double  seekRequest = Double.NaN;
+	private volatile boolean playing;
+	private volatile double  speed = 1; // simulated time per second while playing
+
+	/**************************************************************************
+	 * Opens an event log for replay and builds its keyframe index, leaving
+	 * the replay at the state of the log's first instant.
+	 *
+	 * @param logFile       the event log
+	 * @param guiCellWidth  width of each cell drawn in the gui
+	 * @throws IOException if the log cannot be read or the index written
+	 **************************************************************************/
+	public ReplaySimulation(Path logFile, int guiCellWidth) throws IOException
+	{
+		this(new EventLogReader(logFile), guiCellWidth);
+	}
+
+	private ReplaySimulation(EventLogReader log, int guiCellWidth) throws IOException
+	{
+		super(log.getNumCells(), guiCellWidth, 0);
+		this.log     = log;
+		macrophageAt = new int[numCells * numCells];
+		bacteriaAt   = new int[numCells * numCells];
+		buildIndex();
+		seek(0);
+	}
+
+	// scans the whole log once, saving a keyframe every so many records
+	private void buildIndex() throws IOException
+	{
+		Path indexFile = Files.createTempFile("replay", ".idx");
+		indexFile.toFile().deleteOnExit();
+
+		try (Checkpoint.Output out = new Checkpoint.Output(
+			FileChannel.open(indexFile, TRUNCATE_EXISTING, WRITE)))
+		{
+			long dataPos   = 0;
+			double last    = Double.NEGATIVE_INFINITY;
+			long sinceLast = 0;
+
+			position = log.firstRecord();
+			dataPos += writeKeyframe(out, last, dataPos);
+			while(position < log.end())
+			{
+				long next;
+				try
+				{
+					next = log.read(position, record);
+				}
+				catch (IndexOutOfBoundsException e)
+				{
+					break; // a record cut short, e.g. by a crash while logging
+				}
+				apply(record);
+				position = next;
+				last     = record.time;
+
+				if(++sinceLast >= Math.max(MIN_KEYFRAME_RECORDS, 2L * (numMacrophages + numBacteria)))
+				{
+					dataPos  += writeKeyframe(out, last, dataPos);
+					sinceLast = 0;
+				}
+			}
+			maxTime = Math.max(last, 0);
+		}
+		keyframes = new MappedFile(indexFile);
+	}
+
+	// appends the current state as a keyframe; returns the bytes written
+	private long writeKeyframe(Checkpoint.Output out, double lastTime, long dataPos) throws IOException
+	{
+		if(numKeyframes == keyTimes.length)
+		{
+			int n = numKeyframes * 2;
+			keyTimes   = Arrays.copyOf(keyTimes, n);
+			keyLogPos  = Arrays.copyOf(keyLogPos, n);
+			keyDataPos = Arrays.copyOf(keyDataPos, n);
+			keySizes   = Arrays.copyOf(keySizes, n);
+		}
+
+		int size = 0;
+		for (int id = 1; id <= maxID; id++)
+		{
+			if(kindOf[id] == NONE)
+			{
+				continue;
+			}
+			int cell = cellOf[id];
+			int[] layer = (kindOf[id] == MACROPHAGE) ? macrophageAt : bacteriaAt;
+			out.putInt(id);
+			out.putInt(cell);
+			out.putByte((byte)(kindOf[id] | (layer[cell] == id ? SHOWN : 0)));
+			size++;
+		}
+
+		keyTimes[numKeyframes]   = lastTime;
+		keyLogPos[numKeyframes]  = position;
+		keyDataPos[numKeyframes] = dataPos;
+		keySizes[numKeyframes]   = size;
+		numKeyframes++;
+		return 9L * size;
+	}
+
+	/**************************************************************************
+	 * Sets the replay to the state at the given time: every record up to and
+	 * including that time applied.  Must be called from the thread driving
+	 * the replay (the one in run(), once that has started).
+	 *
+	 * @param t  the simulated time to go to
+	 **************************************************************************/
+	public void seek(double t)
+	{
+		// the last keyframe including nothing after t
+		int lo = 0, hi = numKeyframes - 1;
+		while(lo < hi)
+		{
+			int mid = (lo + hi + 1) >>> 1;
+			if(keyTimes[mid] <= t) lo = mid;
+			else                   hi = mid - 1;
+		}
+		loadKeyframe(lo);
+		advanceTo(t);
+	}
+
+	/**************************************************************************
+	 * Moves the replay on to the given time, applying the records in
+	 * between; going backwards seeks instead.
+	 *
+	 * @param t  the simulated time to go to
+	 **************************************************************************/
+	public void advanceTo(double t)
+	{
+		if(t < time)
+		{
+			seek(t);
+			return;
+		}
+		while(position < log.end())
+		{
+			long next;
+			try
+			{
+				next = log.read(position, record);
+			}
+			catch (IndexOutOfBoundsException e)
+			{
+				break;
+			}
+			if(record.time > t)
+			{
+				break;
+			}
+			apply(record);
+			position = next;
+		}
+		time = t;
+	}
+
+	private void loadKeyframe(int k)
+	{
+		Arrays.fill(macrophageAt, 0);
+		Arrays.fill(bacteriaAt, 0);
+		Arrays.fill(kindOf, 0, maxID + 1, NONE);
+		maxID          = 0;
+		numMacrophages = 0;
+		numBacteria    = 0;
+
+		long pos = keyDataPos[k];
+		for (int i = 0; i < keySizes[k]; i++, pos += 9)
+		{
+			int  id    = keyframes.getInt(pos);
+			int  cell  = keyframes.getInt(pos + 4);
+			byte flags = keyframes.getByte(pos + 8);
+			byte kind  = (byte)(flags & ~SHOWN);
+			add(id, kind, cell, (flags & SHOWN) != 0);
+		}
+		position = keyLogPos[k];
+		time     = keyTimes[k];
+	}
+
+	// the engine's landscape operations for each kind of record (see EventKind)
+	private void apply(EventLogReader.Record r)
+	{
+		switch(r.kind)
+		{
+			case MACROPHAGE_ADDED:
+				add(r.agentID, MACROPHAGE, r.toCell, r.fromCell >= 0);
+				break;
+			case BACTERIUM_ADDED:
+				add(r.agentID, BACTERIUM, r.toCell, r.fromCell >= 0);
+				break;
+			case MACROPHAGE_MOVE:
+				macrophageAt[r.fromCell] = 0;
+				macrophageAt[r.toCell]   = r.agentID;
+				cellOf[r.agentID]        = r.toCell;
+				break;
+			case BACTERIUM_MOVE:
+				bacteriaAt[r.fromCell] = 0;
+				bacteriaAt[r.toCell]   = r.agentID;
+				cellOf[r.agentID]      = r.toCell;
+				break;
+			case DIVIDE:
+				if(r.fromCell != r.toCell)
+				{
+					add(r.agentID, BACTERIUM, r.toCell, true);
+				}
+				break;
+			case EAT:
+				int eaten = bacteriaAt[r.fromCell];
+				if(eaten != 0)
+				{
+					bacteriaAt[r.fromCell] = 0;
+					kindOf[eaten] = NONE;
+					numBacteria--;
+				}
+				break;
+		}
+	}
+
+	private void add(int id, byte kind, int cell, boolean shown)
+	{
+		if(id >= kindOf.length)
+		{
+			int n = Math.max(id + 1, kindOf.length * 2);
+			kindOf = Arrays.copyOf(kindOf, n);
+			cellOf = Arrays.copyOf(cellOf, n);
+		}
+		kindOf[id] = kind;
+		cellOf[id] = cell;
+		maxID = Math.max(maxID, id);
+		if(kind == MACROPHAGE)
+		{
+			if(shown) macrophageAt[cell] = id;
+			numMacrophages++;
+		}
+		else
+		{
+			if(shown) bacteriaAt[cell] = id;
+			numBacteria++;
+		}
+	}
+
+	/**************************************************************************
+	 * Methods, safe to call from any thread (the replay controls call them
+	 * on the event dispatch thread), that steer the replay running in run().
+	 **************************************************************************/
+	public void requestSeek(double t)        { seekRequest = t; }
+	public void setPlaying(boolean playing)  { this.playing = playing; }
+	public boolean isPlaying()               { return(playing); }
+	public void setSpeed(double speed)       { this.speed = speed; }
+
+	/**************************************************************************
+	 * Method used to show the replay.  Opens the AgentGUI and the replay
+	 * controls, then keeps the reconstructed state in step with them: paused,
+	 * playing forwards at the set speed, or jumping to wherever the slider
+	 * was dragged.  Returns only when the thread is interrupted; closing the
+	 * controls window ends the program.
+	 *
+	 * @param guiDelay  delay in seconds between redraws of the gui
+	 **************************************************************************/
+	public void run(final double guiDelay) throws InterruptedException
+	{
+		publishSnapshot();
+		try
+		{
+			SwingUtilities.invokeAndWait(new Runnable()
+			{
+				public void run()
+				{
+					gui = new AgentGUI(ReplaySimulation.this, numCells, guiCellWidth, guiDelay);
+					new ReplayControls(ReplaySimulation.this, guiDelay);
+				}
+			});
+		}
+		catch (java.lang.reflect.InvocationTargetException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+
+		long msecs = Math.max(1, Math.round(guiDelay * 1000));
+		while(true)
+		{
+			double target = seekRequest;
+			if(!Double.isNaN(target))
+			{
+				seekRequest = Double.NaN;
+				seek(target);
+			}
+			else if(playing)
+			{
+				advanceTo(Math.min(time + speed * guiDelay, maxTime));
+				if(time >= maxTime)
+				{
+					playing = false;
+				}
+			}
+			publishSnapshotIfRequested();
+			Thread.sleep(msecs);
+		}
+	}
+
+	/**************************************************************************
+	 * Accessor methods for the replayed state at the current time.
+	 **************************************************************************/
+	public int getNumMacrophages() { return(numMacrophages); }
+	public int getNumBacteria()    { return(numBacteria); }
+	public double getTime()        { return(time); }
+
+	/**************************************************************************
+	 * Accessor method that returns the time of the log's last record.
+	 * @return a double representing the end of the recording
+	 **************************************************************************/
+	public double getMaxTime()     { return(maxTime); }
+
+	/**************************************************************************
+	 * Method that constructs and returns a single list of all agents present
+	 * at the current time, for the gui.
+	 *
+	 * @return an ArrayList<AgentInterface> containing all macrophages and bacteria
+	 **************************************************************************/
+	public ArrayList<AgentInterface> getListOfAgents()
+	{
+		ArrayList<AgentInterface> returnList = new ArrayList<AgentInterface>();
+		for (int id = 1; id <= maxID; id++)
+		{
+			if(kindOf[id] != NONE)
+			{
+				returnList.add(new ReplayedAgent(id, cellOf[id] / numCells, cellOf[id] % numCells,
+					kindOf[id] == MACROPHAGE ? AgentInterface.AgentType.MACROPHAGE
+					                         : AgentInterface.AgentType.BACTERIUM));
+			}
+		}
+		return(returnList);
+	}
+
+	/**
+	 * A read-only view of one replayed agent, for the gui.
+	 */
+	private static class ReplayedAgent implements AgentInterface
+	{
+		private final int id, row, col;
+		private final AgentType type;
+
+		ReplayedAgent(int id, int row, int col, AgentType type)
+		{
+			this.id   = id;
+			this.row  = row;
+			this.col  = col;
+			this.type = type;
+		}
+
+		public int getID()         { return(id); }
+		public int getRow()        { return(row); }
+		public int getCol()        { return(col); }
+		public AgentType getType() { return(type); }
+
+		public void setRowCol(int row, int col)
+		{
+			throw new UnsupportedOperationException("replayed agents cannot be moved");
+		}
+	}
+
+	/**************************************************************************
+	 * Replays an event log: java ReplaySimulation log [cellWidth [speed]]
+	 * where speed is in units of simulated time per second.
+	 **************************************************************************/
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		if(args.length < 1)
+		{
+			System.err.println("usage: java ReplaySimulation log [cellWidth [speed]]");
+			System.exit(1);
+		}
+		int cellWidth = (args.length > 1) ? Integer.parseInt(args[1]) : 15;
+		ReplaySimulation replay = new ReplaySimulation(Paths.get(args[0]), cellWidth);
+		if(args.length > 2)
+		{
+			replay.setSpeed(Double.parseDouble(args[2]));
+		}
+		replay.run(AgentGUI.DEFAULT_FRAME_DELAY);
+	}
+}
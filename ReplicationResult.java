@@ -0,0 +1,58 @@
+/**
+ * This class holds the outcome of one replication run by ReplicationRunner:
+ * the seed it was run with, final populations, when (if ever) the bacteria
+ * died out, and the population time series sampled at fixed intervals of
+ * simulated time.
+ */
+public class ReplicationResult
+{
+	private final long   seed;
+	private final int    finalMacrophages;
+	private final int    finalBacteria;
+	private final double extinctionTime;     // NaN if the bacteria survived
+	private final long   numEvents;
+	private final double sampleInterval;
+	private final int[]  macrophageSeries;   // counts at times 0, interval, 2*interval, ...
+	private final int[]  bacteriaSeries;
+
+	public ReplicationResult(long seed, int finalMacrophages, int finalBacteria,
+		double extinctionTime, long numEvents, double sampleInterval,
+		int[] macrophageSeries, int[] bacteriaSeries)
+	{
+		this.seed             = seed;
+		this.finalMacrophages = finalMacrophages;
+		this.finalBacteria    = finalBacteria;
+		this.extinctionTime   = extinctionTime;
+		this.numEvents        = numEvents;
+		this.sampleInterval   = sampleInterval;
+		this.macrophageSeries = macrophageSeries;
+		this.bacteriaSeries   = bacteriaSeries;
+	}
+
+	public long getSeed()               { return(seed); }
+	public int getFinalMacrophages()    { return(finalMacrophages); }
+	public int getFinalBacteria()       { return(finalBacteria); }
+	public long getNumEvents()          { return(numEvents); }
+	public double getSampleInterval()   { return(sampleInterval); }
+
+	/**************************************************************************
+	 * Tells whether the bacteria died out before the end of the run.
+	 * @return true if the bacteria population reached zero
+	 **************************************************************************/
+	public boolean wentExtinct()        { return(!Double.isNaN(extinctionTime)); }
+
+	/**************************************************************************
+	 * Accessor method that returns the simulated time of the event that
+	 * removed the last bacterium.
+	 * @return the extinction time, or NaN if the bacteria survived
+	 **************************************************************************/
+	public double getExtinctionTime()   { return(extinctionTime); }
+
+	/**************************************************************************
+	 * Accessor methods returning the number of samples and the populations
+	 * at sample i, i.e., at simulated time i * getSampleInterval().
+	 **************************************************************************/
+	public int getNumSamples()          { return(bacteriaSeries.length); }
+	public int getMacrophages(int i)    { return(macrophageSeries[i]); }
+	public int getBacteria(int i)       { return(bacteriaSeries[i]); }
+}
@@ -0,0 +1,238 @@
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class runs many independent headless replications of the same
+ * macrophage/bacteria configuration, each with its own seed, concurrently on
+ * a fixed pool of threads, and summarizes the distribution of outcomes.
+ *
+ * Replication i runs with the seed of stream i of the master seed's
+ * RandomStreams, so the results for a given master seed do not depend on the
+ * number of threads or on the order in which replications run or finish.
+ *
+ * Usage: java ReplicationRunner [replications [threads [masterSeed]]]
+ */
+public class ReplicationRunner
+{
+	private final int    numCells;
+	private final int    numMacrophages;
+	private final int    numBacteria;
+	private final int    maxTime;
+	private final double sampleInterval;
+
+	/**************************************************************************
+	 * Constructs a runner for the given configuration.
+	 *
+	 * @param numCells        number of rows and columns in the environment
+	 * @param numMacrophages  number of initial macrophages
+	 * @param numBacteria     number of initial bacteria
+	 * @param maxTime         simulated time at which each run ends
+	 * @param sampleInterval  simulated time between time series samples
+	 **************************************************************************/
+	public ReplicationRunner(int numCells, int numMacrophages, int numBacteria,
+		int maxTime, double sampleInterval)
+	{
+		this.numCells       = numCells;
+		this.numMacrophages = numMacrophages;
+		this.numBacteria    = numBacteria;
+		this.maxTime        = maxTime;
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**************************************************************************
+	 * Runs the replications on a fixed pool of threads and waits for all of
+	 * them to finish.
+	 *
+	 * @param numReplications  number of independent runs
+	 * @param masterSeed       seed from which each run's seed is derived
+	 * @param numThreads       size of the thread pool
+	 * @return the results, in replication order
+	 **************************************************************************/
+	public List<ReplicationResult> runAll(int numReplications, long masterSeed,
+		int numThreads) throws InterruptedException, ExecutionException
+	{
+		RandomStreams seeds = new RandomStreams(masterSeed);
+		List<Callable<ReplicationResult>> tasks = new ArrayList<Callable<ReplicationResult>>();
+		for (int i = 0; i < numReplications; i++)
+		{
+			final long seed = seeds.seedFor(i);
+			tasks.add(new Callable<ReplicationResult>()
+			{
+				public ReplicationResult call() { return runReplication(seed); }
+			});
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try
+		{
+			List<ReplicationResult> results = new ArrayList<ReplicationResult>();
+			for (Future<ReplicationResult> f : pool.invokeAll(tasks))
+			{
+				results.add(f.get());
+			}
+			return results;
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	/**************************************************************************
+	 * Runs one replication to maxTime (or until the bacteria die out, after
+	 * which the populations can no longer change) and records its outcome.
+	 * Populations are sampled exactly at each multiple of the sample
+	 * interval, i.e., after every event at or before that time.
+	 *
+	 * @param seed  seed of the replication's random stream
+	 * @return the outcome of the run
+	 **************************************************************************/
+	public ReplicationResult runReplication(long seed)
+	{
+		Simulation sim = new Simulation(numCells, 0, numMacrophages, numBacteria,
+		                                maxTime, seed);
+
+		int   numSamples  = (int)Math.floor(maxTime / sampleInterval) + 1;
+		int[] macrophages = new int[numSamples];
+		int[] bacteria    = new int[numSamples];
+		int   k           = 0;
+
+		double extinction = (sim.getNumBacteria() == 0) ? 0 : Double.NaN;
+		while (Double.isNaN(extinction))
+		{
+			// every sample time before the next event sees the current state
+			double next = sim.getNextEventTime();
+			while (k < numSamples && k * sampleInterval < next)
+			{
+				macrophages[k] = sim.getNumMacrophages();
+				bacteria[k]    = sim.getNumBacteria();
+				k++;
+			}
+
+			if (!sim.step())
+				break;
+
+			if (sim.getNumBacteria() == 0)
+				extinction = sim.getTime();
+		}
+
+		// the rest of the run holds the final populations
+		for (; k < numSamples; k++)
+		{
+			macrophages[k] = sim.getNumMacrophages();
+			bacteria[k]    = sim.getNumBacteria();
+		}
+
+		return new ReplicationResult(seed, sim.getNumMacrophages(), sim.getNumBacteria(),
+			extinction, sim.getNumEvents(), sampleInterval, macrophages, bacteria);
+	}
+
+	/**************************************************************************
+	 * Prints a summary of the outcome distribution: final populations,
+	 * extinctions, and the mean/min/max time series.
+	 *
+	 * @param results  the replication results
+	 * @param out      where to print
+	 **************************************************************************/
+	public static void printSummary(List<ReplicationResult> results, PrintStream out)
+	{
+		int n = results.size();
+		if (n == 0)
+		{
+			out.println("No replications.");
+			return;
+		}
+
+		double[] finalB = new double[n];
+		double[] finalM = new double[n];
+		long     events = 0;
+		int      numExtinct = 0;
+		double   extinctSum = 0, extinctMin = Double.MAX_VALUE, extinctMax = 0;
+		for (int i = 0; i < n; i++)
+		{
+			ReplicationResult r = results.get(i);
+			finalB[i] = r.getFinalBacteria();
+			finalM[i] = r.getFinalMacrophages();
+			events   += r.getNumEvents();
+			if (r.wentExtinct())
+			{
+				numExtinct++;
+				extinctSum += r.getExtinctionTime();
+				extinctMin  = Math.min(extinctMin, r.getExtinctionTime());
+				extinctMax  = Math.max(extinctMax, r.getExtinctionTime());
+			}
+		}
+
+		out.println("Replications: " + n + "    total events: " + events);
+		printStats(out, "Final macrophages", finalM);
+		printStats(out, "Final bacteria",    finalB);
+		if (numExtinct == 0)
+			out.println("Bacteria extinct:  0 of " + n);
+		else
+			out.printf("Bacteria extinct:  %d of %d (time mean %.3f  min %.3f  max %.3f)%n",
+				numExtinct, n, extinctSum / numExtinct, extinctMin, extinctMax);
+
+		out.println();
+		out.println("time\tmacrophages(mean)\tbacteria(mean)\tbacteria(min)\tbacteria(max)");
+		ReplicationResult first = results.get(0);
+		for (int k = 0; k < first.getNumSamples(); k++)
+		{
+			double sumM = 0, sumB = 0;
+			int    minB = Integer.MAX_VALUE, maxB = 0;
+			for (int i = 0; i < n; i++)
+			{
+				ReplicationResult r = results.get(i);
+				sumM += r.getMacrophages(k);
+				sumB += r.getBacteria(k);
+				minB  = Math.min(minB, r.getBacteria(k));
+				maxB  = Math.max(maxB, r.getBacteria(k));
+			}
+			out.printf("%.2f\t%.2f\t%.2f\t%d\t%d%n", k * first.getSampleInterval(),
+				sumM / n, sumB / n, minB, maxB);
+		}
+	}
+
+	private static void printStats(PrintStream out, String label, double[] values)
+	{
+		double sum = 0, min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+		for (double v : values)
+		{
+			sum += v;
+			min  = Math.min(min, v);
+			max  = Math.max(max, v);
+		}
+		double mean = sum / values.length;
+		double ss   = 0;
+		for (double v : values)
+			ss += (v - mean) * (v - mean);
+		double sd = (values.length > 1) ? Math.sqrt(ss / (values.length - 1)) : 0;
+
+		out.printf("%-18s mean %.2f  sd %.2f  min %.0f  max %.0f%n", label + ":", mean, sd, min, max);
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		// same configuration as Tester
+		int numCells       = 40;
+		int numMacrophages = 50;
+		int numBacteria    = 100;
+		int maxTime        = 100;
+
+		int  numReplications = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+		int  numThreads      = (args.length > 1) ? Integer.parseInt(args[1])
+		                                         : Runtime.getRuntime().availableProcessors();
+		long masterSeed      = (args.length > 2) ? Long.parseLong(args[2]) : Simulation.DEFAULT_SEED;
+
+		ReplicationRunner runner = new ReplicationRunner(numCells, numMacrophages,
+			numBacteria, maxTime, 1.0);
+
+		long start = System.nanoTime();
+		List<ReplicationResult> results = runner.runAll(numReplications, masterSeed, numThreads);
+		double secs = (System.nanoTime() - start) / 1e9;
+
+		printSummary(results, System.out);
+		System.out.printf("%n%d replications on %d threads in %.3f s%n",
+			numReplications, numThreads, secs);
+	}
+}
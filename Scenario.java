@@ -0,0 +1,400 @@
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * This class holds the parameters of one simulation run -- the landscape,
+ * the populations, how long and with what seed to run, which engine, and
+ * where the results go -- read from key=value pairs given on the command
+ * line or in a properties file (see Launcher).  The keys, and their
+ * defaults, are:
+ *
+ *     cells=40              rows and columns of the landscape (at most 46340)
+ *     cellWidth=15          width of a cell drawn in the gui, in pixels
+ *     macrophages=50        initial macrophages
+ *     bacteria=100          initial bacteria
+ *     maxTime=100           simulated time at which the run ends
+ *     seed=12345            master seed of the run's random streams
+ *     replications=1        runs of each scenario, each with its own seed
+ *     headless=false        run without the gui
+ *     parallel=false        use the region-parallel engine
+ *     scheduler=heap        event set of the sequential engine: heap
+ *                           (EventHeap) or calendar (CalendarQueue)
+ *     step=0                simulated time per step of the approximate
+ *                           time-stepped engine (SteppedSimulation), 0 for
+ *                           an exact engine
+ *     threads=<processors>  threads of the parallel or time-stepped engine,
+ *                           or of a sweep
+ *     delay=0.0333          seconds between gui redraws
+ *     sample=0.1            simulated time between time series points
+ *     stats=0               print the statistics this often (0 for never)
+ *     statsOut=             file the statistics go to (standard output)
+ *     log=                  binary event log file (see EventLogWriter)
+ *     metrics=              engine metrics report file (see EngineMetrics)
+ *     checkpoint=           checkpoint file, saved every checkpointEvery
+ *     checkpointEvery=10    simulated time between checkpoints
+ *     resume=               checkpoint file to carry on from
+ *     output=               file the results of a sweep go to (standard output)
+ *
+ * Instead of a single value, a key may be given a comma-separated list of
+ * values (macrophages=25,50,100) or an inclusive range start:end:step
+ * (cells=40:200:40), and expand() turns the parameters into one scenario for
+ * every combination of values.
+ */
+public class Scenario
+{
+	private static final Map<String, String> DEFAULTS = new LinkedHashMap<String, String>();
+	static
+	{
+		DEFAULTS.put("cells",           "40");
+		DEFAULTS.put("cellWidth",       "15");
+		DEFAULTS.put("macrophages",     "50");
+		DEFAULTS.put("bacteria",        "100");
+		DEFAULTS.put("maxTime",         "100");
+		DEFAULTS.put("seed",            Long.toString(Simulation.DEFAULT_SEED));
+		DEFAULTS.put("replications",    "1");
+		DEFAULTS.put("headless",        "false");
+		DEFAULTS.put("parallel",        "false");
+		DEFAULTS.put("scheduler",       "heap");
+		DEFAULTS.put("step",            "0");
+		DEFAULTS.put("threads",         Integer.toString(Runtime.getRuntime().availableProcessors()));
+		DEFAULTS.put("delay",           Double.toString(1.0 / 30));
+		DEFAULTS.put("sample",          Double.toString(SimulationManager.DEFAULT_SAMPLE_INTERVAL));
+		DEFAULTS.put("stats",           "0");
+		DEFAULTS.put("statsOut",        "");
+		DEFAULTS.put("log",             "");
+		DEFAULTS.put("metrics",         "");
+		DEFAULTS.put("checkpoint",      "");
+		DEFAULTS.put("checkpointEvery", "10");
+		DEFAULTS.put("resume",          "");
+		DEFAULTS.put("output",          "");
+	}
+
+	private final Map<String, String> values;  // one value for every key
+
+	private final int     numCells;
+	private final int     guiCellWidth;
+	private final int     numMacrophages;
+	private final int     numBacteria;
+	private final int     maxTime;
+	private final long    seed;
+	private final int     replications;
+	private final boolean headless;
+	private final boolean parallel;
+	private final double  step;
+	private final int     numThreads;
+	private final double  delay;
+	private final double  sampleInterval;
+	private final double  statsInterval;
+	private final double  checkpointInterval;
+
+	// parses and checks one value for every key
+	private Scenario(Map<String, String> values)
+	{
+		this.values         = values;
+		numCells            = intValue("cells", 1);
+		guiCellWidth        = intValue("cellWidth", 1);
+		numMacrophages      = intValue("macrophages", 0);
+		numBacteria         = intValue("bacteria", 0);
+		maxTime             = intValue("maxTime", 0);
+		seed                = longValue("seed");
+		replications        = intValue("replications", 1);
+		headless            = booleanValue("headless");
+		parallel            = booleanValue("parallel");
+		if(!get("scheduler").equals("heap") && !get("scheduler").equals("calendar"))
+		{
+			throw new IllegalArgumentException("scheduler: '" + get("scheduler")
+				+ "' is not heap or calendar");
+		}
+		step                = doubleValue("step", false);
+		if(parallel && step > 0)
+		{
+			throw new IllegalArgumentException("parallel and step choose different engines; "
+				+ "set only one");
+		}
+		numThreads          = intValue("threads", 1);
+		delay               = doubleValue("delay", false);
+		sampleInterval      = doubleValue("sample", true);
+		statsInterval       = doubleValue("stats", false);
+		checkpointInterval  = doubleValue("checkpointEvery", true);
+		long area = (long)numCells * numCells;
+		if(area > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("cells: a grid of " + numCells + " x " + numCells
+				+ " is too large; at most " + (int)Math.sqrt(Integer.MAX_VALUE) + " cells a side");
+		}
+		if((long)numMacrophages + numBacteria > area)
+		{
+			throw new IllegalArgumentException(numMacrophages + " macrophages and " + numBacteria
+				+ " bacteria do not fit on " + numCells + " x " + numCells + " cells");
+		}
+	}
+
+	/**************************************************************************
+	 * Returns the default value of every key, in the order listed above.
+	 * @return a fresh, modifiable map of key to value
+	 **************************************************************************/
+	public static Map<String, String> defaults()
+	{
+		return new LinkedHashMap<String, String>(DEFAULTS);
+	}
+
+	/**************************************************************************
+	 * Reads a properties file over the given parameters.
+	 * @param params  parameters to override
+	 * @param file    the properties file
+	 * @throws IllegalArgumentException if the file has an unknown key
+	 **************************************************************************/
+	public static void load(Map<String, String> params, Path file) throws IOException
+	{
+		Properties props = new Properties();
+		try (Reader in = Files.newBufferedReader(file))
+		{
+			props.load(in);
+		}
+		for (String key : props.stringPropertyNames())
+		{
+			put(params, key, props.getProperty(key));
+		}
+	}
+
+	/**************************************************************************
+	 * Sets a parameter given as "key=value", e.g. a command-line argument.
+	 * @param params    parameters to override
+	 * @param argument  the key and value
+	 * @throws IllegalArgumentException if the key is unknown or the argument
+	 *         is not of the form key=value
+	 **************************************************************************/
+	public static void set(Map<String, String> params, String argument)
+	{
+		int eq = argument.indexOf('=');
+		if(eq <= 0)
+		{
+			throw new IllegalArgumentException("expected key=value, got '" + argument + "'");
+		}
+		put(params, argument.substring(0, eq).trim(), argument.substring(eq + 1));
+	}
+
+	private static void put(Map<String, String> params, String key, String value)
+	{
+		if(!DEFAULTS.containsKey(key))
+		{
+			throw new IllegalArgumentException("unknown key '" + key + "'; the keys are "
+				+ DEFAULTS.keySet());
+		}
+		params.put(key, value.trim());
+	}
+
+	/**************************************************************************
+	 * Turns parameters, some of which may list several values, into one
+	 * scenario for every combination of values.  Scenarios are ordered with
+	 * the last swept key varying fastest, keys taken in the order listed
+	 * above.
+	 * @param params  one value, list or range for every key
+	 * @return the scenarios, at least one
+	 * @throws IllegalArgumentException if a value is malformed or out of range
+	 **************************************************************************/
+	public static List<Scenario> expand(Map<String, String> params)
+	{
+		List<String>       keys         = new ArrayList<String>(DEFAULTS.keySet());
+		List<List<String>> alternatives = new ArrayList<List<String>>();
+		for (String key : keys)
+		{
+			String value = params.containsKey(key) ? params.get(key) : DEFAULTS.get(key);
+			alternatives.add(alternatives(key, value));
+		}
+
+		List<Scenario> scenarios = new ArrayList<Scenario>();
+		int[] choice = new int[keys.size()];
+		while(true)
+		{
+			Map<String, String> values = new LinkedHashMap<String, String>();
+			for (int k = 0; k < keys.size(); k++)
+			{
+				values.put(keys.get(k), alternatives.get(k).get(choice[k]));
+			}
+			scenarios.add(new Scenario(values));
+
+			// next combination, like an odometer
+			int k = keys.size() - 1;
+			while(k >= 0 && ++choice[k] == alternatives.get(k).size())
+			{
+				choice[k--] = 0;
+			}
+			if(k < 0)
+			{
+				return scenarios;
+			}
+		}
+	}
+
+	// the values a list or range stands for, or the value itself
+	private static List<String> alternatives(String key, String value)
+	{
+		List<String> result = new ArrayList<String>();
+		if(value.indexOf(',') >= 0)
+		{
+			for (String v : value.split(","))
+			{
+				result.add(v.trim());
+			}
+			return result;
+		}
+
+		String[] range = value.split(":");
+		if(range.length != 3)
+		{
+			result.add(value);
+			return result;
+		}
+		BigDecimal start, end, step;
+		try
+		{
+			start = new BigDecimal(range[0].trim());
+			end   = new BigDecimal(range[1].trim());
+			step  = new BigDecimal(range[2].trim());
+		}
+		catch(NumberFormatException e)
+		{
+			result.add(value);  // not a range after all, e.g. a file name
+			return result;
+		}
+		if(step.signum() <= 0 || start.compareTo(end) > 0)
+		{
+			throw new IllegalArgumentException(key + ": range " + value
+				+ " needs start <= end and a positive step");
+		}
+		// start + i * step rather than repeated addition, so no rounding creeps in
+		for (int i = 0; ; i++)
+		{
+			BigDecimal v = start.add(step.multiply(BigDecimal.valueOf(i)));
+			if(v.compareTo(end) > 0)
+			{
+				return result;
+			}
+			result.add(v.stripTrailingZeros().toPlainString());
+		}
+	}
+
+	private int intValue(String key, int min)
+	{
+		long v = longValue(key);
+		if(v < min || v > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException(key + ": " + v + " is out of range");
+		}
+		return (int)v;
+	}
+
+	private long longValue(String key)
+	{
+		try
+		{
+			return Long.parseLong(values.get(key));
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IllegalArgumentException(key + ": '" + values.get(key) + "' is not a whole number");
+		}
+	}
+
+	private double doubleValue(String key, boolean positive)
+	{
+		double v;
+		try
+		{
+			v = Double.parseDouble(values.get(key));
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IllegalArgumentException(key + ": '" + values.get(key) + "' is not a number");
+		}
+		if(positive ? !(v > 0) : !(v >= 0))
+		{
+			throw new IllegalArgumentException(key + ": " + v + " must be "
+				+ (positive ? "positive" : "at least 0"));
+		}
+		return v;
+	}
+
+	private boolean booleanValue(String key)
+	{
+		String v = values.get(key);
+		if(!v.equalsIgnoreCase("true") && !v.equalsIgnoreCase("false"))
+		{
+			throw new IllegalArgumentException(key + ": '" + v + "' is not true or false");
+		}
+		return Boolean.parseBoolean(v);
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the raw value of any key.
+	 * @param key  one of the keys listed above
+	 * @return the value, "" for an unset file name
+	 **************************************************************************/
+	public String get(String key)              { return(values.get(key)); }
+
+	/**************************************************************************
+	 * Accessor method that returns a file named by a key.
+	 * @param key  one of statsOut, log, metrics, checkpoint, resume, output
+	 * @return the file, or null if none is set
+	 **************************************************************************/
+	public Path getPath(String key)
+	{
+		String v = values.get(key);
+		return v.isEmpty() ? null : Paths.get(v);
+	}
+
+	public int getNumCells()                   { return(numCells); }
+	public int getGuiCellWidth()               { return(guiCellWidth); }
+	public int getNumMacrophages()             { return(numMacrophages); }
+	public int getNumBacteria()                { return(numBacteria); }
+	public int getMaxTime()                    { return(maxTime); }
+	public long getSeed()                      { return(seed); }
+	public int getReplications()               { return(replications); }
+	public boolean isHeadless()                { return(headless); }
+	public boolean isParallel()                { return(parallel); }
+	public double getStep()                    { return(step); }
+	public int getNumThreads()                 { return(numThreads); }
+	public double getDelay()                   { return(delay); }
+	public double getSampleInterval()          { return(sampleInterval); }
+	public double getStatsInterval()           { return(statsInterval); }
+	public double getCheckpointInterval()      { return(checkpointInterval); }
+
+	/**************************************************************************
+	 * Makes the event set the sequential engine is to use.
+	 * @param capacity  number of agents it should have room for at first
+	 * @return an empty EventHeap or CalendarQueue
+	 **************************************************************************/
+	public EventScheduler newScheduler(int capacity)
+	{
+		return get("scheduler").equals("calendar") ? new CalendarQueue(capacity)
+		                                           : new EventHeap(capacity);
+	}
+
+	/**************************************************************************
+	 * Returns the seed of one replication.  A scenario run once uses its seed
+	 * as given; replication r of several uses stream r of the seed's
+	 * RandomStreams, as ReplicationRunner does.
+	 * @param replication  0 <= replication < getReplications()
+	 * @return the master seed of that replication's simulation
+	 **************************************************************************/
+	public long seedFor(int replication)
+	{
+		return (replications == 1) ? seed : new RandomStreams(seed).seedFor(replication);
+	}
+
+	/**************************************************************************
+	 * Returns the scenario as key=value lines, loadable as a properties file.
+	 **************************************************************************/
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, String> e : values.entrySet())
+		{
+			sb.append(e.getKey()).append('=').append(e.getValue()).append(System.lineSeparator());
+		}
+		return sb.toString();
+	}
+}
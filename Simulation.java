@@ -1,5 +1,9 @@
+import java.io.*;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.*;
+import java.util.random.RandomGenerator;
+import javax.swing.SwingUtilities;
 
 /**
  * This class implements the next-event simulation engine for your agent-based
@@ -11,13 +15,27 @@ import java.util.*;
 public class Simulation extends SimulationManager
 {
 	// you may choose to have two separate lists, or only one list of all
-	private ArrayList<Macrophage> macrophageList;
-	private ArrayList<Bacteria> bacteriaList;
-	private ArrayList<Agent> driver; 
-	private Cell[][] landscape;
-	public static Random rand = new Random(12345);
+	private AgentRegistry<Macrophage> macrophageList;
+	private AgentRegistry<Bacteria> bacteriaList;
+	private EventScheduler driver; 
+	private EventHandler[] handlers = new EventHandler[EventKind.values().length]; // by kind
+	private AgentStore store;     // primitive columns backing every agent's state
+	private Neighborhood neighborhood = new Neighborhood(); // scratch buffer reused by every move
+	private Grid landscape;
+	private RandomGenerator rand; // this simulation's own random stream
 	private int numCells;
 	private int maxTime;
+	private long numEvents; // events processed so far
+
+	private Path   checkpointFile;                         // where periodic checkpoints go
+	private double checkpointInterval;                     // simulated time between them
+	private double nextCheckpoint = Double.POSITIVE_INFINITY; // time of the next one
+
+	private EventSink sink;  // told about every event, null if nobody listens
+
+	private EngineMetrics metrics; // times every event, null if not instrumented
+
+	public static final long DEFAULT_SEED = 12345;
 
 	/**************************************************************************
 	 * Constructs a Simulation object.  This should just perform initialization
@@ -27,9 +45,49 @@ public class Simulation extends SimulationManager
 	 * @param guiCellWidth   width of each cell drawn in the gui
 	 * @param numMacrophages number of initial macrophages in the environment
 	 * @param numBacteria    number of initial bacteria in the environment
+	 * @param maxTime        simulated time at which the run ends
 	 **************************************************************************/
 	public Simulation(int numCells,       int guiCellWidth,
 		int numMacrophages, int numBacteria, int maxTime)
+	{
+		this(numCells, guiCellWidth, numMacrophages, numBacteria, maxTime, DEFAULT_SEED);
+	}
+
+	/**************************************************************************
+	 * Constructs a Simulation object whose random streams are derived from
+	 * the given master seed (see RandomStreams).  Each Simulation owns its
+	 * random streams and its agent id space, so any number of them can run
+	 * concurrently in one JVM, and a given seed always reproduces the same
+	 * run.
+	 *
+	 * @param numCells       number of rows and columns in the environment
+	 * @param guiCellWidth   width of each cell drawn in the gui
+	 * @param numMacrophages number of initial macrophages in the environment
+	 * @param numBacteria    number of initial bacteria in the environment
+	 * @param maxTime        simulated time at which the run ends
+	 * @param seed           master seed of this simulation's random streams
+	 **************************************************************************/
+	public Simulation(int numCells,       int guiCellWidth,
+		int numMacrophages, int numBacteria, int maxTime, long seed)
+	{
+		this(numCells, guiCellWidth, numMacrophages, numBacteria, maxTime,
+			new RandomStreams(seed).stream(RandomStreams.MAIN));
+	}
+
+	/**************************************************************************
+	 * Constructs a Simulation object drawing all of its random numbers (agent
+	 * placement, event times, move choices) from the given generator, which
+	 * the simulation then owns and must not be shared with another thread.
+	 *
+	 * @param numCells       number of rows and columns in the environment
+	 * @param guiCellWidth   width of each cell drawn in the gui
+	 * @param numMacrophages number of initial macrophages in the environment
+	 * @param numBacteria    number of initial bacteria in the environment
+	 * @param maxTime        simulated time at which the run ends
+	 * @param rand           this simulation's random stream
+	 **************************************************************************/
+	public Simulation(int numCells,       int guiCellWidth,
+		int numMacrophages, int numBacteria, int maxTime, RandomGenerator rand)
 	{
 		// call the SimulationManager constructor, which itself makes sure to 
 		// construct and store an AgentGUI object for drawing
@@ -37,20 +95,18 @@ public class Simulation extends SimulationManager
 		this.numCells = numCells;
 
 		time           = 0;
-		macrophageList = new ArrayList<Macrophage>();
-		bacteriaList   = new ArrayList<Bacteria>();
-		landscape	   = new Cell[numCells][numCells];
-		driver         = new ArrayList<Agent>();
+		macrophageList = new AgentRegistry<Macrophage>(numMacrophages);
+		bacteriaList   = new AgentRegistry<Bacteria>(numBacteria);
+		driver         = new EventHeap(numMacrophages + numBacteria);
+		store          = new AgentStore(numMacrophages + numBacteria);
+		landscape      = new Grid(numCells, store);
 		this.maxTime   = maxTime;
+		this.rand      = rand;
 
-		//Initializing empty landscape
-		for(int i = 0; i < numCells; i++)
-		{
-			for(int j = 0; j < numCells; j++)
-			{
-				landscape[i][j] = new Cell(i,j);			
-			}
-		}
+		handlers[EventKind.BACTERIUM_MOVE.ordinal()]  = this::moveBacterium;
+		handlers[EventKind.DIVIDE.ordinal()]          = this::divide;
+		handlers[EventKind.MACROPHAGE_MOVE.ordinal()] = this::moveMacrophage;
+		handlers[EventKind.EAT.ordinal()]             = this::eat;
 
 		// as a simple example, construct the initial macrophages and
 		// bacteria and add them "at random" to the landscape
@@ -59,15 +115,15 @@ public class Simulation extends SimulationManager
 		{
 			row = rand.nextInt(numCells);
 			col = rand.nextInt(numCells);
-			while (landscape[row][col].isOccupied()) 
+			while (landscape.isOccupied(landscape.index(row, col))) 
 			{
 				row = rand.nextInt(numCells);
 				col = rand.nextInt(numCells);
 			}
-			Macrophage m = new Macrophage(row,col);
+			Macrophage m = new Macrophage(store,rand,row,col);
 			macrophageList.add(m);
-			landscape[row][col].occupy(m);
-			updateEventList(m);
+			landscape.occupy(landscape.index(row, col), m);
+			schedule(m);
 		}
 
 		for (int i = 0; i < numBacteria; i++)
@@ -75,182 +131,592 @@ public class Simulation extends SimulationManager
 			row = rand.nextInt(numCells);
 			col = rand.nextInt(numCells);
 
-			while (landscape[row][col].isOccupied()) 
+			while (landscape.isOccupied(landscape.index(row, col))) 
 			{
 				row = rand.nextInt(numCells);
 				col = rand.nextInt(numCells);
 			}
 
-			Bacteria b = new Bacteria(row,col);
+			Bacteria b = new Bacteria(store,rand,row,col);
 			bacteriaList.add(b);
-			landscape[row][col].occupy(b);
-			updateEventList(b);
+			landscape.occupy(landscape.index(row, col), b);
+			schedule(b);
 		}
 	}
 
-	private void updateEventList(Agent a) 
-	{   
+	/**************************************************************************
+	 * Queues the agent's next event (see Agent.nextEvent()), or moves it if
+	 * it is queued already.  Must be called every time the agent's next
+	 * event times change, including by the handler of its own event.
+	 *
+	 * @param a  the agent
+	 **************************************************************************/
+	public void schedule(Agent a)
+	{
+		driver.update(a.nextEvent()); // insert or reposition, same tie order as before
+	}
 
-		//System.out.println("-----  updating event list ----------------------------");
+	/**************************************************************************
+	 * Sets the code run for every event of the given kind, in place of the
+	 * engine's own.  New kinds of event need only a constant in EventKind
+	 * and a handler here; the event loop itself does not change.
+	 *
+	 * @param kind     the kind of event
+	 * @param handler  what to do when one comes up
+	 **************************************************************************/
+	public void setHandler(EventKind kind, EventHandler handler)
+	{
+		handlers[kind.ordinal()] = handler;
+	}
 
-		driver.remove(a);
+	public double getMaxTime()
+	{
+		return maxTime;
+	}
 
-		int length = driver.size();
-		double time = a.getNextTime();
-		for (int i = 0; i < length; i++)
+	/**************************************************************************
+	 * Method used to run the simulation.  This method should contain the
+	 * implementation of your next-event simulation engine (while loop handling
+	 * various event types).  The run ends once the next event would occur
+	 * after maxTime.
+	 *
+	 * Events are processed at full speed on the calling thread; the gui
+	 * observes the run from the event dispatch thread, sampling a snapshot
+	 * of the agents once per frame, so redrawing never slows the engine.
+	 *
+	 * @param guiDelay  delay in seconds between redraws of the gui
+	 **************************************************************************/
+	public void run(final double guiDelay) throws InterruptedException
+	{  
+		// Swing objects must be built on the event dispatch thread
+		trackChangedCells(); // lets the gui redraw only what changed
+		if(getTimeSeries() == null)
+		{
+			recordTimeSeries(DEFAULT_SAMPLE_INTERVAL); // for the time series dialog
+		}
+		publishSnapshot();
+		try
 		{
-			if (time <= driver.get(i).getNextTime())
+			SwingUtilities.invokeAndWait(new Runnable()
 			{
-				driver.add(i, a);
-		//		System.out.println(driver);
-		//		System.out.println("-----  DONE updating event list ----------------------------");
-				return;
-			}
+				public void run()
+				{
+					gui = new AgentGUI(Simulation.this, numCells, guiCellWidth, guiDelay);
+				}
+			});
 		}
+		catch (java.lang.reflect.InvocationTargetException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+
+		while(hasNextEvent())
+		{
+			processNextEvent();
+			checkpointIfDue();
 
-		driver.add(a); //add at the end
+			// hand the gui a fresh snapshot if it asked for one
+			publishSnapshotIfRequested();
+		}
 
-		//System.out.println(driver);
-		//System.out.println("DONE event list END ----------------------------");
+		sampleThrough(maxTime);
+		publishSnapshot(); // final state stays on screen
 	}
 
-	public double getMaxTime()
+	/**************************************************************************
+	 * Method used to run the simulation in batch mode, without constructing
+	 * an AgentGUI or any other Swing object, so it can be used on machines
+	 * without a display.  Events are processed back to back (no redraw delay)
+	 * until the next event would occur after maxTime; the final populations
+	 * and the event throughput are then reported on standard output.
+	 **************************************************************************/
+	public void runHeadless()
 	{
-		return maxTime;
+		long start = System.nanoTime();
+		runToEnd();
+
+		double secs = (System.nanoTime() - start) / 1e9;
+		System.out.println("Simulated time " + time + " (max " + maxTime + ")");
+		System.out.println("Macrophages: " + getNumMacrophages() 
+			+ "    Bacteria: " + getNumBacteria());
+		System.out.println("Births: " + statistics.getBirths()
+			+ "    Eats: " + statistics.getEats() + "    Moves: " + statistics.getMoves());
+		System.out.printf("%d events in %.3f s (%.0f events/sec)%n",
+			numEvents, secs, numEvents / Math.max(secs, 1e-9));
 	}
 
 	/**************************************************************************
-	 * Method used to run the simulation.  This method should contain the
-	 * implementation of your next-event simulation engine (while loop handling
-	 * various event types).
+	 * Method that runs the simulation to maxTime without a gui and without
+	 * printing anything, writing any checkpoints that fall due and reporting
+	 * the final statistics samples.
+	 **************************************************************************/
+	public void runToEnd()
+	{
+		while(hasNextEvent())
+		{
+			processNextEvent();
+			checkpointIfDue();
+		}
+		sampleThrough(maxTime);
+	}
+
+	/**************************************************************************
+	 * Method that processes exactly one event, if one is scheduled at or
+	 * before maxTime.  Lets callers other than run() (e.g., benchmarks or
+	 * tools) drive the engine event by event.
 	 *
-	 * @param guiDelay  delay in seconds between redraws of the gui
+	 * @return true if an event was processed, false if the run is over
 	 **************************************************************************/
-	public void run(double guiDelay) throws InterruptedException
-	{  
+	public boolean step()
+	{
+		if(!hasNextEvent())
+		{
+			return false;
+		}
+		processNextEvent();
+		return true;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the time of the next scheduled event,
+	 * whether or not it falls before maxTime.
+	 * @return the next event time, or Double.MAX_VALUE if nothing is scheduled
+	 **************************************************************************/
+	public double getNextEventTime()
+	{
+		return driver.isEmpty() ? Double.MAX_VALUE : driver.peek().getTime();
+	}
+
+	/**************************************************************************
+	 * Makes run() and runHeadless() write a checkpoint (see Checkpoint) every
+	 * interval units of simulated time, so a run that dies can be resumed
+	 * with Checkpoint.load().  Each checkpoint replaces the previous one.
+	 *
+	 * @param file      the checkpoint file
+	 * @param interval  simulated time between checkpoints
+	 **************************************************************************/
+	public void setCheckpointing(Path file, double interval)
+	{
+		if(!(interval > 0))
+		{
+			throw new IllegalArgumentException("checkpoint interval must be positive");
+		}
+		checkpointFile     = file;
+		checkpointInterval = interval;
+		nextCheckpoint     = (Math.floor(time / interval) + 1) * interval;
+	}
+
+	/**************************************************************************
+	 * Turns on instrumentation of the event loop from now on (pass null to
+	 * turn it off): every event is timed and counted by the given metrics,
+	 * which also sample the queue size and rates at their own interval.
+	 *
+	 * @param metrics  the metrics, or null
+	 **************************************************************************/
+	public void setMetrics(EngineMetrics metrics)
+	{
+		if(this.metrics != null)
+		{
+			statistics.removeListener(this.metrics);
+		}
+		this.metrics = metrics;
+		if(metrics != null)
+		{
+			metrics.setQueueSize(driver.size());
+			statistics.addListener(metrics, metrics.getQueueSizes().getInterval());
+		}
+	}
+
+	/**************************************************************************
+	 * Replaces the future event set, e.g. with a CalendarQueue, moving every
+	 * queued event over.  Events come out in the same order whichever
+	 * scheduler holds them, so the run is unchanged apart from its speed.
+	 *
+	 * @param scheduler  the new, empty event set
+	 **************************************************************************/
+	public void setScheduler(EventScheduler scheduler)
+	{
+		if(!scheduler.isEmpty())
+		{
+			throw new IllegalArgumentException("the new scheduler must be empty");
+		}
+		ArrayList<Event> events = driver.toList();
+		for (int i = events.size() - 1; i >= 0; i--)
+		{
+			scheduler.update(events.get(i)); // later updates win ties
+		}
+		driver = scheduler;
+	}
+
+	/**************************************************************************
+	 * Attaches a sink that is told about every event processed from now on
+	 * (pass null to detach it).  The sink is first told about every agent
+	 * present, as MACROPHAGE_ADDED and BACTERIUM_ADDED events at the current
+	 * time, so what it receives describes the run on its own.
+	 *
+	 * @param sink  the sink, or null
+	 **************************************************************************/
+	public void setEventSink(EventSink sink)
+	{
+		this.sink = sink;
+		if(sink == null)
+		{
+			return;
+		}
+		for (int i = 0; i < macrophageList.size(); i++)
+		{
+			Macrophage m = macrophageList.get(i);
+			int cell = landscape.index(m.getRow(), m.getCol());
+			boolean shown = (landscape.getMacrophageSlot(cell) == m.getSlot());
+			sink.event(time, EventKind.MACROPHAGE_ADDED, m.getID(), shown ? cell : -1, cell);
+		}
+		for (int i = 0; i < bacteriaList.size(); i++)
+		{
+			Bacteria b = bacteriaList.get(i);
+			int cell = landscape.index(b.getRow(), b.getCol());
+			boolean shown = (landscape.getBacteriaSlot(cell) == b.getSlot());
+			sink.event(time, EventKind.BACTERIUM_ADDED, b.getID(), shown ? cell : -1, cell);
+		}
+	}
+
+	/**************************************************************************
+	 * Writes a checkpoint of the current state now.  Must be called from the
+	 * thread running the simulation, between two events.
+	 *
+	 * @param file  the checkpoint file, replaced if it exists
+	 * @throws IOException if the file cannot be written
+	 **************************************************************************/
+	public void checkpoint(Path file) throws IOException
+	{
+		Checkpoint.save(this, file);
+	}
+
+	private void checkpointIfDue()
+	{
+		if(time < nextCheckpoint)
+		{
+			return;
+		}
+		try
+		{
+			checkpoint(checkpointFile);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		nextCheckpoint = (Math.floor(time / checkpointInterval) + 1) * checkpointInterval;
+	}
+
+	/**************************************************************************
+	 * Writes everything needed to resume this simulation: the parameters,
+	 * the clock, the event count, the birth, eat and move counts, the id
+	 * counter, the random stream's state, then every agent (id, row,
+	 * column, next event times, and whether the landscape shows it in its
+	 * cell) in registry order, and finally the agents in the order their
+	 * queued events will fire.
+	 **************************************************************************/
+	void writeState(Checkpoint.Output out) throws IOException
+	{
+		if(!(rand instanceof StreamRandom))
+		{
+			throw new IllegalStateException("the state of a " + rand.getClass().getName()
+				+ " cannot be saved; use a StreamRandom");
+		}
+
+		out.putInt(numCells);
+		out.putInt(guiCellWidth);
+		out.putInt(maxTime);
+		out.putDouble(time);
+		out.putLong(numEvents);
+		out.putLong(statistics.getBirths());
+		out.putLong(statistics.getEats());
+		out.putLong(statistics.getMoves());
+		out.putInt(store.getLastID());
+		out.putLong(((StreamRandom)rand).getState());
+		out.putInt(macrophageList.size());
+		out.putInt(bacteriaList.size());
+
+		// position of each agent in the file, by slot, to write the event order
+		int[] ordinals = new int[store.capacity()];
+		int n = 0;
+		for (int i = 0; i < macrophageList.size(); i++)
+		{
+			Macrophage m = macrophageList.get(i);
+			int cell = landscape.index(m.getRow(), m.getCol());
+			writeAgent(out, m, landscape.getMacrophageSlot(cell) == m.getSlot());
+			ordinals[m.getSlot()] = n++;
+		}
+		for (int i = 0; i < bacteriaList.size(); i++)
+		{
+			Bacteria b = bacteriaList.get(i);
+			int cell = landscape.index(b.getRow(), b.getCol());
+			writeAgent(out, b, landscape.getBacteriaSlot(cell) == b.getSlot());
+			ordinals[b.getSlot()] = n++;
+		}
 
-        this.gui        = new AgentGUI(this, numCells, guiCellWidth);
+		ArrayList<Event> events = driver.toList();
+		out.putInt(events.size());
+		for (int i = 0; i < events.size(); i++)
+		{
+			out.putInt(ordinals[events.get(i).getAgent().getSlot()]);
+		}
+	}
 
-		int gridSize = this.gui.getGridSize();
+	private static void writeAgent(Checkpoint.Output out, Agent a, boolean onGrid) throws IOException
+	{
+		out.putInt(a.getID());
+		out.putInt(a.getRow());
+		out.putInt(a.getCol());
+		out.putDouble(a.getNextMoveTime());
+		out.putDouble(a.getNextActionTime());
+		out.putByte(onGrid ? (byte)1 : (byte)0);
+	}
 
+	/**************************************************************************
+	 * Rebuilds a simulation from the state written by writeState().  Agents
+	 * go back into the registries in their saved order, and their events are
+	 * queued again latest-first, so that among equal event times they keep
+	 * their saved firing order.
+	 **************************************************************************/
+	static Simulation readState(Checkpoint.Input in) throws IOException
+	{
+		int    numCells     = in.getInt();
+		int    guiCellWidth = in.getInt();
+		int    maxTime      = in.getInt();
+		double time         = in.getDouble();
+		long   numEvents    = in.getLong();
+		long   births       = in.getLong();
+		long   eats         = in.getLong();
+		long   moves        = in.getLong();
+		int    lastID       = in.getInt();
+		long   randState    = in.getLong();
+		int    numM         = in.getInt();
+		int    numB         = in.getInt();
+		if(numCells <= 0 || numM < 0 || numB < 0)
+		{
+			throw new IOException("corrupt checkpoint");
+		}
 
-		while(true)
+		Simulation sim = new Simulation(numCells, guiCellWidth, 0, 0, maxTime,
+			new StreamRandom(randState));
+		sim.time      = time;
+		sim.numEvents = numEvents;
+		sim.statistics.restore(births, eats, moves);
+
+		// the agents' constructors draw their first event times, which are
+		// overwritten here, so they draw from a scratch stream
+		RandomGenerator scratch = new StreamRandom(0);
+		Agent[] agents = new Agent[numM + numB];
+		for (int i = 0; i < agents.length; i++)
 		{
-			time = driver.get(0).getNextTime();
-			//System.out.println("****************** BEGIN EVENT ******************");
-			//printDriver();
-			//System.out.println("Time is:\t" + time);
-			if(driver.get(0).getType() == Agent.AgentType.BACTERIUM)
+			Agent a = (i < numM) ? new Macrophage(sim.store, scratch)
+			                     : new Bacteria(sim.store, scratch);
+			sim.store.setID(a.getSlot(), in.getInt());
+			int row = in.getInt();
+			int col = in.getInt();
+			if(row < 0 || row >= numCells || col < 0 || col >= numCells)
 			{
-				Bacteria b = (Bacteria)driver.get(0);
-			//	System.out.println("Handling Bacteria:\t" + b.getID());
+				throw new IOException("corrupt checkpoint");
+			}
+			a.setRowCol(row, col);
+			sim.store.setNextMove(a.getSlot(), in.getDouble());
+			sim.store.setNextAction(a.getSlot(), in.getDouble());
+			boolean onGrid = (in.getByte() != 0);
 
-				if(b.isMoveNextEvent())
-				{
-					//System.out.println("Move event...");
-					Cell newCell = b.calculateMove(landscape); 
-				landscape[b.getRow()][b.getCol()].removeBacteria(); // remove agent from landscape
-				newCell.occupy(b);
-				b.scheduleNextMove(time); //bacteria might get away!
-				updateEventList(b);       //update event list
-
-				if(newCell.hasMacrophage())
-				{      
-					/*SCHEDULE EAT*/
-					Macrophage m = newCell.getMacrophage(); //bacteria moved into a macrophage cell.. yum yum
-			//		System.out.println("Scheduling eat by:\t" + m.getID());
-					m.scheduleEat(time);
-					updateEventList(m);
-				}
-			}		
-				else // divide event
-				{
-			//		System.out.println("Divide event...");
-					b.scheduleNextDivide(time);
-					Cell newCell = b.calculateMove(landscape); 
-					updateEventList(b);
-
-					if (! (newCell.getRow() == b.getRow() && newCell.getCol() == b.getCol())) 
-					{
-						Bacteria newB = new Bacteria(newCell.getRow(), newCell.getCol());
-						bacteriaList.add(newB);
-						newCell.occupy(newB);
-						newB.scheduleNextMove(time); //bacteria might get away!
-						newB.scheduleNextDivide(time);
-						updateEventList(newB);
-
-						if(newCell.hasMacrophage())
-						{      
-							/*SCHEDULE EAT*/
-							Macrophage m = newCell.getMacrophage(); //bacteria moved into a macrophage cell.. yum yum
-			//				System.out.println("Scheduling eat by:\t" + m.getID());
-							m.scheduleEat(time);
-							updateEventList(m);
-						}
-					}
-				}
+			if(i < numM)
+			{
+				sim.macrophageList.add((Macrophage)a);
+				if(onGrid) sim.landscape.occupy(sim.landscape.index(row, col), (Macrophage)a);
 			}
-			else // Agent is a MACROPHAGE
+			else
 			{
-				Macrophage m = (Macrophage)driver.get(0);
-			//	System.out.println("Handling Macrophage:\t" + m.getID());
+				sim.bacteriaList.add((Bacteria)a);
+				if(onGrid) sim.landscape.occupy(sim.landscape.index(row, col), (Bacteria)a);
+			}
+			agents[i] = a;
+		}
+		sim.store.setLastID(lastID);
 
-				if(m.isMoveNextEvent())
-				{
-			//		System.out.println("Move event...");
-					Cell newCell = m.calculateMove(landscape);
-					landscape[m.getRow()][m.getCol()].removeMacrophage(); // remove agent from landscape
-					newCell.occupy(m);
-
-					//Macrophage moved into cell where bacteria is
-					if(newCell.hasBacteria())
-					{      
-						/*SCHEDULE EAT*/
-						Macrophage m1 = newCell.getMacrophage(); 
-			//			System.out.println("Scheduling eat by:\t" + m1.getID());
-						m1.scheduleEat(time);
-						updateEventList(m1);
-					}
-
-					m.scheduleNextMove(time);
-				}
-				else // eat event
-				{
-			//		System.out.println("Attempting to eat bacteria...");
-					Cell currentCell = landscape[m.getRow()][m.getCol()];
-					if(currentCell.hasBacteria())
-					{
-						Bacteria b = currentCell.getBacteria();
-			//			System.out.println("Eating bacteria: " + b.getID());
+		int numScheduled = in.getInt();
+		if(numScheduled < 0 || numScheduled > agents.length)
+		{
+			throw new IOException("corrupt checkpoint");
+		}
+		int[] order = new int[numScheduled];
+		for (int i = 0; i < numScheduled; i++)
+		{
+			order[i] = in.getInt();
+			if(order[i] < 0 || order[i] >= agents.length)
+			{
+				throw new IOException("corrupt checkpoint");
+			}
+		}
+		for (int i = numScheduled - 1; i >= 0; i--)
+		{
+			sim.schedule(agents[order[i]]); // later updates win ties
+		}
+		return sim;
+	}
 
+	/**************************************************************************
+	 * Tells whether another event is scheduled at or before maxTime.
+	 * @return true if the engine has an event left to process
+	 **************************************************************************/
+	private boolean hasNextEvent()
+	{
+		return !driver.isEmpty() && driver.peek().getTime() <= maxTime;
+	}
 
-					  currentCell.removeBacteria(); // from landscape... does this work?
+	/**************************************************************************
+	 * Processes the next event in the event list, first reporting any
+	 * statistics samples due before it, and timing it if metrics are on.
+	 **************************************************************************/
+	private void processNextEvent()
+	{
+		Event next = driver.peek();
+		sampleThrough(next.getTime()); // counts as they stood before
+		if(metrics == null)
+		{
+			handleNextEvent();
+			return;
+		}
 
+		EventKind kind = next.getKind();
+		long start = System.nanoTime();
+		handleNextEvent();
+		metrics.eventProcessed(kind, System.nanoTime() - start, driver.size());
+	}
 
-					  driver.remove(b); // from event list
-					  bacteriaList.remove(b); // from list of bacteria
-					}
+	/**************************************************************************
+	 * Advances the clock to the next event and hands it to the handler for
+	 * its kind.  The event stays at the head of the queue while the handler
+	 * runs, and the handler's schedule() of its agent moves it on to the
+	 * agent's next time: one sift down in an EventHeap.
+	 **************************************************************************/
+	private void handleNextEvent()
+	{
+		Event e = driver.peek();
+		time = e.getTime();
+		//System.out.println("****************** BEGIN EVENT ******************");
+		//printDriver();
+		//System.out.println("Time is:\t" + time);
+		handlers[e.getKind().ordinal()].handle(e);
+		numEvents++;
+	}
 
-					m.scheduleEat(Double.MAX_VALUE);
-				}
+	private void moveBacterium(Event e)
+	{
+		Bacteria b = (Bacteria)e.getAgent();
+		//System.out.println("Handling Bacteria:\t" + b.getID());
+		int oldCell = landscape.index(b.getRow(), b.getCol());
+		int newCell = b.calculateMove(landscape, neighborhood, rand); 
+		landscape.removeBacteria(oldCell); // remove agent from landscape
+		landscape.occupy(newCell, b);
+		b.scheduleNextMove(time, rand); //bacteria might get away!
+		schedule(b);                    //update event list
+		if(sink != null) sink.event(time, EventKind.BACTERIUM_MOVE, b.getID(), oldCell, newCell);
+		cellChanged(oldCell);
+		cellChanged(newCell);
+		statistics.countMove();
+
+		if(landscape.hasMacrophage(newCell))
+		{      
+			/*SCHEDULE EAT*/
+			Macrophage m = landscape.getMacrophage(newCell); //bacteria moved into a macrophage cell.. yum yum
+			m.scheduleEat(time);
+			schedule(m);
+		}
+	}
 
-				updateEventList(m);
+	private void divide(Event e)
+	{
+		Bacteria b = (Bacteria)e.getAgent();
+		b.scheduleNextDivide(time, rand);
+		int newCell = b.calculateMove(landscape, neighborhood, rand); 
+		schedule(b);
+
+		int oldCell = landscape.index(b.getRow(), b.getCol());
+		if (newCell != oldCell) 
+		{
+			Bacteria newB = new Bacteria(store, rand, landscape.rowOf(newCell), landscape.colOf(newCell));
+			bacteriaList.add(newB);
+			landscape.occupy(newCell, newB);
+			newB.scheduleNextMove(time, rand); //bacteria might get away!
+			newB.scheduleNextDivide(time, rand);
+			schedule(newB);
+			if(sink != null) sink.event(time, EventKind.DIVIDE, newB.getID(), oldCell, newCell);
+			cellChanged(newCell);
+			statistics.countBirth();
+
+			if(landscape.hasMacrophage(newCell))
+			{      
+				/*SCHEDULE EAT*/
+				Macrophage m = landscape.getMacrophage(newCell); //bacteria moved into a macrophage cell.. yum yum
+				m.scheduleEat(time);
+				schedule(m);
 			}
+		}
+		else if(sink != null)
+		{
+			sink.event(time, EventKind.DIVIDE, b.getID(), oldCell, oldCell); // no room
+		}
+	}
 
-			// remember to update the gui
-			gui.update(guiDelay);
-		//	System.out.println("******************* END EVENT *******************");
-		//	System.out.println();
+	private void moveMacrophage(Event e)
+	{
+		Macrophage m = (Macrophage)e.getAgent();
+		//System.out.println("Handling Macrophage:\t" + m.getID());
+		int oldCell = landscape.index(m.getRow(), m.getCol());
+		int newCell = m.calculateMove(landscape, neighborhood, rand);
+		landscape.removeMacrophage(oldCell); // remove agent from landscape
+		landscape.occupy(newCell, m);
+		if(sink != null) sink.event(time, EventKind.MACROPHAGE_MOVE, m.getID(), oldCell, newCell);
+		cellChanged(oldCell);
+		cellChanged(newCell);
+		statistics.countMove();
+
+		//Macrophage moved into cell where bacteria is
+		if(landscape.hasBacteria(newCell))
+		{      
+			/*SCHEDULE EAT*/
+			m.scheduleEat(time);
+		}
+
+		m.scheduleNextMove(time, rand);
+		schedule(m); // the eat first, if there is one
+	}
+
+	private void eat(Event e)
+	{
+		Macrophage m = (Macrophage)e.getAgent();
+		//System.out.println("Attempting to eat bacteria...");
+		int currentCell = landscape.index(m.getRow(), m.getCol());
+		if(sink != null) sink.event(time, EventKind.EAT, m.getID(), currentCell, currentCell);
+		cellChanged(currentCell);
+		if(landscape.hasBacteria(currentCell))
+		{
+			Bacteria b = landscape.getBacteria(currentCell);
+			//System.out.println("Eating bacteria: " + b.getID());
+			landscape.removeBacteria(currentCell); // from landscape
+			driver.remove(b.getEvent()); // from event list
+			bacteriaList.remove(b); // from list of bacteria, O(1)
+			b.release();            // slot goes back to the store for reuse
+			statistics.countEat();
 		}
 
+		m.scheduleEat(Double.MAX_VALUE); // not queued until something else is there to eat
+		schedule(m);                     // its next move
 	}
 
 	public void printDriver()
 	{
 		System.out.println("------------------------Driver----------------------");
-		for(int i = 0; i < driver.size(); i++)
+		ArrayList<Event> events = driver.toList();
+		for(int i = 0; i < events.size(); i++)
 		{
-			System.out.println(driver.get(i).getType() + " " + driver.get(i).getID() + ": \t Next event time: " + driver.get(i).getNextTime() + "\t [" + driver.get(i).nextEvents[0] + ", " + driver.get(i).nextEvents[1] + "]");
+			Event e = events.get(i);
+			System.out.println(e.getKind() + " " + e.getAgent().getID() + ": \t Event time: " + e.getTime());
 		}
 		System.out.println("------------------------Driver-end------------------");
 	}
@@ -261,7 +727,10 @@ public class Simulation extends SimulationManager
 		{
 			for(int j = 0; j < numCells; j++)
 			{
-				System.out.print(landscape[i][j] + "\t");
+				int cell = landscape.index(i, j);
+				if(landscape.hasMacrophage(cell))   System.out.print("M");
+				else if(landscape.hasBacteria(cell)) System.out.print("B");
+				else                                 System.out.print(".");
 			}
 			System.out.println();
 		}
@@ -285,6 +754,18 @@ public class Simulation extends SimulationManager
 	 **************************************************************************/
 	public double getTime()        { return(time); }
 
+	/**************************************************************************
+	 * Accessor method that returns the number of rows (same as columns).
+	 * @return an integer representing the size of the landscape
+	 **************************************************************************/
+	public int getNumCells()       { return(numCells); }
+
+	/**************************************************************************
+	 * Accessor method that returns the number of events processed so far.
+	 * @return a long representing the number of events handled by the engine
+	 **************************************************************************/
+	public long getNumEvents()     { return(numEvents); }
+
 	/**************************************************************************
 	 * Method that constructs and returns a single list of all agents present.
 	 * This method is used by the gui drawing routines to update the gui based
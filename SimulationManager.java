@@ -16,6 +16,23 @@ public abstract class SimulationManager
     protected int       numCells;      // num cells in landscape/gui
     protected int       guiCellWidth;  // width of gui cell in landscape
 
+    // hand-off of agent snapshots from the engine thread to the gui: the gui
+    // raises the request flag, and the engine answers between two events
+    private volatile boolean       snapshotRequested = true;
+    private volatile AgentSnapshot snapshot          = null;
+    private long                   snapshotSequence  = 0;
+
+    // cells changed since the last snapshot, if the engine reports them
+    private DirtyCells dirtyCells = null;
+
+    // default simulated time between samples of the agent counts
+    public static final double DEFAULT_SAMPLE_INTERVAL = 0.1;
+
+    // running counts, sampled on simulation time for any listeners
+    protected final Statistics statistics = new Statistics(this);
+
+    // agent counts sampled for the time series window, null if not recorded
+    private volatile TimeSeries timeSeries = null;
 
     /**************************************************************************
      * Constructor for an (abstract) SimulationManager.  Primarily this ensures
@@ -35,7 +52,116 @@ public abstract class SimulationManager
 //        this.gui        = new AgentGUI(this, numCells, guiCellWidth);
     }
 
+    /**************************************************************************
+     * Accessor method, safe to call from any thread (in particular the gui's
+     * event dispatch thread), returning the most recently published snapshot
+     * of the agents.
+     * @return the latest AgentSnapshot, or null if none has been published yet
+     **************************************************************************/
+    public AgentSnapshot getSnapshot() { return(snapshot); }
+
+    /**************************************************************************
+     * Method, safe to call from any thread, asking the engine to publish a
+     * fresh snapshot the next time it is between two events.
+     **************************************************************************/
+    public void requestSnapshot() { snapshotRequested = true; }
+
+    /**************************************************************************
+     * Method to be called by the engine thread between events: publishes a
+     * new snapshot only if the gui has asked for one since the last, so the
+     * copying cost is paid once per frame rather than once per event.
+     **************************************************************************/
+    protected void publishSnapshotIfRequested()
+    {
+        if (snapshotRequested)
+            publishSnapshot();
+    }
+
+    /**************************************************************************
+     * Method to be called by the engine thread to publish a snapshot of the
+     * current state unconditionally (e.g., when the run has finished).
+     **************************************************************************/
+    protected void publishSnapshot()
+    {
+        snapshotRequested = false;
+        int[] changed = (dirtyCells == null) ? null : dirtyCells.drain();
+        snapshot = new AgentSnapshot(this, ++snapshotSequence, changed);
+    }
+
+    /**************************************************************************
+     * Method to be called by an engine that reports the cells its events
+     * change (see cellChanged()), before it publishes its first snapshot.
+     * Snapshots then carry the cells changed since the previous one, and
+     * the gui redraws only those; otherwise every snapshot is redrawn whole.
+     **************************************************************************/
+    protected void trackChangedCells()
+    {
+        if (dirtyCells == null)
+            dirtyCells = new DirtyCells(numCells * numCells);
+    }
+
+    /**************************************************************************
+     * Method to be called by the engine thread for every cell an event
+     * changes.  Does nothing unless trackChangedCells() was called.
+     * @param cell  the cell index (row * numCells + col)
+     **************************************************************************/
+    protected final void cellChanged(int cell)
+    {
+        if (dirtyCells != null)
+            dirtyCells.mark(cell);
+    }
+
     // ************************************************************************
+    /**************************************************************************
+     * Accessor method returning the simulation's running statistics, to
+     * which listeners can be added (see Statistics.addListener()).
+     * @return the statistics
+     **************************************************************************/
+    public Statistics getStatistics() { return(statistics); }
+
+    /**************************************************************************
+     * Method to start recording the numbers of macrophages (series 0) and
+     * bacteria (series 1) every interval units of simulated time, from the
+     * current time on, for the time series window.  Must be called before
+     * the run starts.
+     * @param interval  simulated time between samples
+     **************************************************************************/
+    public void recordTimeSeries(double interval)
+    {
+        double first = Math.ceil(getTime() / interval) * interval;
+        final TimeSeries series = new TimeSeries(2, TimeSeries.DEFAULT_CAPACITY,
+                                                 interval, first);
+        final int[] sample = new int[2];
+        statistics.addListener(new StatisticsListener()
+        {
+            public void sampled(double time, Statistics stats)
+            {
+                sample[0] = stats.getNumMacrophages();
+                sample[1] = stats.getNumBacteria();
+                series.add(sample);
+            }
+        }, interval);
+        timeSeries = series;
+    }
+
+    /**************************************************************************
+     * Accessor method, safe to call from any thread, returning the recorded
+     * agent counts.
+     * @return the time series, or null if none is being recorded
+     **************************************************************************/
+    public TimeSeries getTimeSeries() { return(timeSeries); }
+
+    /**************************************************************************
+     * Method to be called by the engine thread with the time of each event
+     * before processing it, and with the end time once the run is over, so
+     * that statistics listeners hear of every sample time up to t.
+     * @param t  time of the next event, or the end of the run
+     **************************************************************************/
+    protected final void sampleThrough(double t)
+    {
+        statistics.sampleThrough(t);
+    }
+
     // BELOW: abstract signatures for methods an extending class must implement
     // ************************************************************************
 
@@ -0,0 +1,171 @@
+import java.util.*;
+
+/**
+ * This class keeps the running statistics of a simulation -- the current
+ * numbers of macrophages and bacteria, and the numbers of births, eats and
+ * moves so far -- each in O(1) per event, and hands them to listeners at
+ * exact points of simulated time.
+ *
+ * Every listener has its own sample interval.  The engine calls
+ * sampleThrough() with the time of each event before processing it; every
+ * sample time up to then is reported with the statistics as they stood
+ * (nothing changes between events), so samples are neither skipped nor
+ * repeated however sparse or bursty the events are.  Between sample times
+ * this costs one comparison per event.
+ *
+ * ParallelSimulation and SteppedSimulation handle a whole window or step
+ * at once, so they call sampleThrough() only with the start of each one.
+ * A sample time inside a window is then reported when the window is
+ * over, and the statistics also include that window's events after it:
+ * samples are still neither skipped nor repeated, but may be ahead by up
+ * to one window or step.  Only Simulation's samples are exact.
+ *
+ * Statistics are updated and reported on the engine thread, and should be
+ * read there too, e.g. in a listener; the counts are plain fields, to keep
+ * counting as cheap as possible.
+ */
+public class Statistics
+{
+	private final SimulationManager simulation; // for the population counts
+
+	private long births;  // bacteria born from divides
+	private long eats;    // bacteria eaten
+	private long moves;   // moves by any agent
+
+	private Sampler[] samplers = new Sampler[0];
+	private double    nextDue  = Double.POSITIVE_INFINITY; // earliest sample time
+
+	// one listener, and the index of its next sample time
+	private static final class Sampler
+	{
+		final StatisticsListener listener;
+		final double interval;
+		long next;
+
+		Sampler(StatisticsListener listener, double interval, long next)
+		{
+			this.listener = listener;
+			this.interval = interval;
+			this.next     = next;
+		}
+
+		double due() { return next * interval; }
+	}
+
+	/**************************************************************************
+	 * Constructs the statistics of a simulation, all counts zero.
+	 * @param simulation  the simulation whose populations are reported
+	 **************************************************************************/
+	public Statistics(SimulationManager simulation)
+	{
+		this.simulation = simulation;
+	}
+
+	// called by the engine for every event of the kind
+	public void countBirth() { births++; }
+	public void countEat()   { eats++; }
+	public void countMove()  { moves++; }
+
+	/**************************************************************************
+	 * Adds counts gathered elsewhere, e.g. by the regions of a
+	 * ParallelSimulation, to the running totals.
+	 **************************************************************************/
+	public void add(long births, long eats, long moves)
+	{
+		this.births += births;
+		this.eats   += eats;
+		this.moves  += moves;
+	}
+
+	// sets the totals of a restored checkpoint
+	void restore(long births, long eats, long moves)
+	{
+		this.births = births;
+		this.eats   = eats;
+		this.moves  = moves;
+	}
+
+	public int getNumMacrophages() { return(simulation.getNumMacrophages()); }
+	public int getNumBacteria()    { return(simulation.getNumBacteria()); }
+	public long getBirths()        { return(births); }
+	public long getEats()          { return(eats); }
+	public long getMoves()         { return(moves); }
+
+	/**************************************************************************
+	 * Registers a listener to be told the statistics every interval units
+	 * of simulated time, starting from the first multiple of the interval
+	 * not before the simulation's current time.  Must be called before the
+	 * run starts, or from the engine thread.
+	 *
+	 * @param listener  the listener
+	 * @param interval  simulated time between samples
+	 **************************************************************************/
+	public void addListener(StatisticsListener listener, double interval)
+	{
+		if(!(interval > 0))
+		{
+			throw new IllegalArgumentException("sample interval must be positive");
+		}
+		long first = (long)Math.ceil(simulation.getTime() / interval);
+		samplers = Arrays.copyOf(samplers, samplers.length + 1);
+		samplers[samplers.length - 1] = new Sampler(listener, interval, first);
+		nextDue = Math.min(nextDue, first * interval);
+	}
+
+	/**************************************************************************
+	 * Unregisters a listener; does nothing if it is not registered.
+	 * @param listener  the listener
+	 **************************************************************************/
+	public void removeListener(StatisticsListener listener)
+	{
+		for (int i = 0; i < samplers.length; i++)
+		{
+			if(samplers[i].listener == listener)
+			{
+				Sampler[] rest = new Sampler[samplers.length - 1];
+				System.arraycopy(samplers, 0, rest, 0, i);
+				System.arraycopy(samplers, i + 1, rest, i, rest.length - i);
+				samplers = rest;
+				break;
+			}
+		}
+		nextDue = earliestDue();
+	}
+
+	/**************************************************************************
+	 * Reports, in time order, every sample time up to and including t that
+	 * has not been reported yet.  Called by the engine with the time of
+	 * each event before processing it (or with the start of each window or
+	 * step), and with the end time once the run is over.
+	 * @param t  time of the next event, window or step, or the end of the run
+	 **************************************************************************/
+	public void sampleThrough(double t)
+	{
+		if(t < nextDue)
+		{
+			return;
+		}
+		while(nextDue <= t)
+		{
+			for (Sampler s : samplers)
+			{
+				if(s.due() == nextDue)
+				{
+					s.listener.sampled(nextDue, this);
+					s.next++;
+				}
+			}
+			nextDue = earliestDue();
+		}
+	}
+
+	private double earliestDue()
+	{
+		double due = Double.POSITIVE_INFINITY;
+		for (Sampler s : samplers)
+		{
+			due = Math.min(due, s.due());
+		}
+		return due;
+	}
+}
@@ -0,0 +1,21 @@
+/**
+ * This interface is implemented by anything that wants the statistics of a
+ * run (see Statistics) at regular points of simulated time, with or without
+ * a gui -- e.g. the time series window, or a StatisticsPrinter in a
+ * headless run.  It is called on the engine thread, between two events.
+ */
+public interface StatisticsListener
+{
+	/**************************************************************************
+	 * Reports the statistics as they stood at a sample time.  With
+	 * Simulation, every event before that time has been counted, and none
+	 * after it.  ParallelSimulation and SteppedSimulation only sample
+	 * between windows or steps, so there the count also takes in the
+	 * events from the sample time to the end of its window or step: a
+	 * sample may run ahead of its time by up to one window or step.
+	 *
+	 * @param time   the sample time, a multiple of the listener's interval
+	 * @param stats  the statistics; read them now, they keep changing
+	 **************************************************************************/
+	public void sampled(double time, Statistics stats);
+}
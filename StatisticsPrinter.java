@@ -0,0 +1,28 @@
+import java.io.*;
+
+/**
+ * This class prints every sample of a run's statistics (see Statistics) as
+ * a line of comma-separated values, after a header line naming the columns:
+ *
+ *     time,macrophages,bacteria,births,eats,moves
+ */
+public class StatisticsPrinter implements StatisticsListener
+{
+	private final PrintStream out;
+
+	/**************************************************************************
+	 * Constructs a printer and prints the header line.
+	 * @param out  where to print, e.g. System.out
+	 **************************************************************************/
+	public StatisticsPrinter(PrintStream out)
+	{
+		this.out = out;
+		out.println("time,macrophages,bacteria,births,eats,moves");
+	}
+
+	public void sampled(double time, Statistics stats)
+	{
+		out.println(time + "," + stats.getNumMacrophages() + "," + stats.getNumBacteria()
+			+ "," + stats.getBirths() + "," + stats.getEats() + "," + stats.getMoves());
+	}
+}
@@ -0,0 +1,283 @@
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class checks the approximate SteppedSimulation against the exact
+ * Simulation.  It runs replications of one scenario with both engines, from
+ * the same seeds, samples the bacteria population of every run at fixed
+ * intervals of simulated time, and compares the mean curves: at each sample
+ * time it prints both means and standard deviations, the relative
+ * difference, and the difference in standard errors (z).  Macrophages
+ * neither die nor divide, so their curve is flat in both and not shown.
+ *
+ * The engines agree if at every sample time the means are either no more
+ * than Z_LIMIT standard errors apart, so that the replications cannot tell
+ * them apart, or within TOLERANCE of the exact mean, a bias too small to
+ * matter (a landscape filled to capacity varies so little between runs
+ * that even that much stands out); the exit status is then 0, and 1
+ * otherwise.  With a hundred or so correlated sample times, a few beyond 2
+ * standard errors are expected by chance.
+ *
+ * Usage: java StepValidation [file.properties] [key=value ...]
+ *
+ * The keys are those of Scenario (see Launcher), except that replications
+ * defaults to 20, step to SteppedSimulation.DEFAULT_STEP and sample to 1;
+ * both engines run single-threaded, replications going concurrently on
+ * `threads` threads.
+ */
+public class StepValidation
+{
+	public static final double Z_LIMIT   = 4.0;   // standard errors the means may differ by
+	public static final double TOLERANCE = 0.02;  // or fraction of the exact mean
+
+	// one run's bacteria curve, totals and wall time
+	private static final class Run
+	{
+		final int[] bacteria;
+		long births, eats, moves;
+		double seconds;
+
+		Run(int numSamples)
+		{
+			bacteria = new int[numSamples];
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		Map<String, String> params = Scenario.defaults();
+		params.put("replications", "20");
+		params.put("step",         Double.toString(SteppedSimulation.DEFAULT_STEP));
+		params.put("sample",       "1");
+		Scenario scenario;
+		try
+		{
+			int first = 0;
+			if(args.length > 0 && args[0].indexOf('=') < 0)
+			{
+				Scenario.load(params, Paths.get(args[0]));
+				first = 1;
+			}
+			for (int i = first; i < args.length; i++)
+			{
+				Scenario.set(params, args[i]);
+			}
+			List<Scenario> scenarios = Scenario.expand(params);
+			if(scenarios.size() > 1)
+			{
+				throw new IllegalArgumentException("validation takes one scenario, not a sweep");
+			}
+			scenario = scenarios.get(0);
+			if(!(scenario.getStep() > 0))
+			{
+				throw new IllegalArgumentException("step must be positive");
+			}
+		}
+		catch(IllegalArgumentException e)
+		{
+			System.err.println(e.getMessage());
+			System.err.println("usage: java StepValidation [file.properties] [key=value ...]");
+			System.exit(2);
+			return;
+		}
+
+		List<Run> exact   = new ArrayList<Run>();
+		List<Run> stepped = new ArrayList<Run>();
+		runAll(scenario, exact, stepped);
+		boolean agree = printComparison(scenario, exact, stepped, System.out);
+		System.exit(agree ? 0 : 1);
+	}
+
+	// runs every replication with both engines on a fixed pool of threads
+	private static void runAll(final Scenario scenario, List<Run> exact, List<Run> stepped)
+		throws InterruptedException, ExecutionException
+	{
+		List<Callable<Run>> tasks = new ArrayList<Callable<Run>>();
+		for (int r = 0; r < scenario.getReplications(); r++)
+		{
+			final long seed = scenario.seedFor(r);
+			tasks.add(new Callable<Run>()
+			{
+				public Run call() throws Exception
+				{
+					Simulation s = new Simulation(scenario.getNumCells(), 0,
+						scenario.getNumMacrophages(), scenario.getNumBacteria(),
+						scenario.getMaxTime(), seed);
+					Run run = record(s, scenario);
+					long start = System.nanoTime();
+					s.runToEnd();
+					run.seconds = (System.nanoTime() - start) / 1e9;
+					return totals(run, s);
+				}
+			});
+			tasks.add(new Callable<Run>()
+			{
+				public Run call() throws Exception
+				{
+					SteppedSimulation s = new SteppedSimulation(scenario.getNumCells(), 0,
+						scenario.getNumMacrophages(), scenario.getNumBacteria(),
+						scenario.getMaxTime(), seed, 1, scenario.getStep());
+					Run run = record(s, scenario);
+					long start = System.nanoTime();
+					s.runToEnd();
+					run.seconds = (System.nanoTime() - start) / 1e9;
+					return totals(run, s);
+				}
+			});
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(scenario.getNumThreads());
+		try
+		{
+			List<Future<Run>> futures = pool.invokeAll(tasks);
+			for (int i = 0; i < futures.size(); i += 2)
+			{
+				exact.add(futures.get(i).get());
+				stepped.add(futures.get(i + 1).get());
+			}
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	// makes a run that records the simulation's bacteria every sample interval
+	private static Run record(SimulationManager sim, Scenario scenario)
+	{
+		final double interval = scenario.getSampleInterval();
+		final Run    run      = new Run((int)Math.floor(scenario.getMaxTime() / interval) + 1);
+		sim.getStatistics().addListener(new StatisticsListener()
+		{
+			public void sampled(double time, Statistics stats)
+			{
+				int k = (int)Math.round(time / interval);
+				if(k < run.bacteria.length)
+				{
+					run.bacteria[k] = stats.getNumBacteria();
+				}
+			}
+		}, interval);
+		return run;
+	}
+
+	private static Run totals(Run run, SimulationManager sim)
+	{
+		Statistics stats = sim.getStatistics();
+		run.births = stats.getBirths();
+		run.eats   = stats.getEats();
+		run.moves  = stats.getMoves();
+		return run;
+	}
+
+	/**************************************************************************
+	 * Prints the mean bacteria curves of both engines side by side, then the
+	 * mean totals and run times, and tells whether the curves agree.
+	 *
+	 * @param scenario  the scenario both engines ran
+	 * @param exact     the runs of Simulation
+	 * @param stepped   the runs of SteppedSimulation, same seeds in the same order
+	 * @param out       where to print
+	 * @return true if no sample time differs by more than Z_LIMIT standard
+	 *         errors and more than TOLERANCE
+	 **************************************************************************/
+	private static boolean printComparison(Scenario scenario, List<Run> exact,
+		List<Run> stepped, PrintStream out)
+	{
+		int n = exact.size();
+		out.println("Replications: " + n + "    step: " + scenario.getStep()
+			+ "    cells: " + scenario.getNumCells() + "    macrophages: "
+			+ scenario.getNumMacrophages() + "    bacteria: " + scenario.getNumBacteria());
+		out.println();
+		out.println("time\texact(mean)\texact(sd)\tstepped(mean)\tstepped(sd)\tdiff(%)\tz");
+
+		double maxZ = 0, worstTime = 0, maxDiff = 0;
+		int    within2 = 0;
+		boolean agree = true;
+		int    numSamples = exact.get(0).bacteria.length;
+		double interval   = scenario.getSampleInterval();
+		for (int k = 0; k < numSamples; k++)
+		{
+			double[] e = new double[n];
+			double[] s = new double[n];
+			for (int i = 0; i < n; i++)
+			{
+				e[i] = exact.get(i).bacteria[k];
+				s[i] = stepped.get(i).bacteria[k];
+			}
+			double meanE = mean(e), sdE = sd(e, meanE);
+			double meanS = mean(s), sdS = sd(s, meanS);
+			double se    = Math.sqrt((sdE * sdE + sdS * sdS) / n);
+			double z     = (se > 0) ? (meanS - meanE) / se : (meanS == meanE ? 0 : Double.POSITIVE_INFINITY);
+			double diff  = (meanE > 0) ? 100 * (meanS - meanE) / meanE : 0;
+			if(Math.abs(z) <= 2)
+			{
+				within2++;
+			}
+			if(Math.abs(z) > Z_LIMIT && Math.abs(meanS - meanE) > TOLERANCE * meanE)
+			{
+				agree = false;
+			}
+			maxDiff = Math.max(maxDiff, Math.abs(diff));
+			if(Math.abs(z) > maxZ)
+			{
+				maxZ      = Math.abs(z);
+				worstTime = k * interval;
+			}
+			out.printf(Locale.ROOT, "%.2f\t%.1f\t%.1f\t%.1f\t%.1f\t%+.1f\t%+.2f%n",
+				k * interval, meanE, sdE, meanS, sdS, diff, z);
+		}
+
+		out.println();
+		printTotals(out, "Exact",   exact);
+		printTotals(out, "Stepped", stepped);
+		double secsE = 0, secsS = 0;
+		for (int i = 0; i < n; i++)
+		{
+			secsE += exact.get(i).seconds;
+			secsS += stepped.get(i).seconds;
+		}
+		out.printf(Locale.ROOT, "Run time: exact %.3f s, stepped %.3f s per replication (%.2fx)%n",
+			secsE / n, secsS / n, secsE / Math.max(secsS, 1e-9));
+		out.printf(Locale.ROOT, "Samples within 2 standard errors: %d of %d; largest |z| %.2f at time %.2f;"
+			+ " largest difference %.1f%%%n", within2, numSamples, maxZ, worstTime, maxDiff);
+
+		out.println(agree ? "Curves agree (|z| <= " + Z_LIMIT + " or within " + (100 * TOLERANCE) + "% everywhere)"
+		                  : "Curves DIFFER (|z| > " + Z_LIMIT + " and off by more than " + (100 * TOLERANCE) + "%)");
+		return agree;
+	}
+
+	private static void printTotals(PrintStream out, String label, List<Run> runs)
+	{
+		double births = 0, eats = 0, moves = 0;
+		for (Run r : runs)
+		{
+			births += r.births;
+			eats   += r.eats;
+			moves  += r.moves;
+		}
+		int n = runs.size();
+		out.printf(Locale.ROOT, "%-8s mean births %.1f  eats %.1f  moves %.1f%n",
+			label + ":", births / n, eats / n, moves / n);
+	}
+
+	private static double mean(double[] values)
+	{
+		double sum = 0;
+		for (double v : values)
+			sum += v;
+		return sum / values.length;
+	}
+
+	private static double sd(double[] values, double mean)
+	{
+		if(values.length < 2)
+			return 0;
+		double ss = 0;
+		for (double v : values)
+			ss += (v - mean) * (v - mean);
+		return Math.sqrt(ss / (values.length - 1));
+	}
+}
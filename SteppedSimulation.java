@@ -0,0 +1,789 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.random.RandomGenerator;
+import javax.swing.SwingUtilities;
+
+/**
+ * This class implements an approximate, time-stepped engine for landscapes
+ * crowded with bacteria, where even a perfect event queue leaves the exact
+ * engines handling one event at a time.  Simulated time advances in steps
+ * of fixed width, and every agent with a move or divide due before the end
+ * of a step takes it in that step, all together:
+ *
+ *   1. propose: every agent due picks its target cell from the landscape as
+ *      it stood at the start of the step, exactly as Simulation would pick
+ *      it, and draws the time of its next move or divide from its own event
+ *      time, so the agents' event rates are those of the exact engine.  The
+ *      candidate cells come from NeighborMasks: those of the whole strip at
+ *      once, where they are vectorised and enough of its cells have agents
+ *      due, and otherwise those of each due agent's cell alone;
+ *   2. resolve: a bacterium or offspring heading for a macrophage's cell is
+ *      eaten on arrival, which leaves the cell free for the next, as in
+ *      Simulation.  Other proposals for the same cell of one layer
+ *      (macrophages, or bacteria and their offspring) are contested, and
+ *      the one with the earliest event time -- the one Simulation would
+ *      have handled first -- takes the cell;
+ *   3. apply: the winners move, and offspring are born into their cells.
+ *      The losers pick again from the landscape as it now stands, as they
+ *      would have found it in Simulation, and steps 2 and 3 are repeated
+ *      for up to MAX_RETRIES rounds; any still left stay where they are,
+ *      as an agent with no free neighbour does;
+ *   4. eat: every cell left holding both a macrophage and a bacterium loses
+ *      the bacterium.
+ *
+ * The landscape is cut into strips of STRIP_ROWS rows.  Proposals, moves
+ * and eats run strip by strip on a pool of threads; strips only read each
+ * other's cells while proposing, and cells are claimed through one atomic
+ * array per layer.  Births, which allocate agents, are made on the calling
+ * thread in strip order.  Each strip draws from its own random stream, so
+ * for a given seed and step the run does not depend on the number of
+ * threads.
+ *
+ * What is approximated is the order of events within a step: an agent sees
+ * the landscape as it was at the start of the step, or at the start of its
+ * round, and a bacterium on a macrophage's path is eaten only at the end of
+ * the step.  An agent takes at most one move and one divide per
+ * step and carries any further ones into the next, so the step should be
+ * well under the mean time between an agent's events (half a unit); the
+ * smaller the step, the closer the populations follow Simulation's, and
+ * StepValidation measures how close.  Every cell is visited once per step,
+ * so the engine pays off when the landscape is densely populated.
+ */
+public class SteppedSimulation extends SimulationManager
+{
+	public static final double DEFAULT_STEP = 0.05; // simulated time per step
+	public static final int    STRIP_ROWS   = 8;    // rows per strip, the unit of parallel work
+
+	private static final long UNCLAIMED = Long.MAX_VALUE;
+
+	private static final int MAX_RETRIES = 2;  // rounds in which losers pick another cell
+
+	// a strip computes the masks of all its cells at once, when they are
+	// vectorised, if it had at least one agent due per BULK_CELLS cells in
+	// the previous step; otherwise one due agent's cell at a time
+	private static final int BULK_CELLS = 4;
+
+	private static final int PROPOSE = 0;  // phases of a step run strip by strip
+	private static final int MOVE    = 1;
+	private static final int RETRY   = 2;
+	private static final int EAT     = 3;
+
+	private AgentStore store;
+	private Grid landscape;
+	private Strip[] strips;
+	private AtomicLongArray macrophageClaims; // earliest event time (as bits) claiming each cell
+	private AtomicLongArray bacteriaClaims;   //   of each layer, UNCLAIMED if none
+	private ExecutorService pool;
+	private int numThreads;
+	private double step;
+	private int numMacrophages;
+	private int numBacteria;
+	private long numEvents;        // moves, divides and eats so far
+	private final NeighborMasks masks = NeighborMasks.create();
+	private int numBlocked;        // bacteria with no neighbour to move or divide into,
+	private int numInContact;      //   and macrophages with a bacterium next to them,
+	                               //   as of the last countDensity()
+
+	/**************************************************************************
+	 * Constructs a SteppedSimulation with one thread per available processor
+	 * and the default step.
+	 *
+	 * @param numCells       number of rows and columns in the environment
+	 * @param guiCellWidth   width of each cell drawn in the gui
+	 * @param numMacrophages number of initial macrophages in the environment
+	 * @param numBacteria    number of initial bacteria in the environment
+	 * @param maxTime        simulated time at which the run ends
+	 * @param seed           master seed of this simulation's random streams
+	 **************************************************************************/
+	public SteppedSimulation(int numCells,       int guiCellWidth,
+		int numMacrophages, int numBacteria, int maxTime, long seed)
+	{
+		this(numCells, guiCellWidth, numMacrophages, numBacteria, maxTime, seed,
+			Runtime.getRuntime().availableProcessors(), DEFAULT_STEP);
+	}
+
+	/**************************************************************************
+	 * Constructs a SteppedSimulation.  The initial agents are placed, and
+	 * their first events timed, exactly as Simulation does from the same
+	 * seed; after that each strip draws from its own stream.
+	 *
+	 * @param numCells       number of rows and columns in the environment
+	 * @param guiCellWidth   width of each cell drawn in the gui
+	 * @param numMacrophages number of initial macrophages in the environment
+	 * @param numBacteria    number of initial bacteria in the environment
+	 * @param maxTime        simulated time at which the run ends
+	 * @param seed           master seed of this simulation's random streams
+	 * @param numThreads     number of worker threads
+	 * @param step           width of a step in simulated time
+	 **************************************************************************/
+	public SteppedSimulation(int numCells,       int guiCellWidth,
+		int numMacrophages, int numBacteria, int maxTime, long seed,
+		int numThreads, double step)
+	{
+		super(numCells, guiCellWidth, maxTime);
+		if(numThreads < 1 || !(step > 0))
+		{
+			throw new IllegalArgumentException("need at least one thread and a positive step");
+		}
+
+		time                = 0;
+		this.numThreads     = numThreads;
+		this.step           = step;
+		this.numMacrophages = numMacrophages;
+		this.numBacteria    = numBacteria;
+		store               = new AgentStore(numMacrophages + numBacteria);
+		landscape           = new Grid(numCells, store);
+		macrophageClaims    = newClaims(landscape.getNumCells());
+		bacteriaClaims      = newClaims(landscape.getNumCells());
+
+		RandomStreams streams = new RandomStreams(seed);
+		strips = new Strip[(numCells + STRIP_ROWS - 1) / STRIP_ROWS];
+		for (int s = 0; s < strips.length; s++)
+		{
+			strips[s] = new Strip(s * STRIP_ROWS, Math.min((s + 1) * STRIP_ROWS, numCells),
+				streams.stream(RandomStreams.MAIN + 1 + s));
+		}
+
+		// same placement as Simulation, from the main stream
+		RandomGenerator rand = streams.stream(RandomStreams.MAIN);
+		int row = 0, col = 0;
+		for (int i = 0; i < numMacrophages; i++)
+		{
+			row = rand.nextInt(numCells);
+			col = rand.nextInt(numCells);
+			while (landscape.isOccupied(landscape.index(row, col)))
+			{
+				row = rand.nextInt(numCells);
+				col = rand.nextInt(numCells);
+			}
+			Macrophage m = new Macrophage(store,rand,row,col);
+			landscape.occupy(landscape.index(row, col), m);
+		}
+
+		for (int i = 0; i < numBacteria; i++)
+		{
+			row = rand.nextInt(numCells);
+			col = rand.nextInt(numCells);
+			while (landscape.isOccupied(landscape.index(row, col)))
+			{
+				row = rand.nextInt(numCells);
+				col = rand.nextInt(numCells);
+			}
+			Bacteria b = new Bacteria(store,rand,row,col);
+			landscape.occupy(landscape.index(row, col), b);
+		}
+	}
+
+	private static AtomicLongArray newClaims(int numCells)
+	{
+		AtomicLongArray claims = new AtomicLongArray(numCells);
+		for (int i = 0; i < numCells; i++)
+		{
+			claims.set(i, UNCLAIMED);
+		}
+		return claims;
+	}
+
+	public double getMaxTime()
+	{
+		return maxTime;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the width of a step.
+	 * @return the simulated time advanced by each step
+	 **************************************************************************/
+	public double getStep()        { return(step); }
+
+	/**************************************************************************
+	 * Method used to run the simulation with the gui watching.  The gui is
+	 * handed a fresh snapshot between steps, when no strip is running.
+	 *
+	 * @param guiDelay  delay in seconds between redraws of the gui
+	 **************************************************************************/
+	public void run(final double guiDelay) throws InterruptedException
+	{
+		if(getTimeSeries() == null)
+		{
+			recordTimeSeries(DEFAULT_SAMPLE_INTERVAL); // for the time series dialog
+		}
+		publishSnapshot();
+		try
+		{
+			SwingUtilities.invokeAndWait(new Runnable()
+			{
+				public void run()
+				{
+					gui = new AgentGUI(SteppedSimulation.this, numCells, guiCellWidth, guiDelay);
+				}
+			});
+		}
+		catch (java.lang.reflect.InvocationTargetException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+
+		startPool();
+		try
+		{
+			while(time < maxTime)
+			{
+				sampleThrough(time); // samples include up to one step too many
+				advanceStep();
+				publishSnapshotIfRequested();
+			}
+			sampleThrough(maxTime);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		publishSnapshot(); // final state stays on screen
+	}
+
+	/**************************************************************************
+	 * Method used to run the simulation in batch mode, without constructing
+	 * an AgentGUI or any other Swing object.  Reports the final populations
+	 * and the event throughput on standard output, as Simulation does.
+	 **************************************************************************/
+	public void runHeadless()
+	{
+		long start = System.nanoTime();
+		try
+		{
+			runToEnd();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+
+		double secs = (System.nanoTime() - start) / 1e9;
+		System.out.println("Simulated time " + time + " (max " + maxTime + ")");
+		System.out.println("Macrophages: " + getNumMacrophages()
+			+ "    Bacteria: " + getNumBacteria());
+		System.out.println("Births: " + statistics.getBirths()
+			+ "    Eats: " + statistics.getEats() + "    Moves: " + statistics.getMoves());
+		countDensity();
+		System.out.println("Blocked bacteria: " + getNumBlockedBacteria()
+			+ "    Macrophages next to bacteria: " + getNumMacrophagesInContact());
+		System.out.printf("%d events in %.3f s (%.0f events/sec) on %d threads, step %s, %s masks%n",
+			numEvents, secs, numEvents / Math.max(secs, 1e-9), numThreads, step, masks);
+	}
+
+	/**************************************************************************
+	 * Method that runs the simulation to maxTime without a gui and without
+	 * printing anything, reporting the final statistics samples.
+	 * @throws InterruptedException if interrupted while strips are running
+	 **************************************************************************/
+	public void runToEnd() throws InterruptedException
+	{
+		startPool();
+		try
+		{
+			while(time < maxTime)
+			{
+				sampleThrough(time);
+				advanceStep();
+			}
+			sampleThrough(maxTime);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private void startPool()
+	{
+		pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "strip-worker");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**************************************************************************
+	 * Advances the clock by one step: every strip proposes, then moves its
+	 * winners and the winning offspring are born; the losers pick again
+	 * from the landscape as it now stands, for up to MAX_RETRIES more
+	 * rounds; and every strip does its eats.
+	 **************************************************************************/
+	private void advanceStep() throws InterruptedException
+	{
+		final double  end  = Math.min(time + step, maxTime);
+		final boolean last = (end >= maxTime); // the last step includes maxTime itself
+
+		runPhase(PROPOSE, end, last);
+		for (int round = 0; ; round++)
+		{
+			runPhase(MOVE, end, last);
+			int losers = 0;
+			for (Strip strip : strips)
+			{
+				strip.giveBirth();
+				losers += strip.numProposals;
+			}
+			if(losers == 0 || round == MAX_RETRIES)
+			{
+				break;
+			}
+			runPhase(RETRY, end, last);
+		}
+		runPhase(EAT, end, last);
+
+		for (Strip strip : strips)
+		{
+			numBacteria += strip.born - strip.eats;
+			numEvents   += strip.events;
+			statistics.add(strip.born, strip.eats, strip.moves);
+			strip.born   = 0;
+			strip.eats   = 0;
+			strip.moves  = 0;
+			strip.events = 0;
+		}
+		time = end;
+	}
+
+	// runs one phase of the step on every strip and waits for all of them,
+	// rethrowing failures
+	private void runPhase(final int phase, final double end, final boolean last)
+		throws InterruptedException
+	{
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final Strip strip : strips)
+		{
+			tasks.add(new Callable<Void>()
+			{
+				public Void call()
+				{
+					if(phase == PROPOSE)
+					{
+						strip.propose(end, last);
+					}
+					else if(phase == MOVE)
+					{
+						strip.move();
+					}
+					else if(phase == RETRY)
+					{
+						strip.retry();
+					}
+					else
+					{
+						strip.eat();
+					}
+					return null;
+				}
+			});
+		}
+		for (Future<Void> f : pool.invokeAll(tasks))
+		{
+			try
+			{
+				f.get();
+			}
+			catch (ExecutionException e)
+			{
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+
+	/**************************************************************************
+	 * Counts, from the neighbour masks of every cell, the bacteria that have
+	 * no neighbouring cell to move or divide into and the macrophages that
+	 * have a bacterium next to them, for getNumBlockedBacteria() and
+	 * getNumMacrophagesInContact().  Only meaningful between steps.
+	 **************************************************************************/
+	public void countDensity()
+	{
+		numBlocked   = 0;
+		numInContact = 0;
+		for (Strip strip : strips)
+		{
+			strip.countDensity();
+		}
+	}
+
+	// true if an event at time t falls in the step ending at end
+	private static boolean isDue(double t, double end, boolean last)
+	{
+		return last ? t <= end : t < end;
+	}
+
+	/**
+	 * A strip of STRIP_ROWS rows of the landscape and the proposals of the
+	 * agents that stood in it at the start of the step.  A strip's state is
+	 * touched only by the thread running it in the current phase.
+	 */
+	private class Strip
+	{
+		final int startRow, endRow;
+		final RandomGenerator rand;  // this strip's own random stream
+		final Neighborhood neighborhood = new Neighborhood();
+		final int[] free;            // neighbour masks of the strip's cells
+		final int[] bacteria;        //   (see NeighborMasks)
+		int due;                     // agents due in the last step
+
+		// proposals not yet settled: agent, kind (EAT for a bacterium moving
+		// onto a macrophage), target cell and event time
+		Agent[]     agents  = new Agent[16];
+		EventKind[] kinds   = new EventKind[16];
+		int[]       targets = new int[16];
+		double[]    times   = new double[16];
+		int         numProposals;
+
+		// offspring that won their cells in this round, and when they were born
+		int[]       birthCells = new int[16];
+		double[]    birthTimes = new double[16];
+		int         numBirths;
+
+		long events;                 // statistics not yet passed on
+		long moves;
+		long born;
+		long eats;
+
+		Strip(int startRow, int endRow, RandomGenerator rand)
+		{
+			this.startRow = startRow;
+			this.endRow   = endRow;
+			this.rand     = rand;
+			this.free     = new int[(endRow - startRow) * numCells];
+			this.bacteria = new int[(endRow - startRow) * numCells];
+		}
+
+		// picks the target of every move and divide due in the strip's rows,
+		// reschedules it, and claims the target cell
+		void propose(double end, boolean last)
+		{
+			numProposals = 0;
+			boolean bulk = masks.isVectorised() && due * BULK_CELLS >= free.length;
+			if(bulk)
+			{
+				masks.compute(landscape, startRow, endRow, free, bacteria);
+			}
+			due = 0;
+			int first = landscape.index(startRow, 0);
+			for (int row = startRow; row < endRow; row++)
+			{
+				for (int cell = landscape.index(row, 0), stop = landscape.index(row + 1, 0); cell < stop; cell++)
+				{
+					boolean known = bulk;  // this cell's masks
+					int slot = landscape.getMacrophageSlot(cell);
+					if(slot != Grid.EMPTY && isDue(store.getNextMove(slot), end, last))
+					{
+						if(!known)
+						{
+							NeighborMasks.computeCell(landscape, startRow, cell, free, bacteria);
+							known = true;
+						}
+						due++;
+						Agent  m    = store.getAgent(slot);
+						double t    = store.getNextMove(slot);
+						int    hasB = bacteria[cell - first];
+						// as Macrophage.getPreferredMove: a cell with bacteria if any
+						int newCell = pick(cell, (hasB != 0) ? hasB : free[cell - first]);
+						m.scheduleNextMove(t, rand);
+						moves++;
+						events++;
+						propose(m, EventKind.MACROPHAGE_MOVE, cell, newCell, t);
+					}
+
+					slot = landscape.getBacteriaSlot(cell);
+					if(slot == Grid.EMPTY)
+					{
+						continue;
+					}
+					boolean moveDue   = isDue(store.getNextMove(slot), end, last);
+					boolean divideDue = isDue(store.getNextAction(slot), end, last);
+					if(!moveDue && !divideDue)
+					{
+						continue;
+					}
+					if(!known)
+					{
+						NeighborMasks.computeCell(landscape, startRow, cell, free, bacteria);
+					}
+					due++;
+					Bacteria b     = (Bacteria)store.getAgent(slot);
+					int      avail = ~bacteria[cell - first] & 0xFF; // free, or a macrophage
+					if(moveDue)
+					{
+						double t = store.getNextMove(slot);
+						int newCell = pick(cell, avail);
+						b.scheduleNextMove(t, rand); //bacteria might get away!
+						moves++;
+						events++;
+						propose(b, EventKind.BACTERIUM_MOVE, cell, newCell, t);
+					}
+					if(divideDue)
+					{
+						double t = store.getNextAction(slot);
+						b.scheduleNextDivide(t, rand);
+						int newCell = pick(cell, avail);
+						events++;
+						propose(b, EventKind.DIVIDE, cell, newCell, t);
+					}
+				}
+			}
+		}
+
+		// picks one of the neighbours in the mask at random, drawing exactly
+		// what Agent.calculateMove would; the cell itself if the mask is empty
+		private int pick(int cell, int mask)
+		{
+			if(mask == 0)
+			{
+				return cell;
+			}
+			int k = NeighborMasks.nthBit(mask, rand.nextInt(Integer.bitCount(mask)));
+			return NeighborMasks.neighbor(landscape, cell, k);
+		}
+
+		// adds the strip's blocked bacteria and macrophages next to bacteria
+		// to the simulation's counts
+		void countDensity()
+		{
+			masks.compute(landscape, startRow, endRow, free, bacteria);
+			for (int cell = landscape.index(startRow, 0), stop = landscape.index(endRow, 0), i = 0; cell < stop; cell++, i++)
+			{
+				if(landscape.hasBacteria(cell) && bacteria[i] == 0xFF)
+				{
+					numBlocked++;
+				}
+				if(landscape.hasMacrophage(cell) && bacteria[i] != 0)
+				{
+					numInContact++;
+				}
+			}
+		}
+
+		// picks a new target for every proposal that lost its cell, from the
+		// landscape as it stands after the last round
+		void retry()
+		{
+			int n = numProposals;
+			numProposals = 0;
+			for (int i = 0; i < n; i++)
+			{
+				Agent a = agents[i];
+				if(kinds[i] == EventKind.DIVIDE && !isPresent(a))
+				{
+					continue; // the parent was eaten earlier in the step
+				}
+				int cell    = landscape.index(a.getRow(), a.getCol());
+				int newCell = a.calculateMove(landscape, neighborhood, rand);
+				propose(a, kinds[i], cell, newCell, times[i]);
+			}
+		}
+
+		// records a proposal and claims its cell, unless the agent stays put;
+		// a bacterium or offspring bound for a macrophage is eaten instead
+		private void propose(Agent a, EventKind kind, int cell, int newCell, double t)
+		{
+			if(newCell == cell)
+			{
+				return; // no room
+			}
+			if(kind != EventKind.MACROPHAGE_MOVE && landscape.hasMacrophage(newCell))
+			{
+				if(kind == EventKind.DIVIDE)
+				{
+					born++; // and eaten at once, never taking up a slot
+					eats++;
+					events++;
+					return;
+				}
+				kind = EventKind.EAT;
+			}
+
+			if(numProposals == agents.length)
+			{
+				int capacity = 2 * agents.length;
+				agents  = Arrays.copyOf(agents, capacity);
+				kinds   = Arrays.copyOf(kinds, capacity);
+				targets = Arrays.copyOf(targets, capacity);
+				times   = Arrays.copyOf(times, capacity);
+			}
+			agents[numProposals]  = a;
+			kinds[numProposals]   = kind;
+			targets[numProposals] = newCell;
+			times[numProposals]   = t;
+			numProposals++;
+
+			// times are never negative, so their bits order as they do
+			if(kind != EventKind.EAT)
+			{
+				claimsOf(kind).accumulateAndGet(newCell, Double.doubleToLongBits(t), Math::min);
+			}
+		}
+
+		// carries out the proposals that won their cells, noting the
+		// offspring, and keeps the losers for another round; resetting each
+		// claim it wins leaves every cell unclaimed for the next round
+		void move()
+		{
+			int n = numProposals;
+			numProposals = 0;
+			for (int i = 0; i < n; i++)
+			{
+				Agent a = agents[i];
+				int newCell = targets[i];
+				if(kinds[i] == EventKind.EAT)
+				{
+					landscape.removeBacteria(landscape.index(a.getRow(), a.getCol()));
+					synchronized(store)
+					{
+						a.release();
+					}
+					eats++;
+					events++;
+					continue;
+				}
+				if(!claimsOf(kinds[i]).compareAndSet(newCell, Double.doubleToLongBits(times[i]), UNCLAIMED))
+				{
+					// an earlier event took the cell: keep it for the next round
+					agents[numProposals] = a;
+					kinds[numProposals]  = kinds[i];
+					times[numProposals]  = times[i];
+					numProposals++;
+					continue;
+				}
+
+				if(kinds[i] == EventKind.MACROPHAGE_MOVE)
+				{
+					landscape.removeMacrophage(landscape.index(a.getRow(), a.getCol()));
+					landscape.occupy(newCell, (Macrophage)a);
+				}
+				else if(kinds[i] == EventKind.BACTERIUM_MOVE)
+				{
+					landscape.removeBacteria(landscape.index(a.getRow(), a.getCol()));
+					landscape.occupy(newCell, (Bacteria)a);
+				}
+				else
+				{
+					if(numBirths == birthCells.length)
+					{
+						birthCells = Arrays.copyOf(birthCells, 2 * numBirths);
+						birthTimes = Arrays.copyOf(birthTimes, 2 * numBirths);
+					}
+					birthCells[numBirths] = newCell;
+					birthTimes[numBirths] = times[i];
+					numBirths++;
+				}
+			}
+		}
+
+		// places the offspring that won their cells in the last round; run
+		// on the calling thread, as it allocates agents in the store
+		void giveBirth()
+		{
+			for (int i = 0; i < numBirths; i++)
+			{
+				int cell = birthCells[i];
+				Bacteria newB = new Bacteria(store, rand, landscape.rowOf(cell), landscape.colOf(cell));
+				landscape.occupy(cell, newB);
+				newB.scheduleNextMove(birthTimes[i], rand);
+				newB.scheduleNextDivide(birthTimes[i], rand);
+				born++;
+			}
+			numBirths = 0;
+		}
+
+		// removes the bacterium from every cell of the strip that also holds
+		// a macrophage
+		void eat()
+		{
+			for (int cell = landscape.index(startRow, 0), stop = landscape.index(endRow, 0); cell < stop; cell++)
+			{
+				if(landscape.hasMacrophage(cell) && landscape.hasBacteria(cell))
+				{
+					Bacteria b = landscape.getBacteria(cell);
+					landscape.removeBacteria(cell);
+					synchronized(store)
+					{
+						b.release();
+					}
+					eats++;
+					events++;
+				}
+			}
+		}
+	}
+
+	private AtomicLongArray claimsOf(EventKind kind)
+	{
+		return (kind == EventKind.MACROPHAGE_MOVE) ? macrophageClaims : bacteriaClaims;
+	}
+
+	// true if the agent is still in the simulation (its slot not released,
+	// or not yet handed to another)
+	private boolean isPresent(Agent a)
+	{
+		return store.isLive(a.getSlot()) && store.getAgent(a.getSlot()) == a;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the number of macrophages present.
+	 * @return an integer representing the number of macrophages present
+	 **************************************************************************/
+	public int getNumMacrophages() { return(numMacrophages); }
+
+	/**************************************************************************
+	 * Accessor method that returns the number of bacteria still present.
+	 * Only meaningful between steps.
+	 * @return an integer representing the number of bacteria present
+	 **************************************************************************/
+	public int getNumBacteria()    { return(numBacteria); }
+
+	/**************************************************************************
+	 * Accessor method that returns the number of bacteria with no room to
+	 * move or divide into, as of the last countDensity().
+	 * @return the number of bacteria surrounded by bacteria
+	 **************************************************************************/
+	public int getNumBlockedBacteria()      { return(numBlocked); }
+
+	/**************************************************************************
+	 * Accessor method that returns the number of macrophages with a
+	 * bacterium next to them, as of the last countDensity().
+	 * @return the number of macrophages about to eat
+	 **************************************************************************/
+	public int getNumMacrophagesInContact() { return(numInContact); }
+
+	/**************************************************************************
+	 * Accessor method that returns the current time of the simulation clock,
+	 * the end of the last completed step.
+	 * @return a double representing the current time in simulated time
+	 **************************************************************************/
+	public double getTime()        { return(time); }
+
+	/**************************************************************************
+	 * Accessor method that returns the number of events processed so far.
+	 * @return a long representing the moves, divides and eats handled
+	 **************************************************************************/
+	public long getNumEvents()     { return(numEvents); }
+
+	/**************************************************************************
+	 * Method that constructs and returns a single list of all agents present,
+	 * for the gui, in cell order.  Only meaningful between steps.
+	 *
+	 * @return an ArrayList<AgentInterface> containing references to all macrophages and bacteria
+	 **************************************************************************/
+	public ArrayList<AgentInterface> getListOfAgents()
+	{
+		ArrayList<AgentInterface> returnList = new ArrayList<AgentInterface>();
+		for (int cell = 0; cell < landscape.getNumCells(); cell++)
+			if (landscape.hasMacrophage(cell)) returnList.add( landscape.getMacrophage(cell) );
+		for (int cell = 0; cell < landscape.getNumCells(); cell++)
+			if (landscape.hasBacteria(cell))   returnList.add( landscape.getBacteria(cell) );
+		return(returnList);
+	}
+}
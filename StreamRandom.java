@@ -0,0 +1,59 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * This class is the random generator behind every stream handed out by
+ * RandomStreams.  It is the SplitMix64 generator of java.util.SplittableRandom
+ * (same constants, same output for the same seed), reimplemented so that its
+ * whole state -- a single long -- can be read back and restored, which is what
+ * lets a checkpointed simulation resume drawing exactly where it stopped.
+ *
+ * Like SplittableRandom it is unsynchronized: each stream must be used by one
+ * thread at a time.
+ */
+public class StreamRandom implements RandomGenerator
+{
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private long state;  // advanced by GOLDEN_GAMMA before every draw
+
+	/**************************************************************************
+	 * Constructs a generator producing the same values as
+	 * new SplittableRandom(seed).
+	 * @param seed  the initial state
+	 **************************************************************************/
+	public StreamRandom(long seed)
+	{
+		this.state = seed;
+	}
+
+	/**************************************************************************
+	 * Accessor method that returns the generator's state; a generator
+	 * constructed from this value continues with the same values.
+	 * @return the current state
+	 **************************************************************************/
+	public long getState() { return(state); }
+
+	public long nextLong()
+	{
+		return mix64(state += GOLDEN_GAMMA);
+	}
+
+	public int nextInt()
+	{
+		return mix32(state += GOLDEN_GAMMA);
+	}
+
+	// the SplitMix64 finalizers, as in SplittableRandom
+	private static long mix64(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int mix32(long z)
+	{
+		z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+		return (int)(((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+	}
+}
@@ -1,22 +1,63 @@
+import java.util.*;
+
 public class Tester
 {
-    public static void main(String[] args) throws InterruptedException
+    public static void main(String[] args) throws Exception
     {
-        // construct a simulation object w/ appropriate parameters and then run
-        int numCells       = 40;
-        int guiCellWidth   = 15;
-        int numMacrophages = 50;
-        int numBacteria    = 100;
-		int maxTime        = 100;
+        // the default parameters (40 x 40 cells of 15 pixels, 50
+        // macrophages, 100 bacteria, max time 100) are those of Scenario;
+        // any of them can be changed with a key=value argument, e.g.
+        // macrophages=80 (Launcher also takes a properties file).
+        //
+        // pass -headless (or --headless) to run without the gui, e.g. on a
+        // server with no display, and -parallel (or --parallel) to use the
+        // region-parallel engine.  -checkpoint <file> saves the run every
+        // 10 units of simulated time, and -resume <file> carries on from a
+        // saved checkpoint.  -log <file> records every event to a binary
+        // event log (see EventLogWriter), and -sample <interval> sets the
+        // simulated time between points of the time series window.
+        // -stats <interval> prints the run's statistics (see Statistics)
+        // every interval units of simulated time.  -metrics <file> times
+        // every event, publishes the figures over JMX while the run lasts,
+        // and writes a report to the file at the end (see EngineMetrics).
+        //
+        // the flags are turned into the matching key=value settings and
+        // everything goes through Launcher, so lists, ranges and
+        // replications run as a sweep there too, and a bad argument
+        // prints the usage line and exits with status 2
+        List<String> settings = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-headless") || args[i].equals("--headless"))
+                settings.add("headless=true");
+            else if (args[i].equals("-parallel") || args[i].equals("--parallel"))
+                settings.add("parallel=true");
+            else if (VALUE_FLAGS.contains(args[i]) && i + 1 < args.length)
+                settings.add(args[i].substring(1) + "=" + args[++i]);
+            else if (args[i].equals("-help") || args[i].equals("--help"))
+            {
+                System.out.println(USAGE);
+                return;
+            }
+            else if (args[i].indexOf('=') > 0)
+                settings.add(args[i]);
+            else
+            {
+                System.err.println(VALUE_FLAGS.contains(args[i])
+                    ? args[i] + " needs a value" : "unknown argument '" + args[i] + "'");
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+        }
 
-        Simulation s = new Simulation(numCells, guiCellWidth,
-                                      numMacrophages, numBacteria,maxTime);
-        
-		
-		double guiDelayInSecs = .005;
-		
+        Launcher.launch(settings.toArray(new String[settings.size()]), USAGE);
+    }
 
+    private static final String USAGE = "usage: java Tester [-headless] [-parallel]"
+        + " [-checkpoint file] [-resume file] [-log file] [-sample interval]"
+        + " [-stats interval] [-metrics file] [key=value ...]";
 
-        s.run(guiDelayInSecs);
-    }
+    // the flags followed by a value, each the same as key=value
+    private static final List<String> VALUE_FLAGS = Arrays.asList(
+        "-checkpoint", "-resume", "-log", "-sample", "-stats", "-metrics");
 }
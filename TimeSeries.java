@@ -0,0 +1,175 @@
+/**
+ * This class stores one or more integer time series (e.g. the numbers of
+ * macrophages and bacteria) sampled at a fixed interval of simulated time,
+ * in a fixed amount of memory however long the run.
+ *
+ * Samples are kept in buckets, each holding the minimum and maximum of every
+ * series over `stride` consecutive samples.  Buckets start out one sample
+ * wide; when all of them are in use, neighbouring pairs are merged, halving
+ * the number of buckets and doubling the stride.  A plot of the buckets
+ * therefore always spans the whole run, and no spike is lost to the
+ * coarsening, since each bucket still spans its extremes.
+ *
+ * The engine appends while the gui reads, so all methods are synchronized.
+ * A reader making several calls that must agree (say, getStride() and then
+ * getMin() for each bucket) should hold the series' lock across them:
+ *
+ *     synchronized (series) { ... }
+ */
+public class TimeSeries
+{
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final int    numSeries;
+	private final int    capacity;    // buckets available, even
+	private final double interval;    // simulated time between samples
+	private final double start;       // time of the first sample
+	private final int[]  min;         // [series * capacity + bucket]
+	private final int[]  max;
+
+	private int  size;                // buckets in use, the last possibly partial
+	private int  stride = 1;          // samples per bucket
+	private int  inLast;              // samples in the last bucket
+	private long numSamples;
+	private int  decimations;         // times the buckets were merged
+
+	/**************************************************************************
+	 * Constructs an empty store of DEFAULT_CAPACITY buckets, for samples
+	 * starting at time 0.
+	 * @param numSeries  number of series sampled together
+	 * @param interval   simulated time between samples
+	 **************************************************************************/
+	public TimeSeries(int numSeries, double interval)
+	{
+		this(numSeries, DEFAULT_CAPACITY, interval, 0);
+	}
+
+	/**************************************************************************
+	 * Constructs an empty store.
+	 * @param numSeries  number of series sampled together
+	 * @param capacity   number of buckets kept; even, at least 2
+	 * @param interval   simulated time between samples
+	 * @param start      simulated time of the first sample
+	 **************************************************************************/
+	public TimeSeries(int numSeries, int capacity, double interval, double start)
+	{
+		if(numSeries < 1 || capacity < 2 || capacity % 2 != 0 || !(interval > 0))
+		{
+			throw new IllegalArgumentException("need at least one series, an even capacity"
+				+ " of at least 2 and a positive interval");
+		}
+		this.numSeries = numSeries;
+		this.capacity  = capacity;
+		this.interval  = interval;
+		this.start     = start;
+		this.min       = new int[numSeries * capacity];
+		this.max       = new int[numSeries * capacity];
+	}
+
+	/**************************************************************************
+	 * Appends the next sample, taken getNumSamples() * getInterval() after
+	 * the first.
+	 * @param values  one value per series
+	 **************************************************************************/
+	public synchronized void add(int[] values)
+	{
+		if(values.length != numSeries)
+		{
+			throw new IllegalArgumentException("expected " + numSeries + " values, got "
+				+ values.length);
+		}
+		if(size == 0 || inLast == stride)
+		{
+			if(size == capacity)
+			{
+				decimate();
+			}
+			for (int s = 0; s < numSeries; s++)
+			{
+				min[s * capacity + size] = values[s];
+				max[s * capacity + size] = values[s];
+			}
+			size++;
+			inLast = 1;
+		}
+		else
+		{
+			int b = size - 1;
+			for (int s = 0; s < numSeries; s++)
+			{
+				min[s * capacity + b] = Math.min(min[s * capacity + b], values[s]);
+				max[s * capacity + b] = Math.max(max[s * capacity + b], values[s]);
+			}
+			inLast++;
+		}
+		numSamples++;
+	}
+
+	// merges neighbouring buckets pairwise; called only when all are full
+	private void decimate()
+	{
+		int half = capacity / 2;
+		for (int s = 0; s < numSeries; s++)
+		{
+			int base = s * capacity;
+			for (int i = 0; i < half; i++)
+			{
+				min[base + i] = Math.min(min[base + 2 * i], min[base + 2 * i + 1]);
+				max[base + i] = Math.max(max[base + 2 * i], max[base + 2 * i + 1]);
+			}
+		}
+		size    = half;
+		stride *= 2;
+		inLast  = stride;
+		decimations++;
+	}
+
+	public int getNumSeries()                 { return(numSeries); }
+	public double getInterval()               { return(interval); }
+	public synchronized int size()            { return(size); }
+	public synchronized int getStride()       { return(stride); }
+	public synchronized long getNumSamples()  { return(numSamples); }
+
+	/**************************************************************************
+	 * Accessor method that returns how many times the buckets have been
+	 * merged.  Bucket contents change only by growing at the end, except
+	 * when this count changes.
+	 * @return the number of decimations so far
+	 **************************************************************************/
+	public synchronized int getDecimations()  { return(decimations); }
+
+	/**************************************************************************
+	 * Accessor method that returns the time of the first sample in a bucket.
+	 * @param bucket  0 <= bucket < size()
+	 * @return the simulated time the bucket starts at
+	 **************************************************************************/
+	public synchronized double getTime(int bucket)
+	{
+		return start + (double)bucket * stride * interval;
+	}
+
+	/**************************************************************************
+	 * Accessor methods that return the smallest and largest value of a
+	 * series over a bucket.
+	 * @param series  0 <= series < getNumSeries()
+	 * @param bucket  0 <= bucket < size()
+	 **************************************************************************/
+	public synchronized int getMin(int series, int bucket)
+	{
+		return min[index(series, bucket)];
+	}
+
+	public synchronized int getMax(int series, int bucket)
+	{
+		return max[index(series, bucket)];
+	}
+
+	private int index(int series, int bucket)
+	{
+		if(series < 0 || series >= numSeries || bucket < 0 || bucket >= size)
+		{
+			throw new IndexOutOfBoundsException("series " + series + ", bucket " + bucket);
+		}
+		return series * capacity + bucket;
+	}
+}
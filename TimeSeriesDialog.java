@@ -2,7 +2,6 @@ import javax.swing.*;       // for all the Swing stuff (JWhatevers)
 
 import java.awt.*;          // for Graphics, Graphics2D
 import java.awt.geom.*;     // for Rectangle2D
-import java.util.ArrayList; // for ArrayList
 
 //======================================================================
 //* This class provides a simple graphical interface that will display
@@ -12,8 +11,10 @@ import java.util.ArrayList; // for ArrayList
 //* The constructor expects the maximum time and maximum number of agents
 //* as arguments.
 //*
-//* The updateCounts() method will be called from within the simulation
-//* code each time the simulation time crosses an integer boundary.
+//* The counts are read from a TimeSeries, which the simulation engine
+//* fills as it runs; refresh() plots whatever was added since the last
+//* call.  Alternatively, the updateCounts() method can be called each
+//* time the simulation time crosses an integer boundary.
 //*
 //* Author:  Barry Lawson (blawson)
 //* Date:    23 September 2009
@@ -32,54 +33,75 @@ public class TimeSeriesDialog extends JFrame
     // these are needed to properly scale the axes
     protected int maxAgents;
     protected int maxTime;
-    protected int lastUpdateTime;
 
-    // arrays of ints for the counts for display time series info
-    protected ArrayList<Integer> macrophagesCounts;
-    protected ArrayList<Integer> bacteriaCounts;
+    // the counts for display time series info: series 0 holds the
+    // macrophages, series 1 the bacteria
+    protected TimeSeries series;
+
+    private final int[] counts = new int[2];  // scratch for updateCounts()
 
     //======================================================================
     //* public TimeSeriesDialog(int agents, int time)
-    //* Constructor for the class.  Just creates three new array lists to
-    //* hold the counts for displaying the time-series info, and sets up
-    //* a few instance variables used when drawing the time-series curves.
-    //* Finally, pops up a new window right before your very eyes!
+    //* Constructor for a dialog whose counts are all passed in through
+    //* updateCounts(), one per integer time step.
     //======================================================================
     public TimeSeriesDialog(int maxAgents, int maxTime)
+    {
+        this(maxAgents, maxTime, new TimeSeries(2, 1.0));
+    }
+
+    //======================================================================
+    //* public TimeSeriesDialog(int agents, int time, TimeSeries series)
+    //* Constructor for the class.  Sets up a few instance variables used
+    //* when drawing the time-series curves from the given series (which
+    //* the simulation may still be filling).  Finally, pops up a new
+    //* window right before your very eyes!
+    //======================================================================
+    public TimeSeriesDialog(int maxAgents, int maxTime, TimeSeries series)
     {
         super();
 
         setSize(WINDOW_WIDTH, WINDOW_HEIGHT);
         setTitle("Time Series");
 
-        this.maxAgents      = maxAgents;
-        this.maxTime        = maxTime;
-        this.lastUpdateTime = 0;
+        this.maxAgents = maxAgents;
+        this.maxTime   = maxTime;
+        this.series    = series;
 
         this.canvas = new DialogCanvas(this);
         this.getContentPane().add(this.canvas);
 
         setVisible(true);
 
-        macrophagesCounts = new ArrayList<Integer>();
-        bacteriaCounts    = new ArrayList<Integer>();
-
     } // end TimeSeriesDialog constructor
 
     //======================================================================
     //* public void updateCounts( int numMacrophages, int numBacteria)
-    //* This method will be invoked by the simulation code to update the
-    //* counts at each integer time step.  It will then repaint the window,
-    //* displaying the updated information.
+    //* This method may be invoked to append the counts for the next time
+    //* step to the series.  It will then repaint the window, displaying
+    //* the updated information.
     //======================================================================
     public void updateCounts( int numMacrophages, int numBacteria )
     {
-        macrophagesCounts.add( new Integer(numMacrophages) );
-        bacteriaCounts.add( new Integer(numBacteria) );
+        counts[0] = numMacrophages;
+        counts[1] = numBacteria;
+        series.add(counts);
 
-        this.canvas.repaint();  // rediplay with new counts on screen
+        refresh();  // display the new counts on screen
         
     } // end updateCounts()
 
+    //======================================================================
+    //* public void refresh()
+    //* This method plots the counts added to the series since the last
+    //* call, repainting only that part of the window.  Must be called on
+    //* the event dispatch thread.
+    //======================================================================
+    public void refresh()
+    {
+        this.canvas.plotNewCounts();
+
+    } // end refresh()
+
 
 } // end class TimeSeriesDialog
@@ -0,0 +1,47 @@
+import bench.Workload;
+
+import java.util.Random;
+
+/**
+ * Workload timing the event queue traffic of the engine: the classic "hold"
+ * operation on an EventHeap or CalendarQueue of the given size, i.e. push
+ * the earliest event's agent's next move up to one time unit later (as the
+ * engine does) and requeue its event.
+ */
+public class EventSchedulerWorkload implements Workload
+{
+    private final AgentStore     store;
+    private final EventScheduler scheduler;
+    private final Random         rand = new Random(Simulation.DEFAULT_SEED);
+    private long                 seed = 0x9E3779B97F4A7C15L;
+
+    EventSchedulerWorkload(int size, int calendar)
+    {
+        this.store     = new AgentStore(size);
+        this.scheduler = (calendar != 0) ? new CalendarQueue(size) : new EventHeap(size);
+        for (int i = 0; i < size; i++)
+        {
+            Bacteria b = new Bacteria(store, rand);
+            store.setNextMove(b.getSlot(), nextUniform());
+            scheduler.update(b.nextEvent());
+        }
+    }
+
+    public long run()
+    {
+        Event  e = scheduler.peek();
+        Agent  a = e.getAgent();
+        store.setNextMove(a.getSlot(), e.getTime() + nextUniform());
+        scheduler.update(a.nextEvent());
+        return scheduler.size();
+    }
+
+    // cheap xorshift uniform in [0,1), so the RNG does not dominate the timing
+    private double nextUniform()
+    {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (seed >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,69 @@
+import bench.Workload;
+
+import java.util.Random;
+
+/**
+ * Workload computing the neighbour masks of one SteppedSimulation strip per
+ * operation, cycling through the strips of a landscape populated at the
+ * given density.  Mode 0 uses the scalar NeighborMasks.compute, mode 1 the
+ * vectorised one (which must be loadable), and mode 2 calls
+ * NeighborMasks.computeCell on every cell of the strip, as the engine does
+ * when only a few agents are due.
+ */
+public class NeighborMasksWorkload implements Workload
+{
+    private static final int STRIP_ROWS = 8;
+
+    private final Grid          landscape;
+    private final NeighborMasks masks;
+    private final boolean       eachCell;
+    private final int[]         free;
+    private final int[]         bacteria;
+    private int                 startRow;
+
+    NeighborMasksWorkload(int numCells, int densityPercent, int mode)
+    {
+        AgentStore store = new AgentStore();
+        Random     rand  = new Random(Simulation.DEFAULT_SEED);
+        this.landscape = new Grid(numCells, store);
+        this.masks     = (mode == 1) ? NeighborMasks.create() : new NeighborMasks();
+        this.eachCell  = (mode == 2);
+        this.free      = new int[STRIP_ROWS * numCells];
+        this.bacteria  = new int[STRIP_ROWS * numCells];
+        if (mode == 1 && !masks.isVectorised())
+            throw new IllegalStateException("VectorNeighborMasks not loadable; add jdk.incubator.vector");
+
+        int numAgents = (int)((long)numCells * numCells * densityPercent / 100);
+        for (int i = 0; i < numAgents; i++)
+        {
+            int cell;
+            do
+            {
+                cell = rand.nextInt(landscape.getNumCells());
+            } while (landscape.isOccupied(cell));
+
+            int row = landscape.rowOf(cell), col = landscape.colOf(cell);
+            if (i % 3 == 0)
+                landscape.occupy(cell, new Macrophage(store, rand, row, col));
+            else
+                landscape.occupy(cell, new Bacteria(store, rand, row, col));
+        }
+    }
+
+    public long run()
+    {
+        int endRow = Math.min(startRow + STRIP_ROWS, landscape.getSize());
+        if (eachCell)
+        {
+            for (int cell = landscape.index(startRow, 0), stop = landscape.index(endRow, 0); cell < stop; cell++)
+                NeighborMasks.computeCell(landscape, startRow, cell, free, bacteria);
+        }
+        else
+        {
+            masks.compute(landscape, startRow, endRow, free, bacteria);
+        }
+        long result = free[0] + bacteria[bacteria.length - 1];
+        startRow = (endRow == landscape.getSize()) ? 0 : endRow;
+        return result;
+    }
+}
@@ -0,0 +1,63 @@
+import bench.Workload;
+
+import java.util.Random;
+
+/**
+ * Workload evaluating one agent's Moore neighbourhood per operation, cycling
+ * through a landscape populated at the given density.  Mode 0 times the
+ * whole Agent.calculateMove (neighbourhood plus preferred-move choice),
+ * mode 1 only Agent.getNeighborhood.
+ */
+public class NeighborhoodWorkload implements Workload
+{
+    private final Grid         landscape;
+    private final Agent[]      agents;
+    private final Neighborhood scratch = new Neighborhood();
+    private final boolean      fullMove;
+    private final Random       rand = new Random(Simulation.DEFAULT_SEED);
+    private int                next;
+
+    NeighborhoodWorkload(int numCells, int densityPercent, int mode)
+    {
+        AgentStore store = new AgentStore();
+        this.landscape = new Grid(numCells, store);
+        this.fullMove  = (mode == 0);
+
+        int numAgents = Math.max(1, (int)((long)numCells * numCells * densityPercent / 100));
+        this.agents   = new Agent[numAgents];
+        for (int i = 0; i < numAgents; i++)
+        {
+            int cell;
+            do
+            {
+                cell = rand.nextInt(landscape.getNumCells());
+            } while (landscape.isOccupied(cell));
+
+            int row = landscape.rowOf(cell), col = landscape.colOf(cell);
+            if (i % 3 == 0)
+            {
+                Macrophage m = new Macrophage(store, rand, row, col);
+                landscape.occupy(cell, m);
+                agents[i] = m;
+            }
+            else
+            {
+                Bacteria b = new Bacteria(store, rand, row, col);
+                landscape.occupy(cell, b);
+                agents[i] = b;
+            }
+        }
+    }
+
+    public long run()
+    {
+        Agent a = agents[next];
+        next = (next + 1 == agents.length) ? 0 : next + 1;
+
+        if (fullMove)
+            return a.calculateMove(landscape, scratch, rand);
+
+        a.getNeighborhood(a.getRow(), a.getCol(), landscape, scratch);
+        return scratch.size();
+    }
+}
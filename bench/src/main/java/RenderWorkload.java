@@ -0,0 +1,69 @@
+import bench.Workload;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Workload timing one gui frame: a fixed number of events are processed,
+ * a snapshot is handed to an AgentCanvas, and the canvas is painted into an
+ * offscreen BufferedImage over the area Swing would repaint.  When the
+ * engine reports changed cells, only those are redrawn and the paint is
+ * clipped to them; otherwise every frame redraws the whole landscape.
+ */
+public class RenderWorkload implements Workload
+{
+    private final Simulation    simulation;
+    private final AgentCanvas   canvas;
+    private final BufferedImage image;
+    private final int           numCells;
+    private final int           cellSize;
+    private final int           eventsPerFrame;
+
+    RenderWorkload(int numCells, int densityPercent, int cellSize,
+                   int eventsPerFrame, int trackChanges)
+    {
+        int numAgents      = Math.max(3, (int)((long)numCells * numCells * densityPercent / 100));
+        int numMacrophages = numAgents / 3;
+
+        // maxTime is never reached
+        this.simulation = new Simulation(numCells, cellSize, numMacrophages,
+                                         numAgents - numMacrophages, Integer.MAX_VALUE);
+        if (trackChanges != 0)
+            simulation.trackChangedCells();
+        simulation.publishSnapshot();
+
+        this.numCells       = numCells;
+        this.cellSize       = cellSize;
+        this.eventsPerFrame = eventsPerFrame;
+        this.canvas = new AgentCanvas(simulation, numCells, numCells, cellSize);
+        this.canvas.setSnapshot(simulation.getSnapshot());
+        this.image  = new BufferedImage(numCells * cellSize + 1, numCells * cellSize + 50,
+                                        BufferedImage.TYPE_INT_RGB);
+    }
+
+    public long run()
+    {
+        for (int i = 0; i < eventsPerFrame; i++)
+            simulation.step();
+        simulation.publishSnapshot();
+        AgentSnapshot snapshot = simulation.getSnapshot();
+        canvas.setSnapshot(snapshot);
+
+        // Swing merges the repainted cells into one clip rectangle
+        Graphics2D g = image.createGraphics();
+        int[] changed = snapshot.getChangedCells();
+        if (changed != null)
+        {
+            Rectangle clip = new Rectangle(0, numCells * cellSize + 1, image.getWidth(), 49);
+            for (int i = 0; i < changed.length; i++)
+                clip.add(new Rectangle((changed[i] % numCells) * cellSize,
+                                       (changed[i] / numCells) * cellSize,
+                                       cellSize, cellSize));
+            g.setClip(clip);
+        }
+        canvas.paintComponent(g);
+        g.dispose();
+        return image.getRGB(0, 0);
+    }
+}
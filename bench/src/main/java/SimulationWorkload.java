@@ -0,0 +1,31 @@
+import bench.Workload;
+
+/**
+ * Workload driving the full next-event engine: each operation processes a
+ * fixed number of events of a Simulation whose landscape starts at the given
+ * density, one third macrophages and two thirds bacteria.
+ */
+public class SimulationWorkload implements Workload
+{
+    private final Simulation simulation;
+    private final int        eventsPerOp;
+
+    SimulationWorkload(int numCells, int densityPercent, int eventsPerOp)
+    {
+        int numAgents      = Math.max(3, (int)((long)numCells * numCells * densityPercent / 100));
+        int numMacrophages = numAgents / 3;
+        int numBacteria    = numAgents - numMacrophages;
+
+        // no gui is ever built, and maxTime is never reached
+        this.simulation  = new Simulation(numCells, 1, numMacrophages, numBacteria,
+                                          Integer.MAX_VALUE);
+        this.eventsPerOp = eventsPerOp;
+    }
+
+    public long run()
+    {
+        for (int i = 0; i < eventsPerOp; i++)
+            simulation.step();
+        return simulation.getNumEvents();
+    }
+}
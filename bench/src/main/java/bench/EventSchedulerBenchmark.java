@@ -0,0 +1,41 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of one "hold" on the future event set (EventScheduler.peek() followed
+ * by update() of the same event at a later time, which is what
+ * Simulation.schedule() does after almost every event) as the number of
+ * queued events grows, for EventHeap and CalendarQueue.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class EventSchedulerBenchmark
+{
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"heap", "calendar"})
+    public String scheduler;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        workload = Workloads.create("EventSchedulerWorkload", size,
+                                    scheduler.equals("calendar") ? 1 : 0);
+    }
+
+    @Benchmark
+    public long hold()
+    {
+        return workload.run();
+    }
+}
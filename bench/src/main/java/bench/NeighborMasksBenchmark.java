@@ -0,0 +1,56 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of the neighbour masks of one 8-row strip, as SteppedSimulation
+ * computes them: the scalar and vectorised NeighborMasks.compute, and
+ * NeighborMasks.computeCell cell by cell.  Divide by 8 * numCells for the
+ * cost per cell.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "--add-modules", "jdk.incubator.vector"})
+public class NeighborMasksBenchmark
+{
+    @Param({"256", "1024"})
+    public int numCells;
+
+    @Param({"10", "50"})
+    public int densityPercent;
+
+    private Workload scalar;
+    private Workload vector;
+    private Workload eachCell;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        scalar   = Workloads.create("NeighborMasksWorkload", numCells, densityPercent, 0);
+        vector   = Workloads.create("NeighborMasksWorkload", numCells, densityPercent, 1);
+        eachCell = Workloads.create("NeighborMasksWorkload", numCells, densityPercent, 2);
+    }
+
+    @Benchmark
+    public long scalar()
+    {
+        return scalar.run();
+    }
+
+    @Benchmark
+    public long vector()
+    {
+        return vector.run();
+    }
+
+    @Benchmark
+    public long eachCell()
+    {
+        return eachCell.run();
+    }
+}
@@ -0,0 +1,46 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of evaluating one agent's move: Agent.calculateMove as a whole, and
+ * Agent.getNeighborhood on its own, at several landscape densities.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class NeighborhoodBenchmark
+{
+    @Param({"500"})
+    public int numCells;
+
+    @Param({"1", "10", "50", "90"})
+    public int densityPercent;
+
+    private Workload calculateMove;
+    private Workload getNeighborhood;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        calculateMove   = Workloads.create("NeighborhoodWorkload", numCells, densityPercent, 0);
+        getNeighborhood = Workloads.create("NeighborhoodWorkload", numCells, densityPercent, 1);
+    }
+
+    @Benchmark
+    public long calculateMove()
+    {
+        return calculateMove.run();
+    }
+
+    @Benchmark
+    public long getNeighborhood()
+    {
+        return getNeighborhood.run();
+    }
+}
@@ -0,0 +1,50 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of one gui frame -- processing a batch of events, handing the canvas
+ * a snapshot, and painting it into an offscreen image -- at several grid
+ * sizes and densities, with the canvas redrawing everything or only the
+ * cells the engine reports changed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark
+{
+    @Param({"40", "200"})
+    public int numCells;
+
+    @Param({"10", "90"})
+    public int densityPercent;
+
+    @Param({"15"})
+    public int cellSize;
+
+    @Param({"100"})
+    public int eventsPerFrame;
+
+    @Param({"false", "true"})
+    public boolean incremental;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        workload = Workloads.create("RenderWorkload", numCells, densityPercent, cellSize,
+                                    eventsPerFrame, incremental ? 1 : 0);
+    }
+
+    @Benchmark
+    public long frame()
+    {
+        return workload.run();
+    }
+}
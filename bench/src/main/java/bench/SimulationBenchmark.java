@@ -0,0 +1,41 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Event throughput of the whole next-event engine at several grid sizes and
+ * initial population densities.  Each operation is 1000 events, so the
+ * reported ops/s times 1000 is events/sec.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SimulationBenchmark
+{
+    @Param({"50", "200", "1000"})
+    public int numCells;
+
+    @Param({"1", "10", "50"})
+    public int densityPercent;
+
+    private Workload workload;
+
+    // rebuilt every iteration so the population does not drift too far
+    // from the requested density as bacteria divide
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        workload = Workloads.create("SimulationWorkload", numCells, densityPercent, 1000);
+    }
+
+    @Benchmark
+    public long events()
+    {
+        return workload.run();
+    }
+}
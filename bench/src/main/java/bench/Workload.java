@@ -0,0 +1,19 @@
+package bench;
+
+/**
+ * One unit of engine work to be timed by a JMH benchmark.
+ *
+ * The engine classes live in the unnamed (default) package, which JMH
+ * benchmark classes cannot live in and which named packages cannot import.
+ * Each workload is therefore written as a plain default-package class that
+ * implements this interface (default-package code may import named
+ * packages), and the benchmarks create it by name through Workloads.
+ */
+public interface Workload
+{
+    /**
+     * Performs one operation's worth of work.
+     * @return a value derived from the work, to be consumed by the benchmark
+     */
+    long run();
+}
@@ -0,0 +1,41 @@
+package bench;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Factory creating default-package Workload classes by name.  Called from
+ * benchmark @Setup methods only, so the reflection never appears in the
+ * measured code.
+ */
+public final class Workloads
+{
+    private Workloads() {}
+
+    /**
+     * Constructs the named workload with the given int arguments.
+     *
+     * @param  className  simple name of a default-package Workload class
+     * @param  args       arguments of its all-int constructor
+     * @return the new workload
+     */
+    public static Workload create(String className, int... args)
+    {
+        try
+        {
+            Class<?>[] types = new Class<?>[args.length];
+            Object[]   boxed = new Object[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                types[i] = int.class;
+                boxed[i] = args[i];
+            }
+            Constructor<?> c = Class.forName(className).getDeclaredConstructor(types);
+            c.setAccessible(true);
+            return (Workload) c.newInstance(boxed);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("cannot create workload " + className, e);
+        }
+    }
+}
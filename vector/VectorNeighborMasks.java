@@ -0,0 +1,87 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class computes the same neighbour masks as NeighborMasks with the
+ * incubating Vector API: for a run of as many cells as the CPU's widest
+ * int vector holds, each of the eight neighbours is one load of each layer
+ * shifted by the neighbour's offset and a few shifts and ORs: Grid.EMPTY
+ * is -1 and slots are never negative, so the sign bit of a layer entry
+ * alone tells whether the cell is empty, and a free cell is one whose
+ * entries have the sign bit set in both layers.  The first and last columns,
+ * whose neighbours wrap around the torus, and the columns left over at the
+ * end of a row are done one at a time as NeighborMasks does them.
+ *
+ * It lives apart from the other sources because it needs the
+ * jdk.incubator.vector module to compile and run:
+ *
+ *     make vector
+ *     java --add-modules jdk.incubator.vector Launcher step=0.05
+ *
+ * and NeighborMasks.create() falls back on the scalar code without it.
+ */
+public class VectorNeighborMasks extends NeighborMasks
+{
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	public void compute(Grid landscape, int startRow, int endRow, int[] free, int[] bacteria)
+	{
+		int   size = landscape.getSize();
+		int[] ms   = landscape.getMacrophageLayer();
+		int[] bs   = landscape.getBacteriaLayer();
+
+		for (int row = startRow; row < endRow; row++)
+		{
+			int out = (row - startRow) * size;
+			int a   = landscape.index(landscape.wrap(row, -1), 0);  // row above
+			int h   = landscape.index(row, 0);
+			int w   = landscape.index(landscape.wrap(row, 1), 0);   // row below
+
+			// columns 1 .. size - 2 have all their neighbours in the same rows;
+			// the eight neighbours are written out so the shifts are constants
+			int col = 1;
+			for (; col + SPECIES.length() <= size - 1; col += SPECIES.length())
+			{
+				IntVector b0 = IntVector.fromArray(SPECIES, bs, a + col - 1);
+				IntVector b1 = IntVector.fromArray(SPECIES, bs, a + col);
+				IntVector b2 = IntVector.fromArray(SPECIES, bs, a + col + 1);
+				IntVector b3 = IntVector.fromArray(SPECIES, bs, h + col - 1);
+				IntVector b4 = IntVector.fromArray(SPECIES, bs, h + col + 1);
+				IntVector b5 = IntVector.fromArray(SPECIES, bs, w + col - 1);
+				IntVector b6 = IntVector.fromArray(SPECIES, bs, w + col);
+				IntVector b7 = IntVector.fromArray(SPECIES, bs, w + col + 1);
+
+				IntVector noB = bit(b0, 0).or(bit(b1, 1)).or(bit(b2, 2)).or(bit(b3, 3))
+					.or(bit(b4, 4)).or(bit(b5, 5)).or(bit(b6, 6)).or(bit(b7, 7));
+				noB.lanewise(VectorOperators.XOR, 0xFF).intoArray(bacteria, out + col);
+
+				IntVector f = bit(b0.and(IntVector.fromArray(SPECIES, ms, a + col - 1)), 0)
+					.or(bit(b1.and(IntVector.fromArray(SPECIES, ms, a + col)),     1))
+					.or(bit(b2.and(IntVector.fromArray(SPECIES, ms, a + col + 1)), 2))
+					.or(bit(b3.and(IntVector.fromArray(SPECIES, ms, h + col - 1)), 3))
+					.or(bit(b4.and(IntVector.fromArray(SPECIES, ms, h + col + 1)), 4))
+					.or(bit(b5.and(IntVector.fromArray(SPECIES, ms, w + col - 1)), 5))
+					.or(bit(b6.and(IntVector.fromArray(SPECIES, ms, w + col)),     6))
+					.or(bit(b7.and(IntVector.fromArray(SPECIES, ms, w + col + 1)), 7));
+				f.intoArray(free, out + col);
+			}
+
+			computeRow(landscape, row, out, col, size, free, bacteria);
+			computeRow(landscape, row, out, 0, Math.min(1, size), free, bacteria);
+		}
+	}
+
+	// bit k set in the lanes whose entry is EMPTY (negative), clear elsewhere
+	private static IntVector bit(IntVector entries, int k)
+	{
+		return entries.lanewise(VectorOperators.LSHR, 31).lanewise(VectorOperators.LSHL, k);
+	}
+
+	public boolean isVectorised() { return(true); }
+
+	public String toString()
+	{
+		return "vector (" + SPECIES.length() + " lanes)";
+	}
+}